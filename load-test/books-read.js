@@ -0,0 +1,41 @@
+// k6 read-mix against library-service. Run once per execution mode and compare the summaries:
+//   VIRTUAL_THREADS_ENABLED=false docker compose up -d --build && ./load-test/run.sh platform
+//   VIRTUAL_THREADS_ENABLED=true  docker compose up -d --build && ./load-test/run.sh virtual
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const MAX_ID = Number(__ENV.MAX_ID || 1000);
+
+export const options = {
+    scenarios: {
+        burst: {
+            executor: 'ramping-arrival-rate',
+            startRate: 100,
+            timeUnit: '1s',
+            preAllocatedVUs: 500,
+            maxVUs: Number(__ENV.MAX_VUS || 5000),
+            stages: [
+                { target: Number(__ENV.PEAK_RPS || 3000), duration: '30s' },
+                { target: Number(__ENV.PEAK_RPS || 3000), duration: '60s' },
+                { target: 100, duration: '15s' },
+            ],
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+export default function () {
+    const roll = Math.random();
+    let response;
+    if (roll < 0.8) {
+        response = http.get(`${BASE_URL}/library/books/${1 + Math.floor(Math.random() * MAX_ID)}`, { tags: { name: 'get' } });
+        check(response, { 'get ok or missing': (r) => r.status === 200 || r.status === 404 });
+    } else if (roll < 0.95) {
+        response = http.get(`${BASE_URL}/library/books?limit=50`, { tags: { name: 'list' } });
+        check(response, { 'list ok': (r) => r.status === 200 });
+    } else {
+        response = http.get(`${BASE_URL}/library/books/search?fromYear=1990&toYear=2010`, { tags: { name: 'search' } });
+        check(response, { 'search ok': (r) => r.status === 200 });
+    }
+}
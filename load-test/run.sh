@@ -0,0 +1,16 @@
+#!/usr/bin/env sh
+# Usage: ./load-test/run.sh <label>
+# Runs books-read.js with the k6 container and keeps the JSON summary under load-test/results/<label>.json,
+# so the platform-thread and virtual-thread runs can be compared on http_reqs (throughput) and
+# http_req_duration p(99).
+set -eu
+LABEL="${1:?label required, e.g. platform or virtual}"
+DIR="$(cd "$(dirname "$0")" && pwd)"
+mkdir -p "$DIR/results"
+
+docker run --rm -i --network host \
+  -e BASE_URL="${BASE_URL:-http://localhost:8080}" \
+  -e PEAK_RPS="${PEAK_RPS:-3000}" \
+  -e MAX_ID="${MAX_ID:-1000}" \
+  -v "$DIR:/scripts" \
+  grafana/k6 run --summary-export "/scripts/results/$LABEL.json" /scripts/books-read.js
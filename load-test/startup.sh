@@ -0,0 +1,53 @@
+#!/usr/bin/env sh
+# Usage: ./load-test/startup.sh [jvm|cds|aot|native ...]
+# Starts library-service once per mode against the database of the running compose stack and prints the time until
+# the first GET /library/books succeeds, plus the resident set size at that moment. Build the artifacts first:
+#   jvm, cds: ./gradlew cdsArchive            aot: ./gradlew -Paot cdsArchive            native: ./gradlew -Pnative nativeCompile
+# The aot mode replays the CDS archive recorded by the -Paot build, so run it after that build rather than the plain one.
+set -eu
+DIR="$(cd "$(dirname "$0")/.." && pwd)"
+PORT="${PORT:-18080}"
+# Relative to build/cds: the CDS archive only matches the class path it was recorded with.
+JAR="$(cd "$DIR/build/cds" 2>/dev/null && ls library-service-*.jar | head -n 1 || true)"
+export DATABASE_URL="${DATABASE_URL:-jdbc:mysql://localhost:3306/librarydb}"
+export DATABASE_MIGRATE_ON_START=false JPA_DDL_AUTO=none SERVER_PORT="$PORT"
+
+now_ms() { perl -MTime::HiRes=time -e 'printf "%d\n", time * 1000'; }
+
+rss_kb() {
+  if [ -r "/proc/$1/status" ]; then
+    awk '/^VmRSS:/ { print $2 }' "/proc/$1/status"
+  else
+    ps -o rss= -p "$1" | tr -d ' '
+  fi
+}
+
+run() {
+  mode="$1"
+  shift
+  started="$(now_ms)"
+  (cd "$DIR/build/cds" 2>/dev/null || cd "$DIR"; exec "$@") >"$DIR/build/startup-$mode.log" 2>&1 &
+  pid=$!
+  until curl -sf -o /dev/null "http://localhost:$PORT/library/books?limit=1"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "$mode: exited before serving, see build/startup-$mode.log" >&2
+      return 1
+    fi
+    sleep 0.05
+  done
+  printf '%-7s first request after %6d ms, RSS %7d KB\n' "$mode" "$(( $(now_ms) - started ))" "$(rss_kb "$pid")"
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+}
+
+for mode in "${@:-jvm cds}"; do
+  for m in $mode; do
+    case "$m" in
+      jvm) run jvm java -jar "$JAR" ;;
+      cds) run cds java -XX:SharedArchiveFile=application.jsa -jar "$JAR" ;;
+      aot) run aot java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar "$JAR" ;;
+      native) run native "$DIR/build/native/nativeCompile/library-service" ;;
+      *) echo "unknown mode $m" >&2; exit 2 ;;
+    esac
+  done
+done
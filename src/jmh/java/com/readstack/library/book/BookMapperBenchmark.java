@@ -0,0 +1,47 @@
+package com.readstack.library.book;
+
+import com.readstack.library.book.dto.BookCreateUpdateDto;
+import com.readstack.library.book.dto.BookDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookMapperBenchmark {
+    private final BookMapper mapper = new BookMapperImpl();
+
+    private final Book book = Book.builder()
+            .id(1L)
+            .title("Clean Code")
+            .isbn("9780132350884")
+            .publishedYear(2008)
+            .build();
+    private final BookCreateUpdateDto input = BookCreateUpdateDto.builder()
+            .title("Clean Code: A Handbook of Agile Software Craftsmanship")
+            .isbn("9780132350884")
+            .publishedYear(2009)
+            .build();
+
+    @Benchmark
+    public BookDto toDTO() {
+        return mapper.toDTO(book);
+    }
+
+    @Benchmark
+    public Book toBook() {
+        return mapper.toBook(input);
+    }
+
+    @Benchmark
+    public Book updateBookFromDto() {
+        mapper.updateBookFromDto(input, book);
+        return book;
+    }
+}
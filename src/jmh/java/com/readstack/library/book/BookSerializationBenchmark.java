@@ -0,0 +1,96 @@
+package com.readstack.library.book;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.readstack.library.book.dto.BookDto;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization of list responses in each negotiable format, configured the way Spring Boot configures its
+ * ObjectMapper. {@link #toBytes} and {@link #toGzipBytes} also report the payload size in bytes as a secondary
+ * result, next to their timings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookSerializationBenchmark {
+    @Param({"1000", "100000"})
+    private int size;
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private List<BookDto> books;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setUp() throws IOException {
+        JsonFactory factory = switch (format) {
+            case "json" -> new JsonFactory();
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> throw new IllegalArgumentException(format);
+        };
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().factory(factory).build();
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, BookDto.class));
+        books = LongStream.rangeClosed(1, size)
+                .mapToObj(id -> BookDto.builder()
+                        .id(id)
+                        .title("Book title number " + id)
+                        .isbn(String.valueOf(9780000000000L + id))
+                        .publishedYear(1900 + (int) (id % 125))
+                        .build())
+                .toList();
+    }
+
+    /** Payload size of the last call; assigned rather than added up, so the secondary result reads as a size. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+    }
+
+    /** Streams to a discarding sink, which is what the servlet response does with its buffer. */
+    @Benchmark
+    public void toStream() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), books);
+    }
+
+    @Benchmark
+    public byte[] toBytes(PayloadSize payload) throws IOException {
+        byte[] bytes = writer.writeValueAsBytes(books);
+        payload.bytes = bytes.length;
+        return bytes;
+    }
+
+    /** What {@code server.compression} adds on top of serialization, at the JDK's default level like Tomcat. */
+    @Benchmark
+    public byte[] toGzipBytes(PayloadSize payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            writer.writeValue(gzip, books);
+        }
+        payload.bytes = bytes.size();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,44 @@
+package com.readstack.library.book;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.readstack.library.book.BookSpecs.titleContains;
+import static com.readstack.library.book.BookSpecs.yearGTE;
+import static com.readstack.library.book.BookSpecs.yearLTE;
+
+/**
+ * Building the Specification chain of {@code BookController.search}. Predicate translation needs a live
+ * EntityManager and is covered by the database round-trip, so only the composition is measured here.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookSpecsBenchmark {
+    private final String title = "Clean";
+    private final Integer fromYear = 2000;
+    private final Integer toYear = 2020;
+
+    @Benchmark
+    public Specification<Book> allFilters() {
+        return Specification.<Book>unrestricted()
+                .and(titleContains(title))
+                .and(yearGTE(fromYear))
+                .and(yearLTE(toYear));
+    }
+
+    @Benchmark
+    public Specification<Book> noFilters() {
+        return Specification.<Book>unrestricted()
+                .and(titleContains(null))
+                .and(yearGTE(null))
+                .and(yearLTE(null));
+    }
+}
@@ -0,0 +1,59 @@
+package com.readstack.library.book;
+
+import com.readstack.library.book.dto.BookCreateUpdateDto;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/** Bean Validation of the request body, as done for every POST and PUT. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookValidationBenchmark {
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    private final BookCreateUpdateDto valid = BookCreateUpdateDto.builder()
+            .title("Clean Code")
+            .isbn("9780132350884")
+            .publishedYear(2008)
+            .build();
+    private final BookCreateUpdateDto invalid = BookCreateUpdateDto.builder()
+            .title("")
+            .isbn("123456789012345678901")
+            .publishedYear(1400)
+            .build();
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<BookCreateUpdateDto>> validDto() {
+        return validator.validate(valid);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<BookCreateUpdateDto>> invalidDto() {
+        return validator.validate(invalid);
+    }
+}
@@ -2,8 +2,10 @@ package com.readstack.library;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+// JDBC stays the primary database access; the reactive read path builds its own R2DBC connection factory.
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class LibraryServiceApplication {
 	public static void main(String[] args) {
         SpringApplication.run(LibraryServiceApplication.class, args);
@@ -5,8 +5,10 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -16,14 +18,18 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
-@Table(name = "books", uniqueConstraints = @UniqueConstraint(columnNames = "isbn"))
+@DynamicUpdate
+@Table(name = "books",
+        uniqueConstraints = @UniqueConstraint(name = "uk_books_isbn", columnNames = "isbn"),
+        indexes = @Index(name = "idx_books_published_year_id", columnList = "published_year, id"))
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Book {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -41,4 +47,8 @@ public class Book {
     @Min(1450)
     @Max(2100)
     private Integer publishedYear;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
@@ -0,0 +1,125 @@
+package com.readstack.library.book;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Read-through cache for single-book lookups, keyed by id with a secondary ISBN to id mapping. Books are copied on
+ * the way in and out so callers can never mutate a cached instance.
+ *
+ * <p>A read that started before a write can finish after the write's eviction. An eviction therefore leaves a marker
+ * with the version it evicted, and {@link #put} only stores a book that is at least that new, so the old copy is
+ * never put back. Markers are kept apart from the books, so that finding one counts as the miss it is in the cache
+ * statistics, and only for {@link #MARKER_TTL}, as they only need to outlast the reads in flight.
+ */
+@Component
+public class BookCache {
+    public static final String BY_ID = "books";
+    public static final String BY_ISBN = "bookIdsByIsbn";
+
+    static final Duration MARKER_TTL = Duration.ofMinutes(1);
+
+    private static final long DELETED = Long.MAX_VALUE;
+
+    private final Cache byId;
+    private final Cache idsByIsbn;
+    private final ConcurrentMap<Object, Object> books;
+    /** Book id to the version last evicted: copies below it are out of date. */
+    private final ConcurrentMap<Object, Long> evicted = Caffeine.newBuilder()
+            .expireAfterWrite(MARKER_TTL)
+            .<Object, Long>build()
+            .asMap();
+
+    public BookCache(CacheManager cacheManager) {
+        this.byId = Objects.requireNonNull(cacheManager.getCache(BY_ID), "Missing cache " + BY_ID);
+        this.idsByIsbn = Objects.requireNonNull(cacheManager.getCache(BY_ISBN), "Missing cache " + BY_ISBN);
+        this.books = asMap(byId);
+    }
+
+    public Optional<Book> getById(Long id) {
+        return Optional.ofNullable(byId.get(id, Book.class)).map(BookCache::copy);
+    }
+
+    /**
+     * A changed ISBN can leave its old mapping behind when the change is only known by its new state, as for changes
+     * made on other instances, so the book found is checked against the ISBN asked for.
+     */
+    public Optional<Book> getByIsbn(String isbn) {
+        Optional<Book> book = Optional.ofNullable(idsByIsbn.get(isbn, Long.class)).flatMap(this::getById);
+        if (book.isPresent() && !book.get().getIsbn().equalsIgnoreCase(isbn)) {
+            idsByIsbn.evict(isbn);
+            return Optional.empty();
+        }
+        return book;
+    }
+
+    /** Stores {@code book} unless a newer copy is cached or a newer version has been evicted since it was read. */
+    public void put(Book book) {
+        Book copy = copy(book);
+        Object stored = books.compute(book.getId(),
+                (id, cached) -> Math.max(version(cached), evicted.getOrDefault(id, -1L)) > version(copy) ? cached : copy);
+        if (stored == copy) idsByIsbn.put(book.getIsbn(), book.getId());
+    }
+
+    /** Evicts the book and keeps reads of versions before it out of the cache. */
+    public void evict(Book book) {
+        evict(book, version(book));
+    }
+
+    /** Evicts the book and keeps every later read of it out of the cache. */
+    public void evictDeleted(Book book) {
+        evict(book, DELETED);
+    }
+
+    public void clear() {
+        byId.clear();
+        idsByIsbn.clear();
+        evicted.clear();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.type() == BookChangedEvent.Type.DELETED) {
+            evictDeleted(event.before());
+            return;
+        }
+        if (event.before() != null) evict(event.before());
+        if (event.after() != null) evict(event.after());
+    }
+
+    /** The marker is left while holding the book's entry, so a {@link #put} either sees it or is removed here. */
+    private void evict(Book book, long version) {
+        books.compute(book.getId(), (id, cached) -> {
+            evicted.merge(id, Math.max(version, version(cached)), Math::max);
+            return null;
+        });
+        idsByIsbn.evict(book.getIsbn());
+    }
+
+    private static long version(Object cached) {
+        if (cached instanceof Book book && book.getVersion() != null) return book.getVersion();
+        return -1;
+    }
+
+    private static Book copy(Book book) {
+        return book.toBuilder().build();
+    }
+
+    /** The store behind the cache, for the compare-and-set updates the {@link Cache} interface does not offer. */
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<Object, Object> asMap(Cache cache) {
+        return switch (cache.getNativeCache()) {
+            case com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine -> (ConcurrentMap<Object, Object>) caffeine.asMap();
+            case ConcurrentMap<?, ?> map -> (ConcurrentMap<Object, Object>) map;
+            default -> throw new IllegalStateException("Cache " + cache.getName() + " does not expose a concurrent map");
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.readstack.library.book;
+
+/**
+ * Published by {@link BookService} inside the writing transaction. {@code before} and {@code after} are detached
+ * snapshots, so listeners running after commit can read them safely.
+ */
+public record BookChangedEvent(Type type, Book before, Book after) {
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    public static BookChangedEvent created(Book after) {
+        return new BookChangedEvent(Type.CREATED, null, snapshot(after));
+    }
+
+    public static BookChangedEvent updated(Book before, Book after) {
+        return new BookChangedEvent(Type.UPDATED, snapshot(before), snapshot(after));
+    }
+
+    public static BookChangedEvent deleted(Book before) {
+        return new BookChangedEvent(Type.DELETED, snapshot(before), null);
+    }
+
+    public Long bookId() {
+        return after != null ? after.getId() : before.getId();
+    }
+
+    private static Book snapshot(Book book) {
+        return book.toBuilder().build();
+    }
+}
@@ -1,35 +1,65 @@
 package com.readstack.library.book;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.readstack.library.book.dto.BookBatchRequestDto;
 import com.readstack.library.book.dto.BookCreateUpdateDto;
 import com.readstack.library.book.dto.BookDto;
+import com.readstack.library.book.dto.BookPageDto;
+import com.readstack.library.book.dto.BookPatchDto;
+import com.readstack.library.book.dto.BookSuggestionDto;
+import com.readstack.library.book.dto.BookYearFacetDto;
+import com.readstack.library.book.facet.BookFacets;
+import com.readstack.library.book.hot.HotBooks;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.book.search.TitleSuggester;
+import com.readstack.library.catalog.CatalogVersion;
+import com.readstack.library.common.BadRequestException;
+import com.readstack.library.common.ETags;
+import com.readstack.library.common.HttpCachePolicy;
+import com.readstack.library.common.ratelimit.RateLimited;
 import jakarta.validation.Valid;
 import lombok.AllArgsConstructor;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
-import static com.readstack.library.book.BookSpecs.titleContains;
-import static com.readstack.library.book.BookSpecs.yearGTE;
-import static com.readstack.library.book.BookSpecs.yearLTE;
-
 @RestController
 @RequestMapping("library/books")
 @AllArgsConstructor
 public class BookController {
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int DEFAULT_SUGGESTIONS = 10;
+
     private BookService service;
-    private BookRepository repository;
     private BookMapper mapper;
+    private BookTitleIndex titleIndex;
+    private ObjectMapper objectMapper;
+    private CatalogVersion catalogVersion;
+    private HttpCachePolicy httpCachePolicy;
+    private HotBooks hotBooks;
+    private TitleSuggester suggester;
+    private BookFacets facets;
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
@@ -38,21 +68,80 @@ public class BookController {
         return mapper.toDTO(created);
     }
 
+    @RateLimited(RateLimited.Budget.QUERY)
     @GetMapping
-    public List<BookDto> list() {
-        return service.list().stream().map(mapper::toDTO).toList();
+    public ResponseEntity<BookPageDto> list(@RequestParam(defaultValue = "0") long after,
+                                            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                                            WebRequest request
+    ) {
+        // The stamp is read in the same transaction as the data, so both come from the same replica.
+        return catalogVersion.withCurrent(stamp -> {
+            String eTag = ETags.ofCatalog(stamp);
+            if (request.checkNotModified(eTag)) return null;
+
+            int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+            // One extra row tells us whether another page exists without a count query.
+            List<Book> books = service.listAfter(after, pageSize + 1);
+            List<BookDto> items = books.stream().limit(pageSize).map(mapper::toDTO).toList();
+            Long nextCursor = books.size() > pageSize ? items.getLast().getId() : null;
+            return cacheable(eTag, new BookPageDto(items, nextCursor));
+        });
+    }
+
+    @RateLimited(RateLimited.Budget.QUERY)
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody stream() {
+        ObjectWriter writer = objectMapper.writerFor(BookDto.class);
+        return outputStream -> service.forEach(book -> {
+            try {
+                outputStream.write(writer.writeValueAsBytes(mapper.toDTO(book)));
+                outputStream.write('\n');
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
     }
 
+    @RateLimited(RateLimited.Budget.GET)
     @GetMapping("/{id}")
-    public BookDto get(@PathVariable Long id) {
-        return mapper.toDTO(service.get(id));
+    public ResponseEntity<BookDto> get(@PathVariable Long id, WebRequest request) {
+        Book book = service.get(id);
+        hotBooks.recordBook(id);
+        String eTag = ETags.of(book.getVersion());
+        if (request.checkNotModified(eTag)) return null;
+        return cacheable(eTag, mapper.toDTO(book));
+    }
+
+    @RateLimited(RateLimited.Budget.GET)
+    @PostMapping("/batch")
+    public List<BookDto> batch(@RequestBody @Valid BookBatchRequestDto input) {
+        boolean byIds = input.getIds() != null && !input.getIds().isEmpty();
+        boolean byIsbns = input.getIsbns() != null && !input.getIsbns().isEmpty();
+        if (byIds == byIsbns) throw new BadRequestException("Provide either ids or isbns");
+        List<Book> books = byIds ? service.getAll(input.getIds()) : service.getAllByIsbn(input.getIsbns());
+        return books.stream().map(mapper::toDTO).toList();
+    }
+
+    @RateLimited(RateLimited.Budget.GET)
+    @GetMapping("/isbn/{isbn}")
+    public BookDto getByIsbn(@PathVariable String isbn) {
+        return mapper.toDTO(service.getByIsbn(isbn));
     }
 
     @PutMapping("/{id}")
-    public BookDto update(@PathVariable Long id, @RequestBody @Valid BookCreateUpdateDto input) {
-        Book existing = service.get(id);
-        mapper.updateBookFromDto(input, existing);
-        return mapper.toDTO(service.update(id, existing));
+    public ResponseEntity<BookDto> update(@PathVariable Long id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          @RequestBody @Valid BookCreateUpdateDto input) {
+        Book updated = service.update(id, mapper.toBook(input), ETags.parseVersion(ifMatch));
+        return withETag(updated);
+    }
+
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public ResponseEntity<BookDto> patch(@PathVariable Long id,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                         @RequestBody @Valid BookPatchDto input) {
+        Book patched = service.modify(id, ETags.parseVersion(ifMatch), book -> mapper.patchBook(input, book));
+        return withETag(patched);
     }
 
     @DeleteMapping("/{id}")
@@ -61,15 +150,76 @@ public class BookController {
         service.delete(id);
     }
 
+    /**
+     * Books by title and year range. Once the title index is ready, a title is matched word by word: every word of
+     * the query must start a word of the title, and the best matches come first (whole words above prefixes, then
+     * shorter titles, then ids). Before that, and without a title, the database answers instead, matching the title
+     * as a substring anywhere, as in {@code "lean"} for "Clean Code", in id order (year and id with a year range).
+     * A page beyond the last possible offset is empty.
+     */
+    @RateLimited(RateLimited.Budget.QUERY)
     @GetMapping("/search")
-    public List<BookDto> search(@RequestParam(required = false) String title,
-                             @RequestParam(required = false) Integer fromYear,
-                             @RequestParam(required = false) Integer toYear
+    public ResponseEntity<List<BookDto>> search(@RequestParam(required = false) String title,
+                                                @RequestParam(required = false) Integer fromYear,
+                                                @RequestParam(required = false) Integer toYear,
+                                                @RequestParam(defaultValue = "0") int page,
+                                                @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size,
+                                                WebRequest request
+    ) {
+        hotBooks.recordSearch(title, fromYear, toYear);
+        return catalogVersion.withCurrent(stamp -> {
+            String eTag = ETags.ofCatalog(stamp);
+            if (request.checkNotModified(eTag)) return null;
+
+            int pageSize = Math.clamp(size, 1, MAX_PAGE_SIZE);
+            int pageNumber = Math.max(page, 0);
+            long offset = Math.multiplyExact((long) pageNumber, pageSize);
+            if (offset > Integer.MAX_VALUE) return cacheable(eTag, List.<BookDto>of());
+            if (title != null && !title.isBlank() && titleIndex.isReady()) {
+                List<Long> ids = titleIndex.search(title, fromYear, toYear, offset, pageSize);
+                return cacheable(eTag, service.getAll(ids).stream().map(mapper::toDTO).toList());
+            }
+            return cacheable(eTag, service.search(title, fromYear, toYear, pageNumber, pageSize).stream().map(mapper::toDTO).toList());
+        });
+    }
+
+    /** Book counts per year or decade for the same filters as {@link #search}. */
+    @RateLimited(RateLimited.Budget.QUERY)
+    @GetMapping("/facets")
+    public ResponseEntity<List<BookYearFacetDto>> facets(@RequestParam(defaultValue = "year") String bucket,
+                                                         @RequestParam(required = false) String title,
+                                                         @RequestParam(required = false) Integer fromYear,
+                                                         @RequestParam(required = false) Integer toYear,
+                                                         WebRequest request
     ) {
-        Specification<Book> specification = Specification.<Book>unrestricted()
-                .and(titleContains(title))
-                .and(yearGTE(fromYear))
-                .and(yearLTE(toYear));
-        return repository.findAll(specification).stream().map(mapper::toDTO).toList();
+        int bucketYears = switch (bucket) {
+            case "year" -> 1;
+            case "decade" -> 10;
+            default -> throw new BadRequestException("bucket must be year or decade");
+        };
+        return catalogVersion.withCurrent(stamp -> {
+            String eTag = ETags.ofCatalog(stamp);
+            if (request.checkNotModified(eTag)) return null;
+            return cacheable(eTag, facets.countByYear(title, fromYear, toYear, bucketYears, stamp));
+        });
+    }
+
+    /** Typeahead for the search box; served from memory, so it is cheap enough for every keystroke. */
+    @RateLimited(RateLimited.Budget.GET)
+    @GetMapping("/suggest")
+    public List<BookSuggestionDto> suggest(@RequestParam String prefix,
+                                           @RequestParam(defaultValue = "" + DEFAULT_SUGGESTIONS) int limit) {
+        return suggester.suggest(prefix, limit).stream()
+                .map(suggestion -> new BookSuggestionDto(suggestion.id(), suggestion.title()))
+                .toList();
+    }
+
+    /** The same ETag covers the JSON, CBOR and Smile encodings, so caches have to key on Accept as well. */
+    private <T> ResponseEntity<T> cacheable(String eTag, T body) {
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).cacheControl(httpCachePolicy.cacheControl()).body(body);
+    }
+
+    private ResponseEntity<BookDto> withETag(Book book) {
+        return ResponseEntity.ok().eTag(ETags.of(book.getVersion())).varyBy(HttpHeaders.ACCEPT).body(mapper.toDTO(book));
     }
 }
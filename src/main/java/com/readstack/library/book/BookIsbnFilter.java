@@ -0,0 +1,344 @@
+package com.readstack.library.book;
+
+import com.readstack.library.book.dto.BookChangeDto;
+import com.readstack.library.book.dto.BookChangePageDto;
+import com.readstack.library.book.shard.BookShards;
+import com.readstack.library.catalog.BookChangeFeed;
+import com.readstack.library.common.BloomFilter;
+import com.readstack.library.common.GoneException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bloom filter of every stored ISBN, so lookups of unknown ISBNs and creates of new ones can skip the database.
+ * Until it has loaded, it answers "might contain" for everything.
+ *
+ * <p>It is loaded from the books table at startup, or restored from the snapshot written at the last shutdown. This
+ * instance's writes are added after commit. Writes of other instances arrive through the change feed, which is
+ * also how a restored snapshot catches up, so they only show up here within {@code refresh-interval}. Until then the
+ * filter gives false negatives for them. Creates can live with that, as the unique key still rejects the duplicate,
+ * so {@link #mightContain(String)} is for them. Reads must not answer 404 for a book that existed when they started,
+ * so {@link #mightContain(String, long)} only answers "absent" once the filter has caught up to that moment. Deleted
+ * and replaced ISBNs stay in the filter as false positives until it is rebuilt.
+ *
+ * <p>Refreshes run on a thread of their own, as a rebuild would hold the shared {@code @Scheduled} one for as long
+ * as it takes to scan the catalog.
+ */
+@Slf4j
+@Component
+public class BookIsbnFilter {
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM books";
+    private static final String ISBNS_SQL = "SELECT isbn FROM books";
+    private static final int FETCH_SIZE = 1000;
+    private static final int FEED_PAGE_SIZE = 1000;
+    /** "ISBNBLM1": identifies the snapshot format. */
+    private static final long SNAPSHOT_MAGIC = 0x4953424E424C4D31L;
+    private static final int SNAPSHOT_HEADER_BYTES = 3 * Long.BYTES + 2 * Integer.BYTES;
+    /** Rebuild once this share of the filtered ISBNs has been deleted or replaced. */
+    private static final double MAX_STALE_RATIO = 0.1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookChangeFeed changeFeed;
+    private final BookShards shards;
+    private final long expectedBooks;
+    private final double falsePositiveRate;
+    private final Path snapshotPath;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService refresher;
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final Counter absent;
+    private final Counter maybe;
+    private final Counter behind;
+
+    private volatile BloomFilter filter;
+    /** Receives concurrent additions while a rebuild streams the table. */
+    private volatile BloomFilter building;
+    private volatile long feedOffset;
+    /** {@link System#nanoTime()} when the last catch-up started: every ISBN committed before then is in the filter. */
+    private volatile long currentAsOf;
+    /** ISBNs the current filter was sized for; beyond that its false-positive rate climbs. */
+    private volatile long capacity;
+
+    public BookIsbnFilter(JdbcTemplate jdbcTemplate,
+                          BookChangeFeed changeFeed,
+                          BookShards shards,
+                          MeterRegistry registry,
+                          @Value("${library.books.isbn-filter.expected-books:1000000}") long expectedBooks,
+                          @Value("${library.books.isbn-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                          @Value("${library.books.isbn-filter.snapshot:}") String snapshot,
+                          @Value("${library.books.isbn-filter.refresh-interval:1s}") Duration refreshInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.changeFeed = changeFeed;
+        this.shards = shards;
+        this.expectedBooks = expectedBooks;
+        this.falsePositiveRate = falsePositiveRate;
+        this.snapshotPath = snapshot.isBlank() ? null : Path.of(snapshot);
+        this.refreshInterval = refreshInterval;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("isbn-filter-refresh").daemon().factory());
+        this.absent = lookups(registry, "absent");
+        this.maybe = lookups(registry, "maybe");
+        this.behind = lookups(registry, "behind");
+        Gauge.builder("library.books.isbn-filter.stale", stale, AtomicLong::get)
+                .description("Deleted or replaced ISBNs still set in the filter")
+                .register(registry);
+    }
+
+    /**
+     * For creates: {@code false} means no book with this ISBN had reached this instance by the last refresh, so the
+     * duplicate check can be skipped; {@code true} means the database must be asked.
+     */
+    public boolean mightContain(String isbn) {
+        BloomFilter current = filter;
+        if (current == null) return true;
+        boolean result = current.mightContain(normalize(isbn));
+        (result ? maybe : absent).increment();
+        return result;
+    }
+
+    /**
+     * For reads that started at {@code startedNanos}: {@code false} means no book with this ISBN existed then. While
+     * the filter has not caught up to that moment, a book created elsewhere may be missing from it, so the answer
+     * is {@code true} and the database decides.
+     */
+    public boolean mightContain(String isbn, long startedNanos) {
+        BloomFilter current = filter;
+        if (current == null) return true;
+        if (current.mightContain(normalize(isbn))) {
+            maybe.increment();
+            return true;
+        }
+        if (currentAsOf - startedNanos < 0) {
+            behind.increment();
+            return true;
+        }
+        absent.increment();
+        return false;
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!restore()) rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        // Counting is left to the change feed, which also carries this instance's changes.
+        if (event.after() != null) add(event.after().getIsbn());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRefresh() {
+        long interval = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops the refreshes before the last snapshot is written. */
+    @PreDestroy
+    public void close() {
+        refresher.shutdownNow();
+        save();
+    }
+
+    public void refresh() {
+        if (filter == null || !rebuildLock.tryLock()) return;
+        try {
+            catchUp();
+            boolean degraded = stale.get() > MAX_STALE_RATIO * Math.max(entries.get(), expectedBooks / 10)
+                    || entries.get() > capacity;
+            if (degraded) rebuild();
+        } catch (GoneException exception) {
+            log.info("ISBN filter fell behind the change feed retention, rebuilding");
+            rebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /** Loads every ISBN into a new filter, sized for at least twice the current catalog. */
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            long started = System.nanoTime();
+            // Changes from here on are replayed from the feed, so nothing committed during the scan is missed.
+            long head = changeFeed.head();
+            long count = shards.isEnabled() ? shards.count() : jdbcTemplate.queryForObject(COUNT_SQL, Long.class);
+            long freshCapacity = Math.max(expectedBooks, 2 * count);
+            BloomFilter fresh = BloomFilter.create(freshCapacity, falsePositiveRate);
+            building = fresh;
+            AtomicLong loaded = new AtomicLong();
+            if (shards.isEnabled()) {
+                shards.forEach(book -> {
+                    fresh.put(normalize(book.getIsbn()));
+                    loaded.incrementAndGet();
+                });
+            } else {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(ISBNS_SQL);
+                    statement.setFetchSize(FETCH_SIZE);
+                    return statement;
+                }, resultSet -> {
+                    fresh.put(normalize(resultSet.getString(1)));
+                    loaded.incrementAndGet();
+                });
+            }
+            filter = fresh;
+            building = null;
+            capacity = freshCapacity;
+            entries.set(loaded.get());
+            stale.set(0);
+            feedOffset = head;
+            currentAsOf = started;
+            log.info("Loaded {} ISBNs into the ISBN filter in {} ms", loaded.get(), (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            building = null;
+            rebuildLock.unlock();
+        }
+    }
+
+    public void save() {
+        BloomFilter current = filter;
+        if (snapshotPath == null || current == null) return;
+        rebuildLock.lock();
+        try {
+            long[] words = current.words();
+            if (snapshotPath.getParent() != null) Files.createDirectories(snapshotPath.getParent());
+            Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            long size = SNAPSHOT_HEADER_BYTES + (long) words.length * Long.BYTES;
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putLong(SNAPSHOT_MAGIC)
+                        .putLong(feedOffset)
+                        .putLong(entries.get())
+                        .putInt(current.numHashes())
+                        .putInt(words.length);
+                buffer.asLongBuffer().put(words);
+                buffer.force();
+            }
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            log.warn("Could not write ISBN filter snapshot {}", snapshotPath, exception);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /** Maps the snapshot and replays the change feed from its offset; {@code false} if a rebuild is needed instead. */
+    boolean restore() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) return false;
+        rebuildLock.lock();
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (channel.size() < SNAPSHOT_HEADER_BYTES || buffer.getLong() != SNAPSHOT_MAGIC) {
+                log.warn("Ignoring ISBN filter snapshot {} in an unknown format", snapshotPath);
+                return false;
+            }
+            long offset = buffer.getLong();
+            long snapshotEntries = buffer.getLong();
+            int numHashes = buffer.getInt();
+            long[] words = new long[buffer.getInt()];
+            if (buffer.remaining() != (long) words.length * Long.BYTES) return false;
+            buffer.asLongBuffer().get(words);
+
+            filter = new BloomFilter(numHashes, words);
+            feedOffset = offset;
+            entries.set(snapshotEntries);
+            // The sizing is not recorded, so the next refresh rebuilds only if the catalog outgrew the default.
+            capacity = Math.max(expectedBooks, snapshotEntries);
+            catchUp();
+            log.info("Restored the ISBN filter from {} at change offset {}", snapshotPath, offset);
+            return true;
+        } catch (IOException | RuntimeException exception) {
+            log.warn("Could not restore ISBN filter snapshot {}, rebuilding", snapshotPath, exception);
+            filter = null;
+            return false;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException exception) {
+            // A failed run would cancel the schedule; the next one resumes from the same feed offset.
+            log.warn("Could not refresh the ISBN filter", exception);
+        }
+    }
+
+    private void catchUp() {
+        long started = System.nanoTime();
+        long offset = feedOffset;
+        while (true) {
+            BookChangePageDto page = changeFeed.read(offset, FEED_PAGE_SIZE);
+            for (BookChangeDto change : page.getChanges()) {
+                switch (change.getType()) {
+                    case CREATED -> {
+                        add(change.getBook().getIsbn());
+                        entries.incrementAndGet();
+                    }
+                    // The previous ISBN is not in the feed; an update may have replaced it.
+                    case UPDATED -> add(change.getBook().getIsbn());
+                    case DELETED -> stale.incrementAndGet();
+                }
+            }
+            offset = page.getNextOffset();
+            if (page.getChanges().size() < FEED_PAGE_SIZE) break;
+        }
+        feedOffset = offset;
+        currentAsOf = started;
+    }
+
+    private void add(String isbn) {
+        String normalized = normalize(isbn);
+        // The rebuild target is read first: once it is gone, the swapped-in filter is the one to update.
+        BloomFilter next = building;
+        if (next != null) next.put(normalized);
+        BloomFilter current = filter;
+        if (current != null) current.put(normalized);
+    }
+
+    /** MySQL compares ISBNs case-insensitively, so {@code x} and {@code X} check digits must hash alike. */
+    private static String normalize(String isbn) {
+        return isbn.toUpperCase(Locale.ROOT);
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("library.books.isbn-filter.lookups")
+                .description("ISBN filter answers; absent ones skipped the database, behind ones were absent but not yet current")
+                .tag("result", result)
+                .register(registry);
+    }
+}
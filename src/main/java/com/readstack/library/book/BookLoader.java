@@ -0,0 +1,79 @@
+package com.readstack.library.book;
+
+import com.readstack.library.book.shard.BookShards;
+import com.readstack.library.common.BatchCoalescer;
+import com.readstack.library.common.db.PrimaryPin;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Loads single books by id for {@link BookService#get}. When coalescing is enabled, concurrent cache misses that
+ * arrive within a short window share one {@code IN (...)} query instead of one round-trip each, or one per shard
+ * when the books are sharded. Every miss then waits out the window, so coalescing only pays off under a steady
+ * stream of misses for different books and is off by default.
+ */
+@Component
+public class BookLoader {
+    private final BookRepository bookRepository;
+    private final BookShards shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final BatchCoalescer<Long, Book> coalescer;
+
+    public BookLoader(BookRepository bookRepository,
+                      BookShards shards,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${library.books.coalescing.enabled:false}") boolean coalescingEnabled,
+                      @Value("${library.books.coalescing.window:2ms}") Duration window,
+                      @Value("${library.books.coalescing.max-batch:100}") int maxBatch) {
+        this.bookRepository = bookRepository;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.coalescer = coalescingEnabled
+                ? new BatchCoalescer<>("book-loader", this::loadBatch, window, maxBatch)
+                : null;
+    }
+
+    /** Reads the primary even with replicas configured: the book is cached, and a replica copy may be out of date. */
+    public Optional<Book> load(Long id) {
+        if (coalescer == null) return onPrimary(() -> shards.isEnabled() ? shards.findById(id) : bookRepository.findById(id));
+        try {
+            return Optional.ofNullable(coalescer.load(id).join());
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) throw cause;
+            throw exception;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (coalescer != null) coalescer.close();
+    }
+
+    /** Runs on the coalescer's thread, outside the callers' transactions, so it opens a read-only one of its own. */
+    private Map<Long, Book> loadBatch(List<Long> ids) {
+        List<Book> books = onPrimary(() -> readOnlyTransaction.execute(status -> shards.isEnabled() ? shards.findAllById(ids) : bookRepository.findAllById(ids)));
+        return books.stream().collect(Collectors.toMap(Book::getId, Function.identity()));
+    }
+
+    private static <T> T onPrimary(Supplier<T> read) {
+        boolean wasPinned = PrimaryPin.pin();
+        try {
+            return read.get();
+        } finally {
+            PrimaryPin.release(wasPinned);
+        }
+    }
+}
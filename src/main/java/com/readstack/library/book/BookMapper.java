@@ -2,6 +2,7 @@ package com.readstack.library.book;
 
 import com.readstack.library.book.dto.BookCreateUpdateDto;
 import com.readstack.library.book.dto.BookDto;
+import com.readstack.library.book.dto.BookPatchDto;
 import org.mapstruct.BeanMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -13,9 +14,16 @@ public interface BookMapper {
     BookDto toDTO(Book book);
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     Book toBook(BookCreateUpdateDto bookDto);
 
     @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     void updateBookFromDto(BookCreateUpdateDto bookDto, @MappingTarget Book book);
+
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    void patchBook(BookPatchDto patch, @MappingTarget Book book);
 }
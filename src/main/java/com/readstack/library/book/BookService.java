@@ -1,42 +1,233 @@
 package com.readstack.library.book;
 
+import com.readstack.library.book.shard.BookShards;
+import com.readstack.library.common.ConflictException;
 import com.readstack.library.common.NotFoundException;
+import com.readstack.library.common.PreconditionFailedException;
+import com.readstack.library.common.db.ReplicaReads;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.AllArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static com.readstack.library.book.BookSpecs.titleContains;
+import static com.readstack.library.book.BookSpecs.yearGTE;
+import static com.readstack.library.book.BookSpecs.yearLTE;
 
 @Service
 @Transactional
+@Timed("library.book.service")
 @AllArgsConstructor
 public class BookService {
     private final  BookRepository bookRepository;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BookCache bookCache;
+    private final BookLoader bookLoader;
+    private final BookIsbnFilter isbnFilter;
+    private final BookShards shards;
 
+    /**
+     * A new ISBN, which the filter recognizes without a query, goes straight to the INSERT. A known one is checked
+     * first, so the duplicate is reported without a failed INSERT; the unique key still catches concurrent creates.
+     */
     public Book createBook(Book book) {
-        return bookRepository.save(book);
+        requireUnusedIsbn(book.getIsbn());
+        Book created = shards.isEnabled() ? shards.insert(book) : bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.created(created));
+        return created;
     }
 
     @Transactional(readOnly = true)
-    public List<Book> list() {
-        return bookRepository.findAll();
+    public List<Book> listAfter(long afterId, int limit) {
+        if (shards.isEnabled()) return shards.listAfter(afterId, limit);
+        return bookRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit));
     }
 
+    /**
+     * Walks the whole catalog in id order without materializing it: rows are read through a forward-only
+     * cursor and every entity is detached once handed over, so the persistence context stays empty. With shards,
+     * the shards are merged into the same order.
+     */
     @Transactional(readOnly = true)
+    public void forEach(Consumer<Book> action) {
+        if (shards.isEnabled()) {
+            shards.forEach(action);
+            return;
+        }
+        try (Stream<Book> books = bookRepository.streamAllByOrderByIdAsc()) {
+            books.forEach(book -> {
+                action.accept(book);
+                entityManager.detach(book);
+            });
+        }
+    }
+
+    /**
+     * Does not open a transaction of its own: a cache miss may wait for a coalesced batch in {@link BookLoader},
+     * and must not hold a connection while doing so.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Book get(Long id) {
-        return bookRepository.findById(id).orElseThrow(() -> new NotFoundException("Book not found: " + id));
+        return bookCache.getById(id).orElseGet(() -> {
+            Book book = bookLoader.load(id).orElseThrow(() -> new NotFoundException("Book not found: " + id));
+            cache(book);
+            return book;
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public Book getByIsbn(String isbn) {
+        long started = System.nanoTime();
+        return bookCache.getByIsbn(isbn).orElseGet(() -> {
+            if (!isbnFilter.mightContain(isbn, started)) throw new NotFoundException("Book not found for ISBN: " + isbn);
+            Book book = (shards.isEnabled() ? shards.findByIsbn(isbn) : bookRepository.findByIsbn(isbn))
+                    .orElseThrow(() -> new NotFoundException("Book not found for ISBN: " + isbn));
+            cache(book);
+            return book;
+        });
+    }
+
+    /**
+     * Returns the given books in the order of {@code ids}, skipping unknown ids. Cached books are served from the
+     * cache and all misses are loaded with one query.
+     */
+    @Transactional(readOnly = true)
+    public List<Book> getAll(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, Book> byId = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            bookCache.getById(id).ifPresentOrElse(book -> byId.put(id, book), () -> misses.add(id));
+        }
+        if (!misses.isEmpty()) {
+            (shards.isEnabled() ? shards.findAllById(misses) : bookRepository.findAllById(misses)).forEach(book -> {
+                cache(book);
+                byId.put(book.getId(), book);
+            });
+        }
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Database search used until the title index is ready, and for year-only filters. Runs in a read-only
+     * transaction so it can be routed to a replica.
+     */
+    @Transactional(readOnly = true)
+    public List<Book> search(String title, Integer fromYear, Integer toYear, int page, int size) {
+        if (shards.isEnabled()) return shards.search(title, fromYear, toYear, page, size);
+        Specification<Book> specification = Specification.<Book>unrestricted()
+                .and(titleContains(title))
+                .and(yearGTE(fromYear))
+                .and(yearLTE(toYear));
+        // Year ranges are served by the (published_year, id) index, which also yields this order for free.
+        Sort order = fromYear != null || toYear != null ? Sort.by("publishedYear", "id") : Sort.by("id");
+        return bookRepository.findAll(specification, PageRequest.of(page, size, order)).getContent();
+    }
+
+    /** ISBN counterpart of {@link #getAll(List)}. */
+    @Transactional(readOnly = true)
+    public List<Book> getAllByIsbn(List<String> isbns) {
+        if (isbns.isEmpty()) return List.of();
+        long started = System.nanoTime();
+        Map<String, Book> byIsbn = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String isbn : new LinkedHashSet<>(isbns)) {
+            bookCache.getByIsbn(isbn).ifPresentOrElse(book -> byIsbn.put(isbn, book), () -> {
+                if (isbnFilter.mightContain(isbn, started)) misses.add(isbn);
+            });
+        }
+        if (!misses.isEmpty()) {
+            (shards.isEnabled() ? shards.findAllByIsbn(misses) : bookRepository.findAllByIsbnIn(misses)).forEach(book -> {
+                cache(book);
+                byIsbn.put(book.getIsbn(), book);
+            });
+        }
+        return isbns.stream().map(byIsbn::get).filter(Objects::nonNull).toList();
     }
 
     public Book update(Long id, Book patch) {
-        Book book = get(id);
-        book.setTitle(patch.getTitle());
-        book.setIsbn(patch.getIsbn());
-        book.setPublishedYear(patch.getPublishedYear());
-        return bookRepository.save(book);
+        return update(id, patch, null);
+    }
+
+    /** Replaces every field of the book; {@code expectedVersion}, when given, must match the stored version. */
+    public Book update(Long id, Book patch, Long expectedVersion) {
+        return modify(id, expectedVersion, book -> {
+            book.setTitle(patch.getTitle());
+            book.setIsbn(patch.getIsbn());
+            book.setPublishedYear(patch.getPublishedYear());
+        });
+    }
+
+    /**
+     * Loads the book once and applies {@code changes} to the managed entity. Because {@link Book} uses dynamic
+     * updates, the flush writes only the columns that actually changed, guarded by the optimistic version check.
+     */
+    public Book modify(Long id, Long expectedVersion, Consumer<Book> changes) {
+        Book book = load(id);
+        if (expectedVersion != null && !expectedVersion.equals(book.getVersion())) {
+            throw new PreconditionFailedException("Book " + id + " is at version " + book.getVersion() + ", not " + expectedVersion);
+        }
+        Book before = book.toBuilder().build();
+        changes.accept(book);
+        if (sameContent(before, book)) return book;
+        if (!Objects.equals(before.getIsbn(), book.getIsbn())) requireUnusedIsbn(book.getIsbn());
+        // Flush now so the returned entity carries the incremented version for the response ETag, and so a
+        // constraint violation surfaces here, translated like any repository exception.
+        Book updated = shards.isEnabled() ? shards.update(book, before.getIsbn()) : bookRepository.saveAndFlush(book);
+        eventPublisher.publishEvent(BookChangedEvent.updated(before, updated));
+        return updated;
     }
 
     public void delete(Long id) {
-        if (!bookRepository.existsById(id)) throw new NotFoundException("Book not found: " + id);
-        bookRepository.deleteById(id);
+        Book book = load(id);
+        if (shards.isEnabled()) {
+            shards.delete(book);
+        } else {
+            bookRepository.delete(book);
+        }
+        eventPublisher.publishEvent(BookChangedEvent.deleted(book));
+    }
+
+    private static boolean sameContent(Book before, Book after) {
+        return Objects.equals(before.getTitle(), after.getTitle())
+                && Objects.equals(before.getIsbn(), after.getIsbn())
+                && Objects.equals(before.getPublishedYear(), after.getPublishedYear());
+    }
+
+    private void requireUnusedIsbn(String isbn) {
+        if (isbnFilter.mightContain(isbn) && (shards.isEnabled() ? shards.existsByIsbn(isbn) : bookRepository.existsByIsbn(isbn))) {
+            throw new ConflictException("A book with ISBN " + isbn + " already exists");
+        }
+    }
+
+    /**
+     * A replica can lag behind a write whose eviction has already run, and without a newer eviction marker left in
+     * the cache its old row would be served for the rest of the TTL. Such rows are returned but not cached; the
+     * single-book loads in {@link BookLoader} read the primary so the cache still fills.
+     */
+    private void cache(Book book) {
+        if (!ReplicaReads.inTransaction()) bookCache.put(book);
+    }
+
+    /** Writes always start from the managed entity, never from a cached copy. */
+    private Book load(Long id) {
+        return (shards.isEnabled() ? shards.findById(id) : bookRepository.findById(id)).orElseThrow(() -> new NotFoundException("Book not found: " + id));
     }
 }
@@ -0,0 +1,161 @@
+package com.readstack.library.book.bulk;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.dto.BookImportReport;
+import com.readstack.library.book.shard.BookShards;
+import com.readstack.library.common.IntegrityViolations;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Writes import rows with plain JDBC batches, which Hibernate cannot do for {@code IDENTITY} ids. With
+ * {@code rewriteBatchedStatements} MySQL receives each batch as a single multi-row INSERT. Sharded books are written
+ * as one batch per shard.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookBatchWriter {
+    static final String INSERT_SQL = "INSERT INTO books (title, isbn, published_year, version) VALUES (?, ?, ?, 0)";
+    private static final String EXISTING_ISBNS_SQL = "SELECT isbn FROM books WHERE isbn IN (:isbns)";
+    private static final String INSERTED_BOOKS_SQL = "SELECT id, title, isbn, published_year, version FROM books WHERE isbn IN (:isbns)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final BookShards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Inserts every row whose ISBN is neither repeated within the batch nor already stored. If the batch still
+     * fails, because a concurrent writer claimed one of the ISBNs in between or the database rejects a row, it is
+     * retried row by row so only the offending rows fail.
+     */
+    public BookImportReport.Batch write(int batchNumber, List<ImportRow> rows) {
+        return write(batchNumber, rows, book -> {
+        });
+    }
+
+    /** As {@link #write(int, List)}, additionally handing every inserted book, with its generated id, to {@code onCreated}. */
+    public BookImportReport.Batch write(int batchNumber, List<ImportRow> rows, Consumer<Book> onCreated) {
+        List<BookImportReport.RowFailure> failures = new ArrayList<>();
+        List<ImportRow> candidates = withoutKnownDuplicates(rows, failures);
+
+        int imported = 0;
+        for (List<ImportRow> group : byShard(candidates)) {
+            imported += insertOrRetry(group, onCreated, failures);
+        }
+
+        return BookImportReport.Batch.builder()
+                .batch(batchNumber)
+                .firstLine(rows.getFirst().line())
+                .lastLine(rows.getLast().line())
+                .imported(imported)
+                .failures(failures)
+                .build();
+    }
+
+    private int insertOrRetry(List<ImportRow> rows, Consumer<Book> onCreated, List<BookImportReport.RowFailure> failures) {
+        try {
+            insert(rows, onCreated);
+            return rows.size();
+        } catch (DataIntegrityViolationException batchException) {
+            int imported = 0;
+            for (ImportRow row : rows) {
+                try {
+                    insert(List.of(row), onCreated);
+                    imported++;
+                } catch (DataIntegrityViolationException rowException) {
+                    failures.add(failure(row, rejection(rowException)));
+                }
+            }
+            return imported;
+        }
+    }
+
+    /** Each shard commits its batch on its own, so a duplicate must only roll back the rows of its shard. */
+    private Collection<List<ImportRow>> byShard(List<ImportRow> rows) {
+        if (!shards.isEnabled()) return List.of(rows);
+        Map<Integer, List<ImportRow>> groups = new TreeMap<>();
+        rows.forEach(row -> groups.computeIfAbsent(shards.shardFor(row.book().getIsbn()), shard -> new ArrayList<>()).add(row));
+        return groups.values();
+    }
+
+    private List<ImportRow> withoutKnownDuplicates(List<ImportRow> rows, List<BookImportReport.RowFailure> failures) {
+        List<String> isbns = rows.stream().map(row -> row.book().getIsbn()).toList();
+        Set<String> stored = shards.isEnabled()
+                ? shards.existingIsbns(isbns)
+                : new HashSet<>(jdbcTemplate.queryForList(EXISTING_ISBNS_SQL, Map.of("isbns", isbns), String.class));
+        Set<String> seen = new HashSet<>();
+        List<ImportRow> candidates = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            String isbn = row.book().getIsbn();
+            if (stored.contains(isbn)) {
+                failures.add(failure(row, "Duplicate ISBN"));
+            } else if (!seen.add(isbn)) {
+                failures.add(failure(row, "Duplicate ISBN within batch"));
+            } else {
+                candidates.add(row);
+            }
+        }
+        return candidates;
+    }
+
+    private void insert(List<ImportRow> rows, Consumer<Book> onCreated) {
+        if (rows.isEmpty()) return;
+        List<Book> created = transactionTemplate.execute(status -> {
+            if (shards.isEnabled()) {
+                List<Book> inserted = shards.insertAll(shards.shardFor(rows.getFirst().book().getIsbn()),
+                        rows.stream().map(ImportRow::book).toList());
+                inserted.forEach(book -> eventPublisher.publishEvent(BookChangedEvent.created(book)));
+                return inserted;
+            }
+            jdbcTemplate.getJdbcOperations().batchUpdate(INSERT_SQL, rows, rows.size(), (statement, row) -> {
+                statement.setString(1, row.book().getTitle());
+                statement.setString(2, row.book().getIsbn());
+                statement.setObject(3, row.book().getPublishedYear(), Types.INTEGER);
+            });
+            return publishCreated(rows);
+        });
+        created.forEach(onCreated);
+    }
+
+    /** Re-reads the generated ids so the created events look exactly like those of single creates. */
+    private List<Book> publishCreated(List<ImportRow> rows) {
+        List<Book> created = jdbcTemplate.query(INSERTED_BOOKS_SQL, Map.of("isbns", rows.stream().map(row -> row.book().getIsbn()).toList()),
+                (resultSet, rowNumber) -> Book.builder()
+                        .id(resultSet.getLong("id"))
+                        .title(resultSet.getString("title"))
+                        .isbn(resultSet.getString("isbn"))
+                        .publishedYear(resultSet.getObject("published_year", Integer.class))
+                        .version(resultSet.getLong("version"))
+                        .build()
+        );
+        created.forEach(book -> eventPublisher.publishEvent(BookChangedEvent.created(book)));
+        return created;
+    }
+
+    /** Worded here rather than passing on the driver's message, as the HTTP error responses do. */
+    static String rejection(DataIntegrityViolationException exception) {
+        if (IntegrityViolations.isDuplicateIsbn(exception)) return "Duplicate ISBN";
+        if (IntegrityViolations.isDataException(exception)) return "A value is too long or out of range";
+        return "Violates a database constraint";
+    }
+
+    private static BookImportReport.RowFailure failure(ImportRow row, String message) {
+        return new BookImportReport.RowFailure(row.line(), row.book().getIsbn(), message);
+    }
+}
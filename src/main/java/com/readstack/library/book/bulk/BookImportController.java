@@ -0,0 +1,30 @@
+package com.readstack.library.book.bulk;
+
+import com.readstack.library.book.dto.BookImportReport;
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("library/books/import")
+@AllArgsConstructor
+public class BookImportController {
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private BookImportService importService;
+
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BookImportReport importNdjson(InputStream body) throws IOException {
+        return importService.importBooks(body, BookImportFormat.NDJSON);
+    }
+
+    @PostMapping(consumes = TEXT_CSV_VALUE)
+    public BookImportReport importCsv(InputStream body) throws IOException {
+        return importService.importBooks(body, BookImportFormat.CSV);
+    }
+}
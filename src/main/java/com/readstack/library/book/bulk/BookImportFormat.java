@@ -0,0 +1,8 @@
+package com.readstack.library.book.bulk;
+
+public enum BookImportFormat {
+    /** One {@code BookCreateUpdateDto} JSON object per line. */
+    NDJSON,
+    /** A {@code title,isbn,publishedYear} header followed by one book per line. */
+    CSV
+}
@@ -0,0 +1,149 @@
+package com.readstack.library.book.bulk;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.dto.BookCreateUpdateDto;
+import com.readstack.library.book.dto.BookImportReport;
+import com.readstack.library.common.BadRequestException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reads an import body line by line, validates each record and hands valid rows to {@link BookBatchWriter} in
+ * fixed-size batches, so memory use is bounded by the batch size rather than the feed size.
+ */
+@Service
+public class BookImportService {
+    private static final List<String> CSV_HEADER = List.of("title", "isbn", "publishedYear");
+
+    private final BookBatchWriter batchWriter;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+
+    public BookImportService(BookBatchWriter batchWriter, Validator validator, ObjectMapper objectMapper,
+                             @Value("${library.import.batch-size:1000}") int batchSize) {
+        this.batchWriter = batchWriter;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    public BookImportReport importBooks(InputStream body, BookImportFormat format) throws IOException {
+        List<BookImportReport.Batch> batches = new ArrayList<>();
+        List<BookImportReport.RowFailure> rejected = new ArrayList<>();
+        List<ImportRow> pending = new ArrayList<>(batchSize);
+        long totalRows = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            long lineNumber = 0;
+            boolean expectHeader = format == BookImportFormat.CSV;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+                if (expectHeader) {
+                    // The first non-blank line, so a file that starts with an empty line still has its header read.
+                    requireCsvHeader(line);
+                    expectHeader = false;
+                    continue;
+                }
+                totalRows++;
+                try {
+                    BookCreateUpdateDto book = format == BookImportFormat.CSV ? parseCsv(line) : parseJson(line);
+                    String violations = validate(book);
+                    if (violations != null) {
+                        rejected.add(new BookImportReport.RowFailure(lineNumber, book.getIsbn(), violations));
+                        continue;
+                    }
+                    pending.add(new ImportRow(lineNumber, book));
+                } catch (IllegalArgumentException exception) {
+                    rejected.add(new BookImportReport.RowFailure(lineNumber, null, exception.getMessage()));
+                }
+                if (pending.size() == batchSize || rejected.size() == batchSize) {
+                    batches.add(flush(batches.size() + 1, pending, rejected));
+                }
+            }
+        }
+        if (!pending.isEmpty() || !rejected.isEmpty()) {
+            batches.add(flush(batches.size() + 1, pending, rejected));
+        }
+
+        long imported = batches.stream().mapToLong(BookImportReport.Batch::getImported).sum();
+        return BookImportReport.builder()
+                .totalRows(totalRows)
+                .imported(imported)
+                .failed(totalRows - imported)
+                .batches(batches)
+                .build();
+    }
+
+    /** Writes the pending rows and folds the rows rejected during parsing into the same batch report. */
+    private BookImportReport.Batch flush(int batchNumber, List<ImportRow> pending, List<BookImportReport.RowFailure> rejected) {
+        BookImportReport.Batch batch = pending.isEmpty()
+                ? new BookImportReport.Batch(batchNumber, rejected.getFirst().getLine(), rejected.getLast().getLine(), 0, new ArrayList<>())
+                : batchWriter.write(batchNumber, List.copyOf(pending));
+        if (!rejected.isEmpty()) {
+            batch.getFailures().addAll(rejected);
+            batch.getFailures().sort(Comparator.comparingLong(BookImportReport.RowFailure::getLine));
+            batch.setFirstLine(Math.min(batch.getFirstLine(), rejected.getFirst().getLine()));
+        }
+        pending.clear();
+        rejected.clear();
+        return batch;
+    }
+
+    private BookCreateUpdateDto parseJson(String line) {
+        try {
+            return objectMapper.readValue(line, BookCreateUpdateDto.class);
+        } catch (JsonProcessingException exception) {
+            throw new IllegalArgumentException("Malformed JSON: " + exception.getOriginalMessage());
+        }
+    }
+
+    private BookCreateUpdateDto parseCsv(String line) {
+        List<String> fields = CsvLine.split(line);
+        if (fields.size() != CSV_HEADER.size()) {
+            throw new IllegalArgumentException("Expected " + CSV_HEADER.size() + " columns but found " + fields.size());
+        }
+        String year = fields.get(2).trim();
+        try {
+            return BookCreateUpdateDto.builder()
+                    .title(fields.get(0))
+                    .isbn(fields.get(1).trim())
+                    .publishedYear(year.isEmpty() ? null : Integer.valueOf(year))
+                    .build();
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("publishedYear: not a number");
+        }
+    }
+
+    private void requireCsvHeader(String line) {
+        List<String> header = CsvLine.split(line).stream().map(String::trim).toList();
+        if (!header.equals(CSV_HEADER)) {
+            throw new BadRequestException("CSV header must be " + String.join(",", CSV_HEADER));
+        }
+    }
+
+    private String validate(BookCreateUpdateDto book) {
+        Set<ConstraintViolation<BookCreateUpdateDto>> violations = validator.validate(book);
+        if (violations.isEmpty()) return null;
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+}
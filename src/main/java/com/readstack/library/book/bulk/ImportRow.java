@@ -0,0 +1,6 @@
+package com.readstack.library.book.bulk;
+
+import com.readstack.library.book.dto.BookCreateUpdateDto;
+
+public record ImportRow(long line, BookCreateUpdateDto book) {
+}
@@ -0,0 +1,27 @@
+package com.readstack.library.book.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookBatchRequestDto {
+    public static final int MAX_KEYS = 500;
+
+    @Size(max = MAX_KEYS)
+    private List<@NotNull Long> ids;
+
+    @Size(max = MAX_KEYS)
+    private List<@NotBlank String> isbns;
+}
@@ -0,0 +1,26 @@
+package com.readstack.library.book.dto;
+
+import com.readstack.library.book.BookChangedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookChangeDto {
+    private long offset;
+    private BookChangedEvent.Type type;
+    private Long bookId;
+    /** State after the change; for deletions the last state before it. */
+    private BookDto book;
+    private Instant changedAt;
+    /** Catalog stamp the change was committed with, shared by the changes of one transaction; absent on old changes. */
+    private Long catalogVersion;
+}
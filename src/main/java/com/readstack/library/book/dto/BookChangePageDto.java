@@ -0,0 +1,20 @@
+package com.readstack.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookChangePageDto {
+    private List<BookChangeDto> changes;
+    /** Pass as {@code after} to continue; equals the requested offset when nothing new arrived. */
+    private long nextOffset;
+}
@@ -16,4 +16,5 @@ public class BookDto {
     private String title;
     private String isbn;
     private Integer publishedYear;
+    private Long version;
 }
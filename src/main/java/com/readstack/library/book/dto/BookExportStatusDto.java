@@ -0,0 +1,37 @@
+package com.readstack.library.book.dto;
+
+import com.readstack.library.book.export.BookExportCompression;
+import com.readstack.library.book.export.BookExportFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class BookExportStatusDto {
+    private UUID id;
+    private State state;
+    private BookExportFormat format;
+    private BookExportCompression compression;
+    /** Rows and file bytes written up to the last checkpoint; a resumed export continues from there. */
+    private long rows;
+    private long bytes;
+    /** Id of the last exported book at the last checkpoint. */
+    private long lastId;
+    private Instant createdAt;
+    private Instant finishedAt;
+    /** Why the export failed. */
+    private String message;
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+}
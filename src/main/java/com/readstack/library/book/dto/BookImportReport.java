@@ -0,0 +1,45 @@
+package com.readstack.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookImportReport {
+    private long totalRows;
+    private long imported;
+    private long failed;
+    private List<Batch> batches;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Batch {
+        private int batch;
+        private long firstLine;
+        private long lastLine;
+        private int imported;
+        private List<RowFailure> failures;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class RowFailure {
+        private long line;
+        private String isbn;
+        private String message;
+    }
+}
@@ -0,0 +1,28 @@
+package com.readstack.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class BookIngestStatusDto {
+    private UUID ticket;
+    private State state;
+    private String isbn;
+    /** Set once the book has been written. */
+    private Long bookId;
+    /** Why the book was rejected. */
+    private String message;
+
+    public enum State {
+        PENDING, CREATED, FAILED
+    }
+}
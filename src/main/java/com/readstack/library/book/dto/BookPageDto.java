@@ -0,0 +1,20 @@
+package com.readstack.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookPageDto {
+    private List<BookDto> items;
+    /** Id to pass as {@code after} for the next page, or {@code null} on the last page. */
+    private Long nextCursor;
+}
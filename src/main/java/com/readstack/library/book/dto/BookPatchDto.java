@@ -0,0 +1,30 @@
+package com.readstack.library.book.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/** Partial update: absent (null) fields are left unchanged, present ones follow the create/update rules. */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookPatchDto {
+    @Pattern(regexp = "(?s).*\\S.*", message = "must not be blank")
+    private String title;
+
+    @Pattern(regexp = "(?s).*\\S.*", message = "must not be blank")
+    @Size(max = 20)
+    private String isbn;
+
+    @Min(1450)
+    @Max(2100)
+    private Integer publishedYear;
+}
@@ -0,0 +1,19 @@
+package com.readstack.library.book.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookYearFacetDto {
+    /** First and last published year of the bucket; both {@code null} for books without a year. */
+    private Integer fromYear;
+    private Integer toYear;
+    private long count;
+}
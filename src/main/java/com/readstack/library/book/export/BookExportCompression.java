@@ -0,0 +1,17 @@
+package com.readstack.library.book.export;
+
+public enum BookExportCompression {
+    NONE(""),
+    /** Written as a series of gzip members, one per checkpoint; any gzip reader sees a single stream. */
+    GZIP(".gz");
+
+    private final String extension;
+
+    BookExportCompression(String extension) {
+        this.extension = extension;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
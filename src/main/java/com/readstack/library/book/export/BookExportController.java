@@ -0,0 +1,154 @@
+package com.readstack.library.book.export;
+
+import com.readstack.library.book.dto.BookExportStatusDto;
+import com.readstack.library.common.BadRequestException;
+import com.readstack.library.common.ConflictException;
+import com.readstack.library.common.NotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Full-catalog exports for bulk consumers, instead of paging through {@code GET /library/books}. {@code POST} answers
+ * {@code 202 Accepted} with the status URL in {@code Location}; the finished file is downloaded from
+ * {@code /{id}/file}, which honors a single byte range so interrupted downloads can continue.
+ */
+@RestController
+@RequestMapping("library/books/exports")
+@AllArgsConstructor
+public class BookExportController {
+    private static final String GZIP_MEDIA_TYPE = "application/gzip";
+    /** Set by Tomcat when the connector can send a file straight from the page cache to the socket. */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private BookExportService exportService;
+
+    @PostMapping
+    public ResponseEntity<BookExportStatusDto> start(@RequestParam(defaultValue = "ndjson") String format,
+                                                     @RequestParam(defaultValue = "gzip") String compression) {
+        BookExportStatusDto job = exportService.start(
+                parse(BookExportFormat.class, format, "format must be csv or ndjson"),
+                parse(BookExportCompression.class, compression, "compression must be gzip or none"));
+        return ResponseEntity
+                .accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequestUri()
+                        .path("/{id}")
+                        .buildAndExpand(job.getId())
+                        .toUri())
+                .body(job);
+    }
+
+    @GetMapping("/{id}")
+    public BookExportStatusDto status(@PathVariable UUID id) {
+        return find(id);
+    }
+
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<BookExportStatusDto> resume(@PathVariable UUID id) {
+        return ResponseEntity.accepted().body(exportService.resume(id));
+    }
+
+    /**
+     * Hands the file to Tomcat's sendfile where the connector supports it, so the bytes never pass through the JVM;
+     * elsewhere it falls back to {@link FileChannel#transferTo}.
+     */
+    @GetMapping("/{id}/file")
+    public void download(@PathVariable UUID id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        BookExportStatusDto job = find(id);
+        if (job.getState() != BookExportStatusDto.State.COMPLETED) {
+            throw new ConflictException("Export " + id + " is " + job.getState() + ", the file is not ready");
+        }
+        Path file = exportService.file(job);
+        long length = Files.size(file);
+        String eTag = "\"" + id + "\"";
+        long start = 0;
+        long end = length - 1;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(file.getFileName().toString()).build().toString());
+        response.setContentType(job.getCompression() == BookExportCompression.GZIP ? GZIP_MEDIA_TYPE : job.getFormat().mediaType());
+
+        List<HttpRange> ranges = ranges(request, eTag);
+        // Several ranges at once are answered with the whole file, which RFC 9110 allows.
+        if (ranges.size() == 1) {
+            start = ranges.getFirst().getRangeStart(length);
+            if (start >= length) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            end = ranges.getFirst().getRangeEnd(length);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setContentLengthLong(end - start + 1);
+        send(file, start, end + 1, request, response);
+    }
+
+    private BookExportStatusDto find(UUID id) {
+        return exportService.status(id).orElseThrow(() -> new NotFoundException("Unknown export: " + id));
+    }
+
+    /** The requested ranges, or none if there are none, they are malformed, or {@code If-Range} names another file. */
+    private static List<HttpRange> ranges(HttpServletRequest request, String eTag) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range == null || (ifRange != null && !ifRange.equals(eTag))) return List.of();
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException exception) {
+            return List.of();
+        }
+    }
+
+    private static void send(Path file, long start, long end, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            for (long position = start; position < end; ) {
+                position += channel.transferTo(position, end - position, target);
+            }
+        }
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String message) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException exception) {
+            throw new BadRequestException(message);
+        }
+    }
+}
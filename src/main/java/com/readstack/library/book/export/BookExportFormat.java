@@ -0,0 +1,24 @@
+package com.readstack.library.book.export;
+
+public enum BookExportFormat {
+    /** An {@code id,title,isbn,publishedYear,version} header followed by one book per line. */
+    CSV(".csv", "text/csv"),
+    /** One {@code BookDto} JSON object per line. */
+    NDJSON(".ndjson", "application/x-ndjson");
+
+    private final String extension;
+    private final String mediaType;
+
+    BookExportFormat(String extension, String mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+}
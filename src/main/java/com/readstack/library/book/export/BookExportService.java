@@ -0,0 +1,390 @@
+package com.readstack.library.book.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookRepository;
+import com.readstack.library.book.dto.BookDto;
+import com.readstack.library.book.dto.BookExportStatusDto;
+import com.readstack.library.book.shard.BookShards;
+import com.readstack.library.common.ConflictException;
+import com.readstack.library.common.NotFoundException;
+import com.readstack.library.common.ratelimit.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the whole catalog to a file in the background. Each export reads the books table in id order, one keyset
+ * page per short read-only transaction so replicas serve it and no snapshot is held open for the length of the
+ * export, and streams the rows through a {@link FileChannel}. Exports run one at a time on a minimum-priority thread,
+ * optionally held to {@code max-rows-per-second}, so they take spare capacity only.
+ *
+ * <p>Every {@code checkpoint-rows} rows the file is flushed and the position, row count and last id are saved next to
+ * it. With gzip, each checkpoint also closes a gzip member. An export stopped by a shutdown resumes on the next start,
+ * and a failed one resumes on request: the file is cut back to the last checkpoint and paging restarts after its last
+ * id. Each row is exported as it is when its page is read, so a long export is not one consistent snapshot.
+ *
+ * <p>Sharded books are paged the same way, each page merged across the shards.
+ *
+ * <p>Jobs and files are local to the instance that runs them.
+ */
+@Slf4j
+@Service
+public class BookExportService {
+    private static final String SELECT_SQL = "SELECT id, title, isbn, published_year, version FROM books WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String CSV_HEADER = "id,title,isbn,publishedYear,version\n";
+    private static final String STATUS_EXTENSION = ".json";
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookShards shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter bookWriter;
+    private final Path directory;
+    private final long checkpointRows;
+    private final double maxRowsPerSecond;
+    private final Duration retention;
+    private final ExecutorService executor;
+    private final Map<UUID, BookExportStatusDto> jobs = new ConcurrentHashMap<>();
+
+    /** Thrown from the row loop when shutdown interrupts the export; the job stays resumable. */
+    private static final class StoppedException extends RuntimeException {
+    }
+
+    public BookExportService(JdbcTemplate jdbcTemplate,
+                             BookShards shards,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${library.export.directory:${java.io.tmpdir}/library-exports}") String directory,
+                             @Value("${library.export.threads:1}") int threads,
+                             @Value("${library.export.checkpoint-rows:100000}") long checkpointRows,
+                             @Value("${library.export.max-rows-per-second:0}") double maxRowsPerSecond,
+                             @Value("${library.export.retention:24h}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.bookWriter = objectMapper.writerFor(BookDto.class);
+        this.directory = Path.of(directory);
+        this.checkpointRows = checkpointRows;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.retention = retention;
+        this.executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("book-export-", 0).priority(Thread.MIN_PRIORITY).daemon().factory());
+    }
+
+    /**
+     * Loads the jobs of previous runs and requeues those that had not finished. A status file that cannot be read or
+     * requeued marks its job failed rather than failing the start.
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> statuses = Files.newDirectoryStream(directory, "*" + STATUS_EXTENSION)) {
+            for (Path path : statuses) {
+                try {
+                    recover(path);
+                } catch (IOException | RuntimeException exception) {
+                    log.error("Could not recover book export from {}", path, exception);
+                    markFailed(path, exception);
+                }
+            }
+        }
+    }
+
+    private void recover(Path path) throws IOException {
+        BookExportStatusDto job = objectMapper.readValue(path.toFile(), BookExportStatusDto.class);
+        jobs.put(job.getId(), job);
+        if (job.getState() == BookExportStatusDto.State.QUEUED || job.getState() == BookExportStatusDto.State.RUNNING) {
+            log.info("Resuming book export {} after {} rows", job.getId(), job.getRows());
+            executor.execute(() -> run(job.getId()));
+        }
+    }
+
+    /** Records the job named by {@code path} as failed, keeping whatever of its status could be read. */
+    private void markFailed(Path path, Exception cause) {
+        String name = path.getFileName().toString();
+        UUID id;
+        try {
+            id = UUID.fromString(name.substring(0, name.length() - STATUS_EXTENSION.length()));
+        } catch (IllegalArgumentException notAJob) {
+            return;
+        }
+        BookExportStatusDto known = jobs.get(id);
+        BookExportStatusDto failed = (known != null ? known.toBuilder() : BookExportStatusDto.builder().id(id))
+                .state(BookExportStatusDto.State.FAILED)
+                .finishedAt(Instant.now())
+                .message("Export could not be recovered: " + cause.getMessage())
+                .build();
+        try {
+            save(failed);
+        } catch (UncheckedIOException exception) {
+            log.error("Could not mark book export {} failed", id, exception);
+        }
+    }
+
+    /** Interrupts running exports; they resume from their last checkpoint on the next start. */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public BookExportStatusDto start(BookExportFormat format, BookExportCompression compression) {
+        BookExportStatusDto job = BookExportStatusDto.builder()
+                .id(UUID.randomUUID())
+                .state(BookExportStatusDto.State.QUEUED)
+                .format(format)
+                .compression(compression)
+                .createdAt(Instant.now())
+                .build();
+        save(job);
+        executor.execute(() -> run(job.getId()));
+        return job;
+    }
+
+    public Optional<BookExportStatusDto> status(UUID id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /** Requeues a failed export from its last checkpoint. */
+    public BookExportStatusDto resume(UUID id) {
+        BookExportStatusDto job = status(id).orElseThrow(() -> new NotFoundException("Unknown export: " + id));
+        if (job.getState() != BookExportStatusDto.State.FAILED) {
+            throw new ConflictException("Export " + id + " is " + job.getState() + ", only failed exports can be resumed");
+        }
+        if (job.getFormat() == null || job.getCompression() == null) {
+            throw new ConflictException("Export " + id + " lost its status and cannot be resumed");
+        }
+        BookExportStatusDto queued = job.toBuilder().state(BookExportStatusDto.State.QUEUED).finishedAt(null).message(null).build();
+        save(queued);
+        executor.execute(() -> run(id));
+        return queued;
+    }
+
+    public Path file(BookExportStatusDto job) {
+        return directory.resolve(job.getId() + job.getFormat().extension() + job.getCompression().extension());
+    }
+
+    @Scheduled(fixedDelayString = "${library.export.cleanup-interval:1h}")
+    public void cleanUp() {
+        Instant cutoff = Instant.now().minus(retention);
+        for (BookExportStatusDto job : jobs.values()) {
+            if (job.getFinishedAt() == null || job.getFinishedAt().isAfter(cutoff)) continue;
+            try {
+                // A job whose status could not be recovered no longer knows its file name.
+                if (job.getFormat() != null && job.getCompression() != null) Files.deleteIfExists(file(job));
+                Files.deleteIfExists(statusFile(job.getId()));
+                jobs.remove(job.getId());
+            } catch (IOException exception) {
+                log.warn("Could not delete expired book export {}", job.getId(), exception);
+            }
+        }
+    }
+
+    private void run(UUID id) {
+        BookExportStatusDto job = jobs.get(id).toBuilder().state(BookExportStatusDto.State.RUNNING).build();
+        save(job);
+        long started = System.nanoTime();
+        try {
+            BookExportStatusDto finished = export(job).toBuilder()
+                    .state(BookExportStatusDto.State.COMPLETED)
+                    .finishedAt(Instant.now())
+                    .build();
+            save(finished);
+            log.info("Exported {} books to {} in {} ms", finished.getRows(), file(finished), (System.nanoTime() - started) / 1_000_000);
+        } catch (StoppedException exception) {
+            log.info("Book export {} stopped, it resumes from its last checkpoint", id);
+        } catch (IOException | RuntimeException exception) {
+            log.warn("Book export {} failed", id, exception);
+            BookExportStatusDto current = jobs.get(id);
+            save(current.toBuilder()
+                    .state(BookExportStatusDto.State.FAILED)
+                    .finishedAt(Instant.now())
+                    .message("Export failed: " + exception.getMessage())
+                    .build());
+        }
+    }
+
+    /** Appends to the file from the job's checkpoint and returns the job as of the final checkpoint. */
+    private BookExportStatusDto export(BookExportStatusDto job) throws IOException {
+        try (FileChannel channel = FileChannel.open(file(job), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Anything past the checkpoint was written by an interrupted run and is written again.
+            channel.truncate(job.getBytes());
+            channel.position(job.getBytes());
+            Progress progress = new Progress(job, channel);
+            if (job.getBytes() == 0 && job.getFormat() == BookExportFormat.CSV) {
+                progress.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+            }
+            TokenBucket throttle = maxRowsPerSecond > 0 ? new TokenBucket(maxRowsPerSecond, maxRowsPerSecond, System::nanoTime) : null;
+            List<Book> page;
+            long lastId = job.getLastId();
+            do {
+                // Rows are written, and the throttle waits, outside the transaction that read them.
+                page = page(lastId);
+                for (Book book : page) {
+                    exportRow(job, progress, throttle, book);
+                    lastId = book.getId();
+                }
+            } while (page.size() == BookRepository.STREAM_FETCH_SIZE);
+            return progress.checkpoint();
+        }
+    }
+
+    private List<Book> page(long afterId) {
+        if (shards.isEnabled()) return shards.listAfter(afterId, BookRepository.STREAM_FETCH_SIZE);
+        return readOnlyTransaction.execute(status -> jdbcTemplate.query(SELECT_SQL, (resultSet, row) -> Book.builder()
+                .id(resultSet.getLong("id"))
+                .title(resultSet.getString("title"))
+                .isbn(resultSet.getString("isbn"))
+                .publishedYear(resultSet.getObject("published_year", Integer.class))
+                .version(resultSet.getLong("version"))
+                .build(), afterId, BookRepository.STREAM_FETCH_SIZE));
+    }
+
+    private void exportRow(BookExportStatusDto job, Progress progress, TokenBucket throttle, Book book) {
+        if (Thread.currentThread().isInterrupted()) throw new StoppedException();
+        if (throttle != null) pace(throttle);
+        progress.row(book.getId(), encode(job.getFormat(), book));
+    }
+
+    private static void pace(TokenBucket throttle) {
+        for (long wait = throttle.tryAcquire(); wait > 0; wait = throttle.tryAcquire()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException exception) {
+                throw new StoppedException();
+            }
+        }
+    }
+
+    private byte[] encode(BookExportFormat format, Book row) {
+        BookDto book = BookDto.builder()
+                .id(row.getId())
+                .title(row.getTitle())
+                .isbn(row.getIsbn())
+                .publishedYear(row.getPublishedYear())
+                .version(row.getVersion())
+                .build();
+        try {
+            return switch (format) {
+                case NDJSON -> (bookWriter.writeValueAsString(book) + "\n").getBytes(StandardCharsets.UTF_8);
+                case CSV -> (book.getId() + "," + csvField(book.getTitle()) + "," + csvField(book.getIsbn()) + ","
+                        + (book.getPublishedYear() != null ? book.getPublishedYear() : "") + "," + book.getVersion() + "\n")
+                        .getBytes(StandardCharsets.UTF_8);
+            };
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /** Quotes per RFC 4180 where needed, the counterpart of the import's {@code CsvLine}. */
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private void save(BookExportStatusDto job) {
+        jobs.put(job.getId(), job);
+        try {
+            // Written next to the target and moved over it, so a crash mid-write keeps the previous checkpoint.
+            Path target = statusFile(job.getId());
+            Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            objectMapper.writeValue(temporary.toFile(), job);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private Path statusFile(UUID id) {
+        return directory.resolve(id + STATUS_EXTENSION);
+    }
+
+    /** The output stream of one run and the position it has safely reached. */
+    private final class Progress {
+        private final FileChannel channel;
+        private final OutputStream buffered;
+        private BookExportStatusDto job;
+        private OutputStream member;
+        private long rows;
+        private long lastId;
+        private long sinceCheckpoint;
+
+        private Progress(BookExportStatusDto job, FileChannel channel) {
+            this.job = job;
+            this.channel = channel;
+            this.rows = job.getRows();
+            this.lastId = job.getLastId();
+            // Never closed: closing would close the channel, which the caller owns.
+            this.buffered = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+        }
+
+        private void write(byte[] bytes) {
+            try {
+                if (member == null) {
+                    member = job.getCompression() == BookExportCompression.GZIP ? new GZIPOutputStream(buffered, BUFFER_BYTES) : buffered;
+                }
+                member.write(bytes);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        private void row(long id, byte[] bytes) {
+            write(bytes);
+            rows++;
+            lastId = id;
+            if (++sinceCheckpoint >= checkpointRows) checkpoint();
+        }
+
+        /** Completes the current gzip member, forces the file to disk and records the position. */
+        private BookExportStatusDto checkpoint() {
+            try {
+                if (member instanceof GZIPOutputStream gzip) gzip.finish();
+                member = null;
+                buffered.flush();
+                channel.force(false);
+                job = job.toBuilder().rows(rows).bytes(channel.position()).lastId(lastId).build();
+                save(job);
+                sinceCheckpoint = 0;
+                return job;
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.readstack.library.book.facet;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.dto.BookYearFacetDto;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.book.shard.BookShards;
+import com.readstack.library.catalog.CatalogVersion;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static com.readstack.library.book.BookSpecs.titleContains;
+import static com.readstack.library.book.BookSpecs.yearGTE;
+import static com.readstack.library.book.BookSpecs.yearLTE;
+
+/**
+ * Book counts per published year, the facets shown beside search results.
+ *
+ * <p>Counts without a title filter come from {@code book_year_counts}, which every writing transaction adjusts
+ * together with the books, once per year as it commits, and are kept in memory until the catalog stamp moves. Title
+ * filters take the route {@code GET /library/books/search} takes: the title index once it is ready, otherwise one GROUP BY over the same
+ * specification, so the facets always describe the results they are shown with.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookFacets {
+    /** Stands in for a missing published year, which cannot be part of the primary key. */
+    private static final int NO_YEAR = 0;
+    private static final String UPDATE_SQL =
+            "UPDATE book_year_counts SET book_count = book_count + :delta WHERE published_year = :year";
+    private static final String INSERT_SQL =
+            "INSERT INTO book_year_counts (published_year, book_count) VALUES (:year, :delta)";
+    private static final String SELECT_SQL =
+            "SELECT published_year, book_count FROM book_year_counts WHERE book_count > 0";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final BookTitleIndex titleIndex;
+    private final BookShards shards;
+
+    private record Summary(long stamp, Map<Integer, Long> counts) {
+    }
+
+    /** The count changes of the running transaction, by year; {@link #NO_YEAR} for books without one. */
+    private record Deltas(Map<Integer, Integer> byYear) {
+    }
+
+    private volatile Summary summary;
+
+    /**
+     * Runs synchronously inside the writing transaction and sums the changes per year. The sums are applied as the
+     * transaction commits, after {@link CatalogVersion} has locked the stamp, so writers reach the counter rows one at
+     * a time, only briefly, and a missing row can be inserted without racing another.
+     */
+    @EventListener
+    @Order(2)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            Map<Integer, Integer> deltas = new TreeMap<>();
+            count(event, deltas);
+            transactionTemplate.executeWithoutResult(status -> apply(deltas));
+            return;
+        }
+        if (TransactionSynchronizationManager.getResource(this) instanceof Deltas pending) {
+            count(event, pending.byYear());
+            return;
+        }
+        Deltas pending = new Deltas(new TreeMap<>());
+        count(event, pending.byYear());
+        TransactionSynchronizationManager.bindResource(this, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return CatalogVersion.STAMP_ORDER + 2;
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                apply(pending.byYear());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BookFacets.this);
+            }
+        });
+    }
+
+    /**
+     * Counts per bucket of {@code bucketYears} years, oldest first and books without a year last. {@code stamp} is
+     * the catalog stamp read before this call, which the unfiltered counts are cached under.
+     */
+    @Transactional(readOnly = true)
+    public List<BookYearFacetDto> countByYear(String title, Integer fromYear, Integer toYear, int bucketYears, long stamp) {
+        Map<Integer, Long> counts;
+        if (title == null || title.isBlank()) {
+            counts = new HashMap<>(summary(stamp));
+            counts.keySet().removeIf(year -> !inRange(year, fromYear, toYear));
+        } else if (titleIndex.isReady()) {
+            counts = titleIndex.countByYear(title, fromYear, toYear);
+        } else if (shards.isEnabled()) {
+            counts = shards.countByYear(title, fromYear, toYear);
+        } else {
+            counts = groupByYear(Specification.<Book>unrestricted()
+                    .and(titleContains(title))
+                    .and(yearGTE(fromYear))
+                    .and(yearLTE(toYear)));
+        }
+        return buckets(counts, bucketYears);
+    }
+
+    private static void count(BookChangedEvent event, Map<Integer, Integer> deltas) {
+        Integer before = event.before() != null ? event.before().getPublishedYear() : null;
+        Integer after = event.after() != null ? event.after().getPublishedYear() : null;
+        switch (event.type()) {
+            case CREATED -> deltas.merge(yearKey(after), 1, Integer::sum);
+            case DELETED -> deltas.merge(yearKey(before), -1, Integer::sum);
+            case UPDATED -> {
+                if (Objects.equals(before, after)) return;
+                deltas.merge(yearKey(before), -1, Integer::sum);
+                deltas.merge(yearKey(after), 1, Integer::sum);
+            }
+        }
+    }
+
+    /** One statement per year, in year order; years whose changes cancel out are not touched. */
+    private void apply(Map<Integer, Integer> deltas) {
+        deltas.forEach((year, delta) -> {
+            if (delta == 0) return;
+            Map<String, Integer> parameters = Map.of("year", year, "delta", delta);
+            if (jdbcTemplate.update(UPDATE_SQL, parameters) == 0) jdbcTemplate.update(INSERT_SQL, parameters);
+        });
+    }
+
+    private static int yearKey(Integer year) {
+        return year != null ? year : NO_YEAR;
+    }
+
+    private Map<Integer, Long> summary(long stamp) {
+        Summary current = summary;
+        if (current != null && current.stamp() == stamp) return current.counts();
+        Map<Integer, Long> counts = new HashMap<>();
+        jdbcTemplate.getJdbcOperations().query(SELECT_SQL, resultSet -> {
+            int year = resultSet.getInt("published_year");
+            counts.put(year == NO_YEAR ? null : year, resultSet.getLong("book_count"));
+        });
+        // Tagged with the stamp read before the counts, so a concurrent write can only make the entry look older.
+        summary = new Summary(stamp, counts);
+        return counts;
+    }
+
+    private Map<Integer, Long> groupByYear(Specification<Book> specification) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Book> root = query.from(Book.class);
+        Path<Integer> year = root.get("publishedYear");
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) query.where(predicate);
+        query.multiselect(year, criteriaBuilder.count(root)).groupBy(year);
+
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Tuple row : entityManager.createQuery(query).getResultList()) {
+            counts.put(row.get(0, Integer.class), row.get(1, Long.class));
+        }
+        return counts;
+    }
+
+    private static List<BookYearFacetDto> buckets(Map<Integer, Long> counts, int bucketYears) {
+        Map<Integer, Long> bucketed = new HashMap<>();
+        counts.forEach((year, count) -> bucketed.merge(
+                year != null ? Math.floorDiv(year, bucketYears) * bucketYears : null, count, Long::sum));
+        return bucketed.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.nullsLast(Comparator.<Integer>naturalOrder())))
+                .map(entry -> entry.getKey() == null
+                        ? new BookYearFacetDto(null, null, entry.getValue())
+                        : new BookYearFacetDto(entry.getKey(), entry.getKey() + bucketYears - 1, entry.getValue()))
+                .toList();
+    }
+
+    private static boolean inRange(Integer year, Integer fromYear, Integer toYear) {
+        if (fromYear != null && (year == null || year < fromYear)) return false;
+        return toYear == null || (year != null && year <= toYear);
+    }
+}
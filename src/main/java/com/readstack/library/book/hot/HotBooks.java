@@ -0,0 +1,150 @@
+package com.readstack.library.book.hot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.book.search.TitleNormalizer;
+import com.readstack.library.common.TopK;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Tracks the most requested books and searches with {@link TopK}. The ranking is written to a snapshot file on
+ * shutdown and every decay; the next start seeds itself from that file and replays the top entries before the
+ * instance reports ready, so the book cache, Hibernate's query plans and the JIT are warm for the first request.
+ */
+@Slf4j
+@Component
+@RegisterReflectionForBinding(HotBooks.Snapshot.class)
+public class HotBooks {
+    private static final int WARMUP_BATCH_SIZE = 500;
+    private static final int WARMUP_PAGE_SIZE = 50;
+
+    public record HotQuery(String title, Integer fromYear, Integer toYear) {
+    }
+
+    public record Snapshot(List<TopK.Entry<Long>> books, List<TopK.Entry<HotQuery>> queries) {
+    }
+
+    private final BookService bookService;
+    private final BookTitleIndex titleIndex;
+    private final ObjectMapper objectMapper;
+    private final Path snapshotPath;
+    private final int warmupLimit;
+    private final TopK<Long> books;
+    private final TopK<HotQuery> queries;
+
+    public HotBooks(BookService bookService,
+                    BookTitleIndex titleIndex,
+                    ObjectMapper objectMapper,
+                    @Value("${library.books.hot.capacity:1000}") int capacity,
+                    @Value("${library.books.hot.sketch-width:65536}") int sketchWidth,
+                    @Value("${library.books.hot.snapshot:}") String snapshot,
+                    @Value("${library.books.hot.warmup-limit:1000}") int warmupLimit) {
+        this.bookService = bookService;
+        this.titleIndex = titleIndex;
+        this.objectMapper = objectMapper;
+        this.snapshotPath = snapshot.isBlank() ? null : Path.of(snapshot);
+        this.warmupLimit = warmupLimit;
+        this.books = new TopK<>(capacity, sketchWidth);
+        this.queries = new TopK<>(capacity, sketchWidth);
+    }
+
+    public void recordBook(long id) {
+        books.add(id);
+    }
+
+    public void recordSearch(String title, Integer fromYear, Integer toYear) {
+        queries.add(new HotQuery(TitleNormalizer.normalize(title), fromYear, toYear));
+    }
+
+    /** Estimated requests for the book since the last decays; cheap enough to ask for every book. */
+    public long popularity(long id) {
+        return books.estimate(id);
+    }
+
+    public Snapshot top(int limit) {
+        return new Snapshot(books.top(limit), queries.top(limit));
+    }
+
+    @PostConstruct
+    public void restore() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) return;
+        try {
+            Snapshot snapshot = objectMapper.readValue(snapshotPath.toFile(), Snapshot.class);
+            snapshot.books().forEach(entry -> books.add(entry.key(), entry.count()));
+            snapshot.queries().forEach(entry -> queries.add(entry.key(), entry.count()));
+        } catch (IOException exception) {
+            log.warn("Ignoring unreadable hot books snapshot {}", snapshotPath, exception);
+        }
+    }
+
+    /**
+     * Runs on the startup thread, so readiness waits for it. Failures only cost warmth and are never fatal.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Snapshot hot = top(warmupLimit);
+        if (hot.books().isEmpty() && hot.queries().isEmpty()) return;
+        long started = System.nanoTime();
+        List<Long> ids = hot.books().stream().map(TopK.Entry::key).toList();
+        int warmedSearches = 0;
+        try {
+            for (int from = 0; from < ids.size(); from += WARMUP_BATCH_SIZE) {
+                bookService.getAll(ids.subList(from, Math.min(from + WARMUP_BATCH_SIZE, ids.size())));
+            }
+            for (TopK.Entry<HotQuery> entry : hot.queries()) {
+                search(entry.key());
+                warmedSearches++;
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Cache warm-up stopped early", exception);
+        }
+        log.info("Warmed {} hot books and {} hot searches in {} ms", ids.size(), warmedSearches, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Scheduled(fixedDelayString = "${library.books.hot.decay-interval:1h}", initialDelayString = "${library.books.hot.decay-interval:1h}")
+    public void decay() {
+        books.decay();
+        queries.decay();
+        save();
+    }
+
+    @PreDestroy
+    public void save() {
+        if (snapshotPath == null) return;
+        try {
+            if (snapshotPath.getParent() != null) Files.createDirectories(snapshotPath.getParent());
+            // Written next to the target and moved over it, so a crash mid-write keeps the previous snapshot.
+            Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            objectMapper.writeValue(temporary.toFile(), top(Integer.MAX_VALUE));
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            log.warn("Could not write hot books snapshot {}", snapshotPath, exception);
+        }
+    }
+
+    /** Takes the same route as {@code GET /library/books/search}. */
+    private void search(HotQuery query) {
+        if (!query.title().isEmpty() && titleIndex.isReady()) {
+            bookService.getAll(titleIndex.search(query.title(), query.fromYear(), query.toYear(), 0, WARMUP_PAGE_SIZE));
+        } else {
+            List<Book> found = bookService.search(query.title().isEmpty() ? null : query.title(), query.fromYear(), query.toYear(), 0, WARMUP_PAGE_SIZE);
+            bookService.getAll(found.stream().map(Book::getId).toList());
+        }
+    }
+}
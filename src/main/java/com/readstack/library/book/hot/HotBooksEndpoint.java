@@ -0,0 +1,22 @@
+package com.readstack.library.book.hot;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/** {@code GET /actuator/hotbooks?limit=}: the current ranking of hot books and searches, with estimated hit counts. */
+@Component
+@Endpoint(id = "hotbooks")
+@RequiredArgsConstructor
+public class HotBooksEndpoint {
+    private static final int DEFAULT_LIMIT = 100;
+
+    private final HotBooks hotBooks;
+
+    @ReadOperation
+    public HotBooks.Snapshot hotBooks(@Nullable Integer limit) {
+        return hotBooks.top(limit != null ? Math.max(limit, 0) : DEFAULT_LIMIT);
+    }
+}
@@ -0,0 +1,80 @@
+package com.readstack.library.book.ingest;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookMapper;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.dto.BookCreateUpdateDto;
+import com.readstack.library.book.dto.BookIngestStatusDto;
+import com.readstack.library.common.NotFoundException;
+import jakarta.validation.Valid;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Async variant of {@code POST /library/books}, chosen per request with {@code Prefer: respond-async}. Answers
+ * {@code 202 Accepted} with the status URL in {@code Location}; {@code 429} while the ingest queue is full. The
+ * preference may come with others, as in {@code Prefer: respond-async, wait=5}; a {@code Prefer} header without it
+ * gets the usual synchronous create.
+ */
+@RestController
+@RequestMapping("library/books")
+@ConditionalOnProperty(prefix = "library.books.ingest", name = "enabled", havingValue = "true")
+@AllArgsConstructor
+public class BookIngestController {
+    static final String PREFER = "Prefer";
+    static final String RESPOND_ASYNC = "respond-async";
+
+    private BookIngestService ingestService;
+    private BookService bookService;
+    private BookMapper mapper;
+
+    /** Every request with a {@code Prefer} header lands here, as header values cannot be matched token by token. */
+    @PostMapping(headers = PREFER)
+    public ResponseEntity<?> create(@RequestHeader(PREFER) List<String> prefer,
+                                    @RequestBody @Valid BookCreateUpdateDto input) {
+        if (!prefersAsync(prefer)) {
+            Book created = bookService.createBook(mapper.toBook(input));
+            return ResponseEntity.status(HttpStatus.CREATED).body(mapper.toDTO(created));
+        }
+        BookIngestStatusDto status = ingestService.submit(input);
+        return ResponseEntity
+                .accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequestUri()
+                        .path("/ingest/{ticket}")
+                        .buildAndExpand(status.getTicket())
+                        .toUri())
+                .header("Preference-Applied", RESPOND_ASYNC)
+                .body(status);
+    }
+
+    /** Whether one of the comma-separated preferences, ignoring its parameters after {@code ;}, is respond-async. */
+    static boolean prefersAsync(List<String> prefer) {
+        return prefer.stream()
+                .flatMap(header -> Arrays.stream(header.split(",")))
+                .map(preference -> preference.split(";", 2)[0].trim())
+                .anyMatch(RESPOND_ASYNC::equalsIgnoreCase);
+    }
+
+    /**
+     * Until its book has been written, a ticket is known only to the instance that accepted it; other instances
+     * answer 404 for it until then.
+     */
+    @GetMapping("/ingest/{ticket}")
+    public BookIngestStatusDto status(@PathVariable UUID ticket) {
+        return ingestService.status(ticket).orElseThrow(() -> new NotFoundException("Unknown ingest ticket: " + ticket));
+    }
+}
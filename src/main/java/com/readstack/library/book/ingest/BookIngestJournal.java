@@ -0,0 +1,210 @@
+package com.readstack.library.book.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.dto.BookCreateUpdateDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only NDJSON file holding every accepted but not yet written book, so a crash loses nothing. Entries are
+ * dropped once their batch has committed, see {@link #compact(long)}. Replaying an entry that did reach the database
+ * is harmless: {@link BookIngestService} recognizes the stored book by its ISBN.
+ *
+ * <p>Appends are made durable by {@link #sync(long)} as a group commit: the appenders that wait together share one
+ * fsync. {@link BookIngestService} serializes appends and compaction; {@code sync} may run alongside both.
+ */
+class BookIngestJournal implements AutoCloseable {
+    record Entry(UUID ticket, BookCreateUpdateDto book) {
+    }
+
+    private final Path path;
+    private final Path replayPath;
+    private final Path compactPath;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+    /** Replaced only under both the appenders' lock and {@link #syncLock}, so a sync never forces a closed one. */
+    private FileChannel channel;
+    /** The position of the first byte of the file; positions count every byte ever appended. */
+    private long start;
+    private volatile long appended;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition synced = syncLock.newCondition();
+    /** Everything before this position is on disk. Guarded by {@link #syncLock}, as is {@link #syncing}. */
+    private long durable;
+    private boolean syncing;
+    /** fsyncs done, for tests. */
+    private long forces;
+
+    BookIngestJournal(Path path, boolean fsync, ObjectMapper objectMapper) throws IOException {
+        this.path = path;
+        this.replayPath = path.resolveSibling(path.getFileName() + ".replay");
+        this.compactPath = path.resolveSibling(path.getFileName() + ".compact");
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        // The previous run's entries move to the .replay file. If that still exists, a replay was interrupted and
+        // the journal holds a subset of it plus newer requests, so the two are merged.
+        if (Files.exists(path)) {
+            if (Files.exists(replayPath)) {
+                Files.write(replayPath, Files.readAllBytes(path), StandardOpenOption.APPEND);
+                Files.delete(path);
+            } else {
+                Files.move(path, replayPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        this.channel = open(path);
+    }
+
+    /** Entries left by the previous run, once per ticket. They must be appended again before {@link #finishRecovery()}. */
+    Collection<Entry> recover() throws IOException {
+        Map<UUID, Entry> entries = new LinkedHashMap<>();
+        if (!Files.exists(replayPath)) return entries.values();
+        try (BufferedReader reader = Files.newBufferedReader(replayPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    Entry entry = objectMapper.readValue(line, Entry.class);
+                    entries.putIfAbsent(entry.ticket(), entry);
+                } catch (JsonProcessingException exception) {
+                    // A line torn by a crash mid-append: that request was never acknowledged.
+                }
+            }
+        }
+        return entries.values();
+    }
+
+    void finishRecovery() throws IOException {
+        Files.deleteIfExists(replayPath);
+    }
+
+    /**
+     * Appends the entry and returns the position after it, to {@link #sync(long)} and, once it is written,
+     * {@link #compact(long)} up to.
+     */
+    long append(Entry entry) {
+        try {
+            ByteBuffer line = ByteBuffer.wrap((objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) channel.write(line);
+            appended = start + channel.size();
+            return appended;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Returns once everything up to {@code position} is on disk. One caller at a time forces the file, for every
+     * entry appended so far, while the others wait for it and return without an fsync of their own if it covered
+     * them.
+     */
+    void sync(long position) {
+        if (!fsync) return;
+        syncLock.lock();
+        try {
+            while (durable < position) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                syncing = true;
+                long target = appended;
+                FileChannel forced = channel;
+                syncLock.unlock();
+                try {
+                    forced.force(false);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                } finally {
+                    syncLock.lock();
+                    syncing = false;
+                    synced.signalAll();
+                }
+                durable = Math.max(durable, target);
+                forces++;
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    long forces() {
+        syncLock.lock();
+        try {
+            return forces;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the entries before {@code position}, which have been written. The rest is copied to a new file only once
+     * the written part is at least as long, so each entry is copied a bounded number of times; a crash before the
+     * move leaves the old file, which merely replays a few written entries.
+     */
+    void compact(long position) {
+        syncLock.lock();
+        try {
+            // The channel may be replaced below, so no fsync may be running on it.
+            while (syncing) synced.awaitUninterruptibly();
+            compactLocked(position);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void compactLocked(long position) {
+        long written = position - start;
+        try {
+            long size = channel.size();
+            if (written <= 0 || written < size - written) return;
+            if (written >= size) {
+                channel.truncate(0);
+                if (fsync) channel.force(false);
+            } else {
+                try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+                     FileChannel target = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+                             StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    for (long copied = 0; copied < size - written; ) {
+                        copied += source.transferTo(written + copied, size - written - copied, target);
+                    }
+                    if (fsync) target.force(false);
+                }
+                channel.close();
+                Files.move(compactPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                channel = open(path);
+            }
+            start = position;
+            // Both branches leave the file forced, with everything appended so far.
+            if (fsync) durable = Math.max(durable, appended);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,380 @@
+package com.readstack.library.book.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.bulk.BookBatchWriter;
+import com.readstack.library.book.bulk.ImportRow;
+import com.readstack.library.book.dto.BookCreateUpdateDto;
+import com.readstack.library.book.dto.BookImportReport;
+import com.readstack.library.book.dto.BookIngestStatusDto;
+import com.readstack.library.common.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind creation: accepted books wait in a bounded in-process queue (and the optional journal) while a single
+ * writer thread inserts whatever has accumulated, up to {@code batch-size} rows per transaction, through
+ * {@link BookBatchWriter}. Under a burst, MySQL sees a few multi-row INSERTs instead of one transaction per request.
+ *
+ * <p>Pending tickets are known to this instance only; each written batch records its outcomes in
+ * {@link BookIngestStatuses}, after which every instance can answer for them.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "library.books.ingest", name = "enabled", havingValue = "true")
+@RegisterReflectionForBinding(BookIngestJournal.Entry.class)
+public class BookIngestService {
+    static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(200);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(5);
+    private static final Duration PURGE_INTERVAL = Duration.ofMinutes(5);
+
+    private final BookBatchWriter batchWriter;
+    private final BookService bookService;
+    private final BookIngestStatuses recordedStatuses;
+    private final Duration statusRetention;
+    private final int capacity;
+    private final int batchSize;
+    private final BookIngestJournal journal;
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Cache<UUID, BookIngestStatusDto> statuses;
+    private final Timer lag;
+    private final Counter rejected;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private int batchNumber;
+    private long nextPurge = System.nanoTime();
+
+    /**
+     * {@code journalPosition} is where the entry ends in the journal, or -1 without one; {@code recovered} entries
+     * were replayed from the journal of a previous run.
+     */
+    private record Pending(BookIngestJournal.Entry entry, long enqueuedNanos, long journalPosition, boolean recovered) {
+    }
+
+    public BookIngestService(BookBatchWriter batchWriter,
+                             BookService bookService,
+                             BookIngestStatuses recordedStatuses,
+                             ObjectMapper objectMapper,
+                             MeterRegistry registry,
+                             @Value("${library.books.ingest.capacity:10000}") int capacity,
+                             @Value("${library.books.ingest.batch-size:500}") int batchSize,
+                             @Value("${library.books.ingest.journal:}") String journalPath,
+                             @Value("${library.books.ingest.journal-fsync:true}") boolean fsync,
+                             @Value("${library.books.ingest.status-retention:1h}") Duration statusRetention) throws IOException {
+        this.batchWriter = batchWriter;
+        this.bookService = bookService;
+        this.recordedStatuses = recordedStatuses;
+        this.statusRetention = statusRetention;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.journal = journalPath.isBlank() ? null : new BookIngestJournal(Path.of(journalPath), fsync, objectMapper);
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(10L * capacity)
+                .expireAfterWrite(statusRetention)
+                .build();
+        this.writer = Thread.ofPlatform().name("book-ingest-writer").daemon().unstarted(this::drain);
+
+        Gauge.builder("library.books.ingest.queue.depth", queue, Collection::size)
+                .description("Books accepted but not yet written")
+                .register(registry);
+        Gauge.builder("library.books.ingest.queue.capacity", () -> capacity)
+                .register(registry);
+        Gauge.builder("library.books.ingest.oldest.age", this, BookIngestService::oldestAgeSeconds)
+                .description("Seconds the oldest queued book has been waiting")
+                .baseUnit("seconds")
+                .register(registry);
+        this.lag = Timer.builder("library.books.ingest.lag")
+                .description("Time from acceptance to the committed insert")
+                .register(registry);
+        this.rejected = Counter.builder("library.books.ingest.rejected")
+                .description("Creates turned away with 429 because the queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Requeues what the previous run accepted but did not finish, then starts the writer. Entries whose outcome was
+     * recorded already are dropped; the rest are made durable in the new journal before the old one goes.
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (journal != null) {
+            List<BookIngestJournal.Entry> recovered = unfinished(journal.recover());
+            long last = -1;
+            for (BookIngestJournal.Entry entry : recovered) last = enqueue(entry, true).journalPosition();
+            journal.sync(last);
+            journal.finishRecovery();
+            if (!recovered.isEmpty()) log.info("Recovered {} books from the ingest journal", recovered.size());
+        }
+        writer.start();
+    }
+
+    /** Lets the writer drain the queue; whatever is left when the wait runs out stays in the journal. */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        writer.join(Duration.ofSeconds(30));
+        if (journal != null) journal.close();
+    }
+
+    /**
+     * Accepts the book for writing, or fails with {@link TooManyRequestsException} once {@code capacity} are waiting.
+     * The journal is synced after the lock is released, so concurrent submits share an fsync.
+     */
+    public BookIngestStatusDto submit(BookCreateUpdateDto book) {
+        BookIngestJournal.Entry entry = new BookIngestJournal.Entry(UUID.randomUUID(), book);
+        Pending pending;
+        lock.lock();
+        try {
+            if (queue.size() >= capacity) {
+                rejected.increment();
+                throw new TooManyRequestsException("Ingest queue is full, retry shortly", RETRY_AFTER);
+            }
+            pending = enqueue(entry, false);
+        } finally {
+            lock.unlock();
+        }
+        if (journal != null) journal.sync(pending.journalPosition());
+        return pendingStatus(entry);
+    }
+
+    /** This instance's tickets from memory, any other from the shared database once its batch has been written. */
+    public Optional<BookIngestStatusDto> status(UUID ticket) {
+        BookIngestStatusDto status = statuses.getIfPresent(ticket);
+        return status != null ? Optional.of(status) : recordedStatuses.find(ticket);
+    }
+
+    private Pending enqueue(BookIngestJournal.Entry entry, boolean recovered) {
+        long journalPosition = journal != null ? journal.append(entry) : -1;
+        statuses.put(entry.ticket(), pendingStatus(entry));
+        Pending pending = new Pending(entry, System.nanoTime(), journalPosition, recovered);
+        queue.add(pending);
+        return pending;
+    }
+
+    private static BookIngestStatusDto pendingStatus(BookIngestJournal.Entry entry) {
+        return BookIngestStatusDto.builder()
+                .ticket(entry.ticket())
+                .state(BookIngestStatusDto.State.PENDING)
+                .isbn(entry.book().getIsbn())
+                .build();
+    }
+
+    /** The recovered entries without a recorded outcome; all of them if the database cannot tell. */
+    private List<BookIngestJournal.Entry> unfinished(Collection<BookIngestJournal.Entry> recovered) {
+        List<BookIngestJournal.Entry> entries = List.copyOf(recovered);
+        Set<UUID> finished = new HashSet<>();
+        try {
+            for (int from = 0; from < entries.size(); from += batchSize) {
+                List<UUID> tickets = entries.subList(from, Math.min(from + batchSize, entries.size())).stream()
+                        .map(BookIngestJournal.Entry::ticket)
+                        .toList();
+                recordedStatuses.findAll(tickets).forEach(status -> finished.add(status.getTicket()));
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Could not look up the recorded ingest statuses; replaying the whole journal", exception);
+            return entries;
+        }
+        return entries.stream().filter(entry -> !finished.contains(entry.ticket())).toList();
+    }
+
+    private void drain() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            if (System.nanoTime() - nextPurge >= 0) {
+                purgeStatuses();
+                nextPurge = System.nanoTime() + PURGE_INTERVAL.toNanos();
+            }
+            try {
+                Pending first = queue.poll(POLL_INTERVAL.toNanos(), TimeUnit.NANOSECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                if (!write(batch)) return;
+                acknowledge(batch.getLast());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the batch, retrying while the database is unavailable. A batch that fails for any other reason is written
+     * again one book at a time, and the books that fail on their own are reported as failed. Returns false if shutdown
+     * interrupts the retries.
+     */
+    private boolean write(List<Pending> batch) throws InterruptedException {
+        try {
+            return writeRetrying(batch);
+        } catch (RuntimeException exception) {
+            if (batch.size() == 1) {
+                log.warn("Queued book {} could not be written", batch.getFirst().entry().ticket(), exception);
+                complete(batch, Map.of(), List.of());
+                return true;
+            }
+            log.warn("Writing {} queued books failed, writing them one at a time", batch.size(), exception);
+            for (Pending pending : batch) {
+                if (!write(List.of(pending))) return false;
+            }
+            return true;
+        }
+    }
+
+    /** Retries only {@link #isTransient transient} failures; anything else is thrown. */
+    private boolean writeRetrying(List<Pending> batch) throws InterruptedException {
+        List<ImportRow> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) rows.add(new ImportRow(i, batch.get(i).entry().book()));
+
+        batchNumber++;
+        for (int attempt = 0; ; attempt++) {
+            Map<String, Book> created = new HashMap<>();
+            try {
+                BookImportReport.Batch report = batchWriter.write(batchNumber, rows, book -> created.put(book.getIsbn(), book));
+                complete(batch, created, report.getFailures());
+                return true;
+            } catch (RuntimeException exception) {
+                if (!isTransient(exception)) throw exception;
+                if (!running) return false;
+                Duration backoff = Duration.ofMillis(Math.min(MAX_BACKOFF.toMillis(), 100L << Math.min(attempt, 6)));
+                log.warn("Writing {} queued books failed, retrying in {} ms", batch.size(), backoff.toMillis(), exception);
+                Thread.sleep(backoff);
+            }
+        }
+    }
+
+    private void complete(List<Pending> batch, Map<String, Book> created, List<BookImportReport.RowFailure> failures) {
+        Map<Long, String> failed = new HashMap<>();
+        failures.forEach(failure -> failed.put(failure.getLine(), failure.getMessage()));
+        Map<String, Book> storedBefore = storedBefore(batch, created, failed);
+        List<BookIngestStatusDto> completed = new ArrayList<>(batch.size());
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            BookIngestStatusDto status = BookIngestStatusDto.builder()
+                    .ticket(pending.entry().ticket())
+                    .isbn(pending.entry().book().getIsbn())
+                    .build();
+            Book book = failed.containsKey((long) i) ? null : created.get(status.getIsbn());
+            if (book == null) book = storedBefore.get(status.getIsbn());
+            if (book != null) {
+                status.setState(BookIngestStatusDto.State.CREATED);
+                status.setBookId(book.getId());
+            } else {
+                status.setState(BookIngestStatusDto.State.FAILED);
+                status.setMessage(failed.getOrDefault((long) i, "Not stored"));
+            }
+            statuses.put(status.getTicket(), status);
+            completed.add(status);
+            lag.record(now - pending.enqueuedNanos(), TimeUnit.NANOSECONDS);
+        }
+        try {
+            recordedStatuses.record(completed);
+        } catch (RuntimeException exception) {
+            log.warn("Could not record the outcome of {} queued books; only this instance knows them", completed.size(), exception);
+        }
+    }
+
+    /**
+     * A replayed entry whose batch had committed before the restart comes back as a duplicate ISBN. The books stored
+     * under the ISBNs of such entries, where they are the book the entry describes, keyed by the entry's ISBN.
+     */
+    private Map<String, Book> storedBefore(List<Pending> batch, Map<String, Book> created, Map<Long, String> failed) {
+        Map<String, Pending> unwritten = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            String isbn = pending.entry().book().getIsbn();
+            if (pending.recovered() && (failed.containsKey((long) i) || !created.containsKey(isbn))) unwritten.put(isbn, pending);
+        }
+        if (unwritten.isEmpty()) return Map.of();
+        Map<String, Book> stored = new HashMap<>();
+        try {
+            for (Book book : bookService.getAllByIsbn(List.copyOf(unwritten.keySet()))) {
+                Pending pending = unwritten.get(book.getIsbn());
+                if (pending == null) continue;
+                BookCreateUpdateDto described = pending.entry().book();
+                if (Objects.equals(book.getTitle(), described.getTitle()) && Objects.equals(book.getPublishedYear(), described.getPublishedYear())) {
+                    stored.put(book.getIsbn(), book);
+                }
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Could not look up the stored books of {} replayed entries", unwritten.size(), exception);
+        }
+        return stored;
+    }
+
+    private void purgeStatuses() {
+        try {
+            int purged = recordedStatuses.purge(Instant.now().minus(statusRetention));
+            if (purged > 0) log.debug("Purged {} expired ingest statuses", purged);
+        } catch (RuntimeException exception) {
+            log.warn("Could not purge the expired ingest statuses", exception);
+        }
+    }
+
+    /**
+     * Failures that say nothing about the rows: no connection, a lost connection, a lock or query timeout. Writing the
+     * same batch again can succeed.
+     */
+    static boolean isTransient(RuntimeException exception) {
+        return exception instanceof TransientDataAccessException
+                || exception instanceof RecoverableDataAccessException
+                || exception instanceof DataAccessResourceFailureException
+                || exception instanceof CannotCreateTransactionException;
+    }
+
+    /** The queue is in journal order, so every entry up to {@code last} has been written; appends use the same lock. */
+    private void acknowledge(Pending last) {
+        if (journal == null) return;
+        lock.lock();
+        try {
+            journal.compact(last.journalPosition());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double oldestAgeSeconds() {
+        Pending oldest = queue.peek();
+        return oldest == null ? 0 : (System.nanoTime() - oldest.enqueuedNanos()) / 1e9;
+    }
+}
@@ -0,0 +1,86 @@
+package com.readstack.library.book.ingest;
+
+import com.readstack.library.book.dto.BookIngestStatusDto;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The outcomes of ingested books in the shared database, so that any instance can answer for a ticket once its
+ * batch has been written. Each batch is recorded with one batch of statements; pending tickets are not written
+ * here, as that would cost the database one statement per request again.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.books.ingest", name = "enabled", havingValue = "true")
+public class BookIngestStatuses {
+    private static final int MAX_MESSAGE_LENGTH = 1000;
+    private static final String FIND_SQL =
+            "SELECT ticket, state, isbn, book_id, message FROM book_ingest_statuses WHERE ticket IN (:tickets)";
+    private static final String UPDATE_SQL = "UPDATE book_ingest_statuses SET state = :state, book_id = :bookId, "
+            + "message = :message, recorded_at = :recordedAt WHERE ticket = :ticket";
+    private static final String INSERT_SQL = "INSERT INTO book_ingest_statuses (ticket, state, isbn, book_id, message, recorded_at) "
+            + "VALUES (:ticket, :state, :isbn, :bookId, :message, :recordedAt)";
+    private static final String PURGE_SQL = "DELETE FROM book_ingest_statuses WHERE recorded_at < :before";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public BookIngestStatuses(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<BookIngestStatusDto> find(UUID ticket) {
+        return findAll(List.of(ticket)).stream().findFirst();
+    }
+
+    public List<BookIngestStatusDto> findAll(Collection<UUID> tickets) {
+        if (tickets.isEmpty()) return List.of();
+        return jdbcTemplate.query(FIND_SQL, Map.of("tickets", tickets.stream().map(UUID::toString).toList()),
+                (resultSet, rowNumber) -> BookIngestStatusDto.builder()
+                        .ticket(UUID.fromString(resultSet.getString("ticket")))
+                        .state(BookIngestStatusDto.State.valueOf(resultSet.getString("state")))
+                        .isbn(resultSet.getString("isbn"))
+                        .bookId(resultSet.getObject("book_id", Long.class))
+                        .message(resultSet.getString("message"))
+                        .build());
+    }
+
+    /** Writes the statuses, replacing those of tickets recorded before, as a replayed batch does. */
+    public void record(List<BookIngestStatusDto> statuses) {
+        if (statuses.isEmpty()) return;
+        Timestamp now = Timestamp.from(Instant.now());
+        MapSqlParameterSource[] rows = statuses.stream()
+                .map(status -> new MapSqlParameterSource()
+                        .addValue("ticket", status.getTicket().toString())
+                        .addValue("state", status.getState().name())
+                        .addValue("isbn", status.getIsbn())
+                        .addValue("bookId", status.getBookId())
+                        .addValue("message", truncate(status.getMessage()))
+                        .addValue("recordedAt", now))
+                .toArray(MapSqlParameterSource[]::new);
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, rows);
+        List<MapSqlParameterSource> inserts = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            if (updated[i] == 0) inserts.add(rows[i]);
+        }
+        if (!inserts.isEmpty()) jdbcTemplate.batchUpdate(INSERT_SQL, inserts.toArray(MapSqlParameterSource[]::new));
+    }
+
+    /** Deletes the statuses recorded before {@code before}; instances may run it concurrently. */
+    public int purge(Instant before) {
+        return jdbcTemplate.update(PURGE_SQL, Map.of("before", Timestamp.from(before)));
+    }
+
+    private static String truncate(String message) {
+        return message == null || message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH);
+    }
+}
@@ -0,0 +1,12 @@
+package com.readstack.library.book.invalidation;
+
+import com.readstack.library.book.dto.BookChangeDto;
+
+import java.util.List;
+
+/**
+ * The changes one transaction committed, as sent between instances. {@code version} is the catalog stamp the
+ * transaction committed with, or {@code null} if it is not known; every stamp belongs to exactly one message.
+ */
+public record BookInvalidation(Long version, List<BookChangeDto> changes) {
+}
@@ -0,0 +1,300 @@
+package com.readstack.library.book.invalidation;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookCache;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.BookMapper;
+import com.readstack.library.book.dto.BookChangeDto;
+import com.readstack.library.book.dto.BookDto;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.book.search.TitleSuggester;
+import com.readstack.library.catalog.CatalogVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the in-process book caches of every instance in step with writes made on any of them. After each commit the
+ * transaction's changes go out over the {@link BookInvalidationTransport}, tagged with the catalog stamp they were
+ * committed with; other instances evict the changed books from {@link BookCache} and update the title index and
+ * suggestions. The sender has already applied its own changes through its after-commit listeners.
+ *
+ * <p>Every stamp belongs to one transaction, so the stamps received show what is missing. Messages may arrive out
+ * of order; a stamp that is still missing {@code grace} after the catalog moved past it was lost, for instance while
+ * the transport was disconnected, and the caches are then cleared and the indexes rebuilt from the database.
+ *
+ * <p>Nothing touches the database before the application is ready, so a context that is only refreshed, such as the
+ * CDS training run, needs none. The checks run on a thread of their own, clear of the shared {@code @Scheduled} one.
+ */
+@Slf4j
+@Component
+public class BookInvalidationBus {
+    private final BookInvalidationTransport transport;
+    private final CatalogVersion catalogVersion;
+    private final BookMapper mapper;
+    private final BookCache bookCache;
+    private final BookTitleIndex titleIndex;
+    private final TitleSuggester suggester;
+    private final long graceNanos;
+    private final Duration checkInterval;
+    private final ScheduledExecutorService checker;
+    private final LongSupplier nanoClock;
+    private final Counter received;
+    private final Counter resyncs;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Every stamp up to here has been applied. Guarded by {@link #lock}, as are the fields below. */
+    private long applied;
+    /** Stamps above {@link #applied} that have been applied, waiting for the ones in between. */
+    private final TreeSet<Long> ahead = new TreeSet<>();
+    /** A catalog stamp not yet covered by {@link #applied}, and when it was first seen; {@code null} if none. */
+    private Behind behind;
+    /** Set once {@link #start()} has read the stamp; checks before that would compare against nothing. */
+    private volatile boolean started;
+
+    private record Behind(long stamp, long since) {
+    }
+
+    /** The changes of the running transaction, sent after it commits. */
+    private record Pending(List<BookChangeDto> changes) {
+    }
+
+    @Autowired
+    public BookInvalidationBus(BookInvalidationTransport transport,
+                               CatalogVersion catalogVersion,
+                               BookMapper mapper,
+                               BookCache bookCache,
+                               BookTitleIndex titleIndex,
+                               TitleSuggester suggester,
+                               MeterRegistry registry,
+                               @Value("${library.books.invalidation.grace:10s}") Duration grace,
+                               @Value("${library.books.invalidation.check-interval:5s}") Duration checkInterval) {
+        this(transport, catalogVersion, mapper, bookCache, titleIndex, suggester, registry, grace, checkInterval, System::nanoTime);
+    }
+
+    BookInvalidationBus(BookInvalidationTransport transport, CatalogVersion catalogVersion, BookMapper mapper,
+                        BookCache bookCache, BookTitleIndex titleIndex, TitleSuggester suggester,
+                        MeterRegistry registry, Duration grace, Duration checkInterval, LongSupplier nanoClock) {
+        this.transport = transport;
+        this.catalogVersion = catalogVersion;
+        this.mapper = mapper;
+        this.bookCache = bookCache;
+        this.titleIndex = titleIndex;
+        this.suggester = suggester;
+        this.graceNanos = grace.toNanos();
+        this.checkInterval = checkInterval;
+        this.checker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("book-invalidation-check").daemon().factory());
+        this.nanoClock = nanoClock;
+        this.received = Counter.builder("library.books.invalidation.received")
+                .description("Invalidation messages applied from other instances")
+                .register(registry);
+        this.resyncs = Counter.builder("library.books.invalidation.resyncs")
+                .description("Cache resets after invalidation messages were missed")
+                .register(registry);
+    }
+
+    /**
+     * Runs ahead of the other ready listeners, which load the indexes, so they already contain every change up to the
+     * stamp read here. Stamps this instance sent before are covered by it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void start() {
+        long stamp = catalogVersion.current();
+        lock.lock();
+        try {
+            applied = Math.max(applied, stamp);
+            ahead.headSet(applied, true).clear();
+        } finally {
+            lock.unlock();
+        }
+        started = true;
+        transport.subscribe(this::receive);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleChecks() {
+        long interval = checkInterval.toMillis();
+        checker.scheduleWithFixedDelay(this::checkQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        checker.shutdownNow();
+    }
+
+    /**
+     * Runs inside the writing transaction and collects the changes until it commits; they are sent with the stamp
+     * {@link CatalogVersion} moved in the commit.
+     */
+    @EventListener
+    @Order(3)
+    public void onBookChanged(BookChangedEvent event) {
+        BookChangeDto change = toChange(event);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Without a transaction the stamp moved on its own; the receivers find that out from the stamp.
+            send(new BookInvalidation(null, List.of(change)));
+            return;
+        }
+        if (TransactionSynchronizationManager.getResource(this) instanceof Pending pending) {
+            pending.changes().add(change);
+            return;
+        }
+        Pending pending = new Pending(new ArrayList<>(List.of(change)));
+        TransactionSynchronizationManager.bindResource(this, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                OptionalLong version = catalogVersion.transactionVersion();
+                send(new BookInvalidation(version.isPresent() ? version.getAsLong() : null, List.copyOf(pending.changes())));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BookInvalidationBus.this);
+            }
+        });
+    }
+
+    /** Applies a message from the transport, unless it is this instance's own or was applied already. */
+    public void receive(BookInvalidation invalidation) {
+        if (invalidation.version() != null && !markApplied(invalidation.version())) return;
+        invalidation.changes().forEach(this::apply);
+        received.increment();
+    }
+
+    /** Resyncs once the catalog has been ahead of the applied messages for longer than {@code grace}. */
+    public void check() {
+        if (!started) return;
+        long stamp = catalogVersion.current();
+        long now = nanoClock.getAsLong();
+        lock.lock();
+        try {
+            if (applied >= stamp) {
+                behind = null;
+                return;
+            }
+            if (behind == null || applied >= behind.stamp()) {
+                behind = new Behind(stamp, now);
+                return;
+            }
+            if (now - behind.since() < graceNanos) return;
+        } finally {
+            lock.unlock();
+        }
+        resync();
+    }
+
+    /** Drops everything cached and reloads the indexes, for when changes may have been missed. */
+    public void resync() {
+        long stamp = catalogVersion.current();
+        log.warn("Missed cache invalidations before catalog version {}, clearing the book caches", stamp);
+        bookCache.clear();
+        titleIndex.rebuild();
+        suggester.rebuild();
+        lock.lock();
+        try {
+            applied = Math.max(applied, stamp);
+            ahead.headSet(applied, true).clear();
+            behind = null;
+        } finally {
+            lock.unlock();
+        }
+        resyncs.increment();
+    }
+
+    private void checkQuietly() {
+        try {
+            check();
+        } catch (RuntimeException exception) {
+            // A failed run would cancel the schedule; the next one reads the stamp again.
+            log.warn("Could not check for missed cache invalidations", exception);
+        }
+    }
+
+    long applied() {
+        lock.lock();
+        try {
+            return applied;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void send(BookInvalidation invalidation) {
+        if (invalidation.version() != null) markApplied(invalidation.version());
+        try {
+            transport.publish(invalidation);
+        } catch (RuntimeException exception) {
+            // The commit stands; the other instances resync once they notice the stamp they did not receive.
+            log.warn("Could not publish cache invalidation for catalog version {}", invalidation.version(), exception);
+        }
+    }
+
+    /** Records {@code version} as applied; {@code false} if it already was. */
+    private boolean markApplied(long version) {
+        lock.lock();
+        try {
+            if (version <= applied || !ahead.add(version)) return false;
+            while (ahead.remove(applied + 1)) applied++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(BookChangeDto change) {
+        Book book = toBook(change.getBook());
+        switch (change.getType()) {
+            case CREATED, UPDATED -> {
+                bookCache.evict(book);
+                titleIndex.index(book);
+                suggester.index(book);
+            }
+            case DELETED -> {
+                bookCache.evictDeleted(book);
+                titleIndex.remove(book.getId());
+                suggester.remove(book.getId());
+            }
+        }
+    }
+
+    private BookChangeDto toChange(BookChangedEvent event) {
+        return BookChangeDto.builder()
+                .type(event.type())
+                .bookId(event.bookId())
+                .book(mapper.toDTO(event.after() != null ? event.after() : event.before()))
+                .build();
+    }
+
+    private static Book toBook(BookDto book) {
+        return Book.builder()
+                .id(book.getId())
+                .title(book.getTitle())
+                .isbn(book.getIsbn())
+                .publishedYear(book.getPublishedYear())
+                .version(book.getVersion())
+                .build();
+    }
+}
@@ -0,0 +1,13 @@
+package com.readstack.library.book.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link BookInvalidation}s to every instance, the sender included. Delivery may be late, repeated, out of
+ * order or lost: {@link BookInvalidationBus} drops repeats and notices losses through the catalog stamp.
+ */
+public interface BookInvalidationTransport {
+    void publish(BookInvalidation invalidation);
+
+    void subscribe(Consumer<BookInvalidation> receiver);
+}
@@ -0,0 +1,28 @@
+package com.readstack.library.book.invalidation;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers every message synchronously to the receivers subscribed in this JVM. Enough for a single instance, and
+ * lets tests run several buses against one transport.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.books.invalidation", name = "transport", havingValue = "loopback")
+public class LoopbackInvalidationTransport implements BookInvalidationTransport {
+    private final List<Consumer<BookInvalidation>> receivers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(BookInvalidation invalidation) {
+        receivers.forEach(receiver -> receiver.accept(invalidation));
+    }
+
+    @Override
+    public void subscribe(Consumer<BookInvalidation> receiver) {
+        receivers.add(receiver);
+    }
+}
@@ -0,0 +1,131 @@
+package com.readstack.library.book.invalidation;
+
+import com.readstack.library.book.dto.BookChangeDto;
+import com.readstack.library.book.dto.BookChangePageDto;
+import com.readstack.library.catalog.BookChangeFeed;
+import com.readstack.library.common.GoneException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Uses the {@code book_changes} outbox as the bus, so no broker is needed: the writing transaction has already
+ * appended its changes, and every instance polls the feed every {@code poll-interval} and turns each transaction's
+ * changes back into one message. Nothing committed is lost unless retention purges it before it is read.
+ *
+ * <p>Polling starts with the first subscription and runs on a thread of its own, so a slow housekeeping job on the
+ * shared {@code @Scheduled} thread cannot hold back invalidations.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "library.books.invalidation", name = "transport", havingValue = "outbox", matchIfMissing = true)
+public class OutboxInvalidationTransport implements BookInvalidationTransport {
+    private static final int PAGE_SIZE = 1000;
+
+    private final BookChangeFeed changeFeed;
+    private final Duration pollInterval;
+    private final ScheduledExecutorService poller;
+    private final List<Consumer<BookInvalidation>> receivers = new CopyOnWriteArrayList<>();
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private volatile long offset = -1;
+
+    public OutboxInvalidationTransport(BookChangeFeed changeFeed,
+                                       @Value("${library.books.invalidation.poll-interval:1s}") Duration pollInterval) {
+        this.changeFeed = changeFeed;
+        this.pollInterval = pollInterval;
+        this.poller = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("book-invalidation-poll").daemon().factory());
+    }
+
+    @PreDestroy
+    public void close() {
+        poller.shutdownNow();
+    }
+
+    /** Nothing to send: the changes reached the outbox in the transaction that made them. */
+    @Override
+    public void publish(BookInvalidation invalidation) {
+    }
+
+    /** Receivers get the changes committed from the first subscription on. */
+    @Override
+    public void subscribe(Consumer<BookInvalidation> receiver) {
+        pollLock.lock();
+        try {
+            if (offset < 0) {
+                offset = changeFeed.head();
+                long interval = pollInterval.toMillis();
+                poller.scheduleWithFixedDelay(this::pollQuietly, interval, interval, TimeUnit.MILLISECONDS);
+            }
+            receivers.add(receiver);
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    public void poll() {
+        if (receivers.isEmpty() || !pollLock.tryLock()) return;
+        try {
+            // Changes of a transaction that continue on the next page wait here until it has been read.
+            List<BookChangeDto> unsent = new ArrayList<>();
+            BookChangePageDto page;
+            do {
+                page = changeFeed.read(offset, PAGE_SIZE);
+                unsent.addAll(page.getChanges());
+                boolean more = page.getChanges().size() == PAGE_SIZE;
+                int complete = more ? lastTransactionStart(unsent) : unsent.size();
+                send(unsent.subList(0, complete));
+                unsent.subList(0, complete).clear();
+                offset = page.getNextOffset();
+            } while (page.getChanges().size() == PAGE_SIZE);
+        } catch (GoneException exception) {
+            // The bus sees the stamps of the purged changes never arrive and resyncs.
+            log.warn("Cache invalidation fell behind the change feed retention, continuing from its head");
+            offset = changeFeed.head();
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException exception) {
+            // A failed run would cancel the schedule; the next one reads from the same offset.
+            log.warn("Could not poll the change feed for cache invalidations", exception);
+        }
+    }
+
+    /** Sends each run of changes with the same catalog version as one message; unversioned changes go one by one. */
+    private void send(List<BookChangeDto> changes) {
+        int start = 0;
+        while (start < changes.size()) {
+            Long version = changes.get(start).getCatalogVersion();
+            int end = start + 1;
+            while (version != null && end < changes.size() && version.equals(changes.get(end).getCatalogVersion())) end++;
+            BookInvalidation invalidation = new BookInvalidation(version, List.copyOf(changes.subList(start, end)));
+            receivers.forEach(receiver -> receiver.accept(invalidation));
+            start = end;
+        }
+    }
+
+    private static int lastTransactionStart(List<BookChangeDto> changes) {
+        Long version = changes.getLast().getCatalogVersion();
+        if (version == null) return changes.size();
+        int start = changes.size() - 1;
+        while (start > 0 && Objects.equals(version, changes.get(start - 1).getCatalogVersion())) start--;
+        return start;
+    }
+}
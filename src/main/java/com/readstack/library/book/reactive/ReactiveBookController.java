@@ -0,0 +1,69 @@
+package com.readstack.library.book.reactive;
+
+import com.readstack.library.book.BookMapper;
+import com.readstack.library.book.dto.BookDto;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.common.NotFoundException;
+import com.readstack.library.common.ratelimit.RateLimited;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Read-only twin of {@code /library/books} served from {@link ReactiveBookRepository}, with the same page limit and
+ * the same title index lookups. Requests are processed asynchronously, so no servlet thread waits on a query. As
+ * {@code application/x-ndjson} (the default) the response is written row by row and only requested from the database
+ * as fast as the client reads it; {@code application/json} collects the page into one array.
+ */
+@RestController
+@RequestMapping("library/reactive/books")
+@ConditionalOnProperty(prefix = "library.reactive", name = "enabled", havingValue = "true")
+@AllArgsConstructor
+public class ReactiveBookController {
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 1000;
+
+    private ReactiveBookRepository repository;
+    private BookMapper mapper;
+    private BookTitleIndex titleIndex;
+
+    @RateLimited(RateLimited.Budget.QUERY)
+    @GetMapping(produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<BookDto> list(@RequestParam(defaultValue = "0") long after,
+                              @RequestParam(defaultValue = "" + DEFAULT_LIMIT) int limit) {
+        return repository.findAfter(after, Math.clamp(limit, 1, MAX_LIMIT)).map(mapper::toDTO);
+    }
+
+    @RateLimited(RateLimited.Budget.GET)
+    @GetMapping("/{id}")
+    public Mono<BookDto> get(@PathVariable Long id) {
+        return repository.findById(id)
+                .map(mapper::toDTO)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException("Book not found: " + id)));
+    }
+
+    @RateLimited(RateLimited.Budget.QUERY)
+    @GetMapping(value = "/search", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<BookDto> search(@RequestParam(required = false) String title,
+                                @RequestParam(required = false) Integer fromYear,
+                                @RequestParam(required = false) Integer toYear,
+                                @RequestParam(defaultValue = "0") int page,
+                                @RequestParam(defaultValue = "" + DEFAULT_LIMIT) int size) {
+        int pageSize = Math.clamp(size, 1, MAX_LIMIT);
+        long offset = (long) Math.max(page, 0) * pageSize;
+        if (title != null && !title.isBlank() && titleIndex.isReady()) {
+            List<Long> ids = titleIndex.search(title, fromYear, toYear, offset, pageSize);
+            return repository.findAllById(ids).map(mapper::toDTO);
+        }
+        return repository.search(title, fromYear, toYear, offset, pageSize).map(mapper::toDTO);
+    }
+}
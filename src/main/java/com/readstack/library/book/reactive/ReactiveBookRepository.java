@@ -0,0 +1,122 @@
+package com.readstack.library.book.reactive;
+
+import com.readstack.library.book.Book;
+import io.r2dbc.spi.Closeable;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Row;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Non-blocking reads over R2DBC, next to the JPA repository that still owns every write. The connection factory is
+ * deliberately not a bean: Boot's JDBC {@code DataSource} auto-configuration backs off as soon as one exists.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.reactive", name = "enabled", havingValue = "true")
+public class ReactiveBookRepository {
+    private static final String SELECT_BOOKS = "SELECT id, title, isbn, published_year, version FROM books";
+
+    private final ConnectionFactory connectionFactory;
+    private final DatabaseClient client;
+
+    public ReactiveBookRepository(@Value("${library.reactive.r2dbc.url}") String url,
+                                  @Value("${library.reactive.r2dbc.username:}") String username,
+                                  @Value("${library.reactive.r2dbc.password:}") String password) {
+        this.connectionFactory = ConnectionFactories.get(ConnectionFactoryOptions.parse(url).mutate()
+                .option(ConnectionFactoryOptions.USER, username)
+                .option(ConnectionFactoryOptions.PASSWORD, password)
+                .build());
+        this.client = DatabaseClient.create(connectionFactory);
+    }
+
+    /** Keyset page in id order; rows are emitted as the subscriber requests them. */
+    public Flux<Book> findAfter(long afterId, int limit) {
+        return client.sql(SELECT_BOOKS + " WHERE id > :after ORDER BY id LIMIT :limit")
+                .bind("after", afterId)
+                .bind("limit", limit)
+                .map((row, metadata) -> toBook(row))
+                .all();
+    }
+
+    public Mono<Book> findById(long id) {
+        return client.sql(SELECT_BOOKS + " WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> toBook(row))
+                .one();
+    }
+
+    /** The given books in the order of {@code ids}, skipping unknown ids. */
+    public Flux<Book> findAllById(List<Long> ids) {
+        if (ids.isEmpty()) return Flux.empty();
+        return client.sql(SELECT_BOOKS + " WHERE id IN (:ids)")
+                .bind("ids", ids)
+                .map((row, metadata) -> toBook(row))
+                .all()
+                .collectMap(Book::getId)
+                .flatMapIterable(byId -> ids.stream().map(byId::get).filter(Objects::nonNull).toList());
+    }
+
+    /**
+     * Same predicate and order as {@code BookService.search}, so both paths page identically. A title filter is a
+     * {@code LIKE} over the whole table there as here; it is only meant for the time before the title index is ready.
+     */
+    public Flux<Book> search(String title, Integer fromYear, Integer toYear, long offset, int limit) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        if (title != null && !title.isBlank()) {
+            conditions.add("LOWER(title) LIKE :title");
+            parameters.put("title", "%" + title.toLowerCase() + "%");
+        }
+        if (fromYear != null) {
+            conditions.add("published_year >= :fromYear");
+            parameters.put("fromYear", fromYear);
+        }
+        if (toYear != null) {
+            conditions.add("published_year <= :toYear");
+            parameters.put("toYear", toYear);
+        }
+
+        StringBuilder sql = new StringBuilder(SELECT_BOOKS);
+        if (!conditions.isEmpty()) sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        sql.append(fromYear != null || toYear != null ? " ORDER BY published_year, id" : " ORDER BY id");
+        sql.append(" LIMIT :limit OFFSET :offset");
+        parameters.put("limit", limit);
+        parameters.put("offset", offset);
+
+        return client.sql(sql.toString())
+                .bindValues(parameters)
+                .map((row, metadata) -> toBook(row))
+                .all();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (connectionFactory instanceof Closeable closeable) {
+            Mono.from(closeable.close()).block(Duration.ofSeconds(5));
+        }
+    }
+
+    private static Book toBook(Row row) {
+        return Book.builder()
+                .id(row.get("id", Long.class))
+                .title(row.get("title", String.class))
+                .isbn(row.get("isbn", String.class))
+                .publishedYear(row.get("published_year", Integer.class))
+                .version(row.get("version", Long.class))
+                .build();
+    }
+}
@@ -0,0 +1,246 @@
+package com.readstack.library.book.search;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.BookService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process inverted index over {@link Book#getTitle()}. Every query term must match a title token, either exactly
+ * or as a prefix; exact matches rank above prefix matches and shorter titles above longer ones.
+ *
+ * <p>A rebuild fills a new index beside the live one, replays the writes made meanwhile and then swaps it in, so
+ * searches keep their answers while it runs. Each search reads one index throughout.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookTitleIndex {
+    private static final int EXACT_MATCH_SCORE = 2;
+    private static final int PREFIX_MATCH_SCORE = 1;
+
+    private final BookService bookService;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private volatile Contents contents = new Contents();
+    /** Writes to replay on the index being rebuilt; {@code null} when no rebuild runs. Guarded by {@link #writeLock}. */
+    private List<Change> pending;
+    private volatile boolean ready;
+
+    private record Contents(ConcurrentSkipListMap<String, Set<Long>> postings, ConcurrentHashMap<Long, IndexedBook> documents) {
+        Contents() {
+            this(new ConcurrentSkipListMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    /** A {@code book} of {@code null} removes the book. */
+    private record Change(long id, Book book) {
+    }
+
+    private record IndexedBook(long id, List<String> tokens, Integer publishedYear) {
+    }
+
+    private record Hit(long id, int score, int length) {
+    }
+
+    /**
+     * Also run when changes may have been missed. Searches fall back to the database until the first rebuild is done,
+     * and are answered from the previous index during later ones.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            long started = System.nanoTime();
+            writeLock.lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                writeLock.unlock();
+            }
+            Contents fresh = new Contents();
+            try {
+                bookService.forEach(book -> index(fresh, book));
+                writeLock.lock();
+                try {
+                    pending.forEach(change -> apply(fresh, change));
+                    contents = fresh;
+                } finally {
+                    writeLock.unlock();
+                }
+            } finally {
+                writeLock.lock();
+                try {
+                    pending = null;
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            ready = true;
+            log.info("Indexed {} book titles in {} ms", fresh.documents().size(), (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        switch (event.type()) {
+            case CREATED, UPDATED -> index(event.after());
+            case DELETED -> remove(event.before().getId());
+        }
+    }
+
+    /** Until the startup rebuild has finished, callers should fall back to querying the database. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return contents.documents().size();
+    }
+
+    public void index(Book book) {
+        write(new Change(book.getId(), book));
+    }
+
+    public void remove(long id) {
+        write(new Change(id, null));
+    }
+
+    /**
+     * Returns the ids of matching books, best match first, restricted to the optional year range. This differs from
+     * the database search, which matches substrings and orders by id; see {@code BookController#search}.
+     */
+    public List<Long> search(String query, Integer fromYear, Integer toYear, long offset, int limit) {
+        if (offset < 0 || limit <= 0) throw new IllegalArgumentException("offset must not be negative and limit must be positive");
+        Contents current = contents;
+        return score(current, query).entrySet().stream()
+                .map(entry -> toHit(current, entry.getKey(), entry.getValue(), fromYear, toYear))
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingInt(Hit::score).reversed()
+                        .thenComparingInt(Hit::length)
+                        .thenComparingLong(Hit::id))
+                .skip(offset)
+                .limit(limit)
+                .map(Hit::id)
+                .toList();
+    }
+
+    /** Matching books per published year, {@code null} for those without one; the same matches as {@link #search}. */
+    public Map<Integer, Long> countByYear(String query, Integer fromYear, Integer toYear) {
+        Contents current = contents;
+        Map<Integer, Long> counts = new HashMap<>();
+        for (Long id : score(current, query).keySet()) {
+            IndexedBook document = current.documents().get(id);
+            if (document != null && inRange(document.publishedYear(), fromYear, toYear)) {
+                counts.merge(document.publishedYear(), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /** Every book matching all query terms, with its summed score. */
+    private static Map<Long, Integer> score(Contents contents, String query) {
+        List<String> terms = TitleNormalizer.tokenize(query);
+        if (terms.isEmpty()) return Map.of();
+
+        Map<Long, Integer> scores = null;
+        for (String term : terms) {
+            Map<Long, Integer> termScores = match(contents, term);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+            if (scores.isEmpty()) return Map.of();
+        }
+        return scores;
+    }
+
+    private static Map<Long, Integer> match(Contents contents, String term) {
+        Map<Long, Integer> scores = new HashMap<>();
+        NavigableMap<String, Set<Long>> prefixed = contents.postings().subMap(term, true, term + Character.MAX_VALUE, false);
+        prefixed.forEach((token, ids) -> {
+            int score = token.equals(term) ? EXACT_MATCH_SCORE : PREFIX_MATCH_SCORE;
+            ids.forEach(id -> scores.merge(id, score, Math::max));
+        });
+        return scores;
+    }
+
+    private static Hit toHit(Contents contents, long id, int score, Integer fromYear, Integer toYear) {
+        IndexedBook document = contents.documents().get(id);
+        if (document == null) return null;
+        if (!inRange(document.publishedYear(), fromYear, toYear)) return null;
+        return new Hit(id, score, document.tokens().size());
+    }
+
+    private static boolean inRange(Integer year, Integer fromYear, Integer toYear) {
+        if (fromYear != null && (year == null || year < fromYear)) return false;
+        return toYear == null || (year != null && year <= toYear);
+    }
+
+    private void write(Change change) {
+        writeLock.lock();
+        try {
+            apply(contents, change);
+            if (pending != null) pending.add(change);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static void apply(Contents target, Change change) {
+        if (change.book() != null) {
+            index(target, change.book());
+            return;
+        }
+        IndexedBook previous = target.documents().remove(change.id());
+        if (previous != null) {
+            previous.tokens().forEach(token -> unlink(target, token, change.id()));
+        }
+    }
+
+    private static void index(Contents target, Book book) {
+        IndexedBook document = new IndexedBook(book.getId(), TitleNormalizer.tokenize(book.getTitle()), book.getPublishedYear());
+        IndexedBook previous = target.documents().put(document.id(), document);
+        if (previous != null) {
+            previous.tokens().stream()
+                    .filter(token -> !document.tokens().contains(token))
+                    .forEach(token -> unlink(target, token, document.id()));
+        }
+        for (String token : document.tokens()) {
+            target.postings().compute(token, (key, ids) -> {
+                Set<Long> linked = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                linked.add(document.id());
+                return linked;
+            });
+        }
+    }
+
+    private static void unlink(Contents target, String token, long id) {
+        target.postings().computeIfPresent(token, (key, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+}
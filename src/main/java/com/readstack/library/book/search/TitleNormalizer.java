@@ -0,0 +1,31 @@
+package com.readstack.library.book.search;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Folds titles and queries to the same form: accents stripped, lower-cased, split on anything that is not a
+ * letter or digit.
+ */
+public final class TitleNormalizer {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private TitleNormalizer() {
+    }
+
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    public static List<String> tokenize(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) return List.of();
+        return Arrays.stream(normalized.split(" ")).distinct().toList();
+    }
+}
@@ -0,0 +1,241 @@
+package com.readstack.library.book.search;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.hot.HotBooks;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Title suggestions for a search box, answered from a {@link TitleTrie} without touching the database. A book is
+ * suggested when the prefix matches the start of any word in its normalized title, or, for a prefix of several
+ * words, when the title contains them as a phrase starting at a word. Suggestions are ranked by how often the book
+ * was requested, as estimated by {@link HotBooks}.
+ *
+ * <p>Writes are applied after commit. Popularity moves without writes, so the trie is rebuilt from its own titles
+ * every {@code reweight-interval}; the rebuild runs beside the live trie and replays the writes it missed. It runs on
+ * a thread of its own rather than on the shared {@code @Scheduled} one, which it would hold for seconds on a large
+ * catalog.
+ */
+@Slf4j
+@Component
+public class TitleSuggester {
+    public record Suggestion(long id, String title) {
+    }
+
+    /** A title of {@code null} removes the book. */
+    private record Change(long id, String title) {
+    }
+
+    private final BookService bookService;
+    private final HotBooks hotBooks;
+    private final int topN;
+    private final Duration reweightInterval;
+    private final ScheduledExecutorService reweighter;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /** Guarded by {@link #lock}, as are the fields below. */
+    private TitleTrie trie;
+    private Map<Long, String> titles = new HashMap<>();
+    /** Writes to replay on the trie being rebuilt; {@code null} when no rebuild runs. */
+    private List<Change> pending;
+    private volatile boolean ready;
+
+    public TitleSuggester(BookService bookService,
+                          HotBooks hotBooks,
+                          @Value("${library.books.suggest.top-n:10}") int topN,
+                          @Value("${library.books.suggest.reweight-interval:10m}") Duration reweightInterval) {
+        this.bookService = bookService;
+        this.hotBooks = hotBooks;
+        this.topN = topN;
+        this.reweightInterval = reweightInterval;
+        this.reweighter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("title-reweight").daemon().factory());
+        this.trie = new TitleTrie(topN);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        rebuildFrom(sink -> bookService.forEach(book -> sink.accept(book.getId(), book.getTitle())));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleReweight() {
+        long interval = reweightInterval.toMillis();
+        reweighter.scheduleWithFixedDelay(this::reweightQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        reweighter.shutdownNow();
+    }
+
+    /** Re-ranks by current popularity from the titles already in memory. */
+    public void reweight() {
+        if (!ready) return;
+        Map<Long, String> current;
+        lock.readLock().lock();
+        try {
+            current = new HashMap<>(titles);
+        } finally {
+            lock.readLock().unlock();
+        }
+        rebuildFrom(current::forEach);
+    }
+
+    private void reweightQuietly() {
+        try {
+            reweight();
+        } catch (RuntimeException exception) {
+            // A failed run would cancel the schedule; the next one starts over from the live titles.
+            log.warn("Could not reweight title suggestions", exception);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        switch (event.type()) {
+            case CREATED, UPDATED -> index(event.after());
+            case DELETED -> remove(event.before().getId());
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return titles.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void index(Book book) {
+        write(new Change(book.getId(), book.getTitle()));
+    }
+
+    public void remove(long id) {
+        write(new Change(id, null));
+    }
+
+    /** Up to {@code top-n} books with a word starting with {@code prefix}, or containing it as a phrase, best first. */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String normalized = TitleNormalizer.normalize(prefix);
+        if (normalized.isEmpty() || limit < 1) return List.of();
+        lock.readLock().lock();
+        try {
+            List<TitleTrie.Entry> found = normalized.indexOf(' ') < 0
+                    ? trie.top(normalized, Math.min(limit, topN))
+                    : phrase(normalized, Math.min(limit, topN));
+            return found.stream()
+                    .map(entry -> new Suggestion(entry.id(), entry.title()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Only single words are keys, so a phrase is looked up by the rarest of its complete words, whose books are then
+     * checked for the whole phrase. The last word may be unfinished and is only matched as part of the phrase.
+     */
+    private List<TitleTrie.Entry> phrase(String normalized, int limit) {
+        String[] words = normalized.substring(0, normalized.lastIndexOf(' ')).split(" ");
+        List<TitleTrie.Entry> candidates = null;
+        for (String word : words) {
+            List<TitleTrie.Entry> books = trie.exactly(word);
+            if (candidates == null || books.size() < candidates.size()) candidates = books;
+        }
+        String phrase = " " + normalized;
+        return candidates.stream()
+                .filter(entry -> (" " + TitleNormalizer.normalize(entry.title())).contains(phrase))
+                .sorted(TitleTrie.RANKING)
+                .limit(limit)
+                .toList();
+    }
+
+    private void rebuildFrom(Consumer<BiConsumer<Long, String>> source) {
+        rebuildLock.lock();
+        try {
+            long started = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            TitleTrie fresh = new TitleTrie(topN);
+            Map<Long, String> freshTitles = new HashMap<>();
+            try {
+                source.accept((id, title) -> apply(fresh, freshTitles, new Change(id, title)));
+                lock.writeLock().lock();
+                try {
+                    pending.forEach(change -> apply(fresh, freshTitles, change));
+                    trie = fresh;
+                    titles = freshTitles;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    pending = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            ready = true;
+            log.info("Built title suggestions for {} books in {} ms", freshTitles.size(), (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void write(Change change) {
+        lock.writeLock().lock();
+        try {
+            apply(trie, titles, change);
+            if (pending != null) pending.add(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(TitleTrie target, Map<Long, String> targetTitles, Change change) {
+        String previous = change.title() == null ? targetTitles.remove(change.id()) : targetTitles.put(change.id(), change.title());
+        if (previous != null) {
+            keys(previous).forEach(key -> target.remove(key, change.id()));
+        }
+        if (change.title() != null) {
+            TitleTrie.Entry entry = new TitleTrie.Entry(change.id(), change.title(), hotBooks.popularity(change.id()));
+            keys(change.title()).forEach(key -> target.insert(key, entry));
+        }
+    }
+
+    /** Each distinct word of the normalized title, so "clean code" is found by "clean" and by "code". */
+    private static List<String> keys(String title) {
+        return TitleNormalizer.tokenize(title);
+    }
+}
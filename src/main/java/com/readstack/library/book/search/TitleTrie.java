@@ -0,0 +1,244 @@
+package com.readstack.library.book.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Radix trie over title words in which every node keeps the best {@code topN} books of its subtree, so a prefix
+ * lookup is a walk down the prefix followed by a copy of one array. A book is stored under each of its words, always
+ * as the same {@link Entry}, and the top arrays hold each book at most once.
+ *
+ * <p>Children are kept in sorted arrays rather than maps, and top arrays are replaced rather than changed, so a
+ * subtree that is split off can share its parent's. Only the nodes at the end of a word keep the books stored there.
+ *
+ * <p>Not thread-safe: {@link TitleSuggester} serializes writes against reads.
+ */
+class TitleTrie {
+    record Entry(long id, String title, long weight) {
+    }
+
+    /** Most popular first, then shorter titles, then older books. */
+    static final Comparator<Entry> RANKING = Comparator.comparingLong(Entry::weight).reversed()
+            .thenComparingInt(entry -> entry.title().length())
+            .thenComparingLong(Entry::id);
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private static final class Node {
+        private String label;
+        /** The first character of each child's label, sorted, in step with {@link #children}. */
+        private char[] firsts = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        /** Books stored under exactly the word that ends at this node; {@code null} when there are none. */
+        private List<Entry> entries;
+        private Entry[] top = NO_ENTRIES;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private boolean isEmpty() {
+            return entries == null || entries.isEmpty();
+        }
+
+        private int find(char first) {
+            return Arrays.binarySearch(firsts, first);
+        }
+
+        private Node child(char first) {
+            int index = find(first);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private void put(Node child) {
+            int index = find(child.label.charAt(0));
+            if (index >= 0) {
+                children[index] = child;
+                return;
+            }
+            int at = -index - 1;
+            char[] firsts = new char[this.firsts.length + 1];
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.firsts, 0, firsts, 0, at);
+            System.arraycopy(this.children, 0, children, 0, at);
+            firsts[at] = child.label.charAt(0);
+            children[at] = child;
+            System.arraycopy(this.firsts, at, firsts, at + 1, this.firsts.length - at);
+            System.arraycopy(this.children, at, children, at + 1, this.children.length - at);
+            this.firsts = firsts;
+            this.children = children;
+        }
+
+        private void drop(char first) {
+            int index = find(first);
+            if (index < 0) return;
+            char[] firsts = new char[this.firsts.length - 1];
+            Node[] children = new Node[this.children.length - 1];
+            System.arraycopy(this.firsts, 0, firsts, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.firsts, index + 1, firsts, index, firsts.length - index);
+            System.arraycopy(this.children, index + 1, children, index, children.length - index);
+            this.firsts = firsts.length == 0 ? NO_LABELS : firsts;
+            this.children = children.length == 0 ? NO_CHILDREN : children;
+        }
+    }
+
+    private final int topN;
+    private final Node root = new Node("");
+
+    TitleTrie(int topN) {
+        this.topN = topN;
+    }
+
+    void insert(String key, Entry entry) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int position = 0;
+        while (position < key.length()) {
+            Node child = node.child(key.charAt(position));
+            if (child == null) {
+                child = new Node(key.substring(position));
+                node.put(child);
+                position = key.length();
+            } else {
+                int common = commonPrefix(child.label, key, position);
+                if (common < child.label.length()) {
+                    Node split = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    split.put(child);
+                    split.top = child.top;
+                    node.put(split);
+                    child = split;
+                }
+                position += common;
+            }
+            node = child;
+            path.add(node);
+        }
+        if (node.entries == null) node.entries = new ArrayList<>(1);
+        node.entries.add(entry);
+        // A new book can only push others down, so each top array on the path just takes it in or not.
+        for (Node onPath : path) onPath.top = offer(onPath.top, entry);
+    }
+
+    void remove(String key, long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int position = 0;
+        while (position < key.length()) {
+            Node child = node.child(key.charAt(position));
+            if (child == null || !key.startsWith(child.label, position)) return;
+            position += child.label.length();
+            node = child;
+            path.add(node);
+        }
+        if (node.entries == null || !node.entries.removeIf(entry -> entry.id() == id)) return;
+        if (node.entries.isEmpty()) node.entries = null;
+        settle(path, id);
+    }
+
+    /** The best books stored under a word starting with {@code prefix}; at most {@code topN} of them. */
+    List<Entry> top(String prefix, int limit) {
+        Node node = root;
+        int position = 0;
+        while (position < prefix.length()) {
+            Node child = node.child(prefix.charAt(position));
+            if (child == null) return List.of();
+            int remaining = prefix.length() - position;
+            if (child.label.length() >= remaining) {
+                // The prefix ends inside this edge, so everything below it matches.
+                return child.label.regionMatches(0, prefix, position, remaining) ? limit(child.top, limit) : List.of();
+            }
+            if (!prefix.startsWith(child.label, position)) return List.of();
+            position += child.label.length();
+            node = child;
+        }
+        return limit(node.top, limit);
+    }
+
+    /** Every book stored under exactly {@code word}, in no particular order. */
+    List<Entry> exactly(String word) {
+        Node node = root;
+        int position = 0;
+        while (position < word.length()) {
+            Node child = node.child(word.charAt(position));
+            if (child == null || !word.startsWith(child.label, position)) return List.of();
+            position += child.label.length();
+            node = child;
+        }
+        return node.entries == null ? List.of() : node.entries;
+    }
+
+    /**
+     * Walks from the changed node up to the root, dropping nodes left empty and merging nodes left with a single
+     * child, so removals keep the trie as compact as a fresh build. Only top arrays that held the removed book are
+     * recomputed.
+     */
+    private void settle(List<Node> path, long id) {
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            Node node = path.get(depth);
+            if (depth > 0 && node.isEmpty()) {
+                if (node.children.length == 0) {
+                    path.get(depth - 1).drop(node.label.charAt(0));
+                    continue;
+                }
+                if (node.children.length == 1) {
+                    Node only = node.children[0];
+                    node.label = node.label + only.label;
+                    node.firsts = only.firsts;
+                    node.children = only.children;
+                    node.entries = only.entries;
+                }
+            }
+            if (contains(node.top, id)) node.top = best(node);
+        }
+    }
+
+    private Entry[] best(Node node) {
+        Entry[] best = NO_ENTRIES;
+        if (node.entries != null) {
+            for (Entry entry : node.entries) best = offer(best, entry);
+        }
+        for (Node child : node.children) {
+            for (Entry entry : child.top) best = offer(best, entry);
+        }
+        return best;
+    }
+
+    /** {@code top} with {@code entry} ranked into it, or {@code top} itself if the book is in it or ranks too low. */
+    private Entry[] offer(Entry[] top, Entry entry) {
+        if (contains(top, entry.id())) return top;
+        int at = 0;
+        while (at < top.length && RANKING.compare(top[at], entry) <= 0) at++;
+        if (at >= topN) return top;
+        Entry[] offered = new Entry[Math.min(top.length + 1, topN)];
+        System.arraycopy(top, 0, offered, 0, at);
+        offered[at] = entry;
+        System.arraycopy(top, at, offered, at + 1, offered.length - at - 1);
+        return offered;
+    }
+
+    private static boolean contains(Entry[] top, long id) {
+        for (Entry entry : top) {
+            if (entry.id() == id) return true;
+        }
+        return false;
+    }
+
+    private static List<Entry> limit(Entry[] top, int limit) {
+        return List.of(top.length <= limit ? top : Arrays.copyOf(top, limit));
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int common = 0;
+        while (common < length && label.charAt(common) == key.charAt(offset + common)) common++;
+        return common;
+    }
+}
@@ -0,0 +1,641 @@
+package com.readstack.library.book.shard;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The books table split over several databases by a consistent hash of the ISBN, see {@link ShardRing}. Off unless
+ * {@code library.database.shards.enabled} is set, in which case {@link com.readstack.library.book.BookService} and the
+ * other readers and writers of books come here instead of the primary database, which keeps the catalog stamp, the
+ * change outbox and the year counts.
+ *
+ * <p>Every id carries the number of the shard that stores the book in its low {@value #SHARD_BITS} bits, so
+ * lookups by id go to exactly one shard, and so do lookups by ISBN. A book whose ISBN is changed stays on the shard
+ * its id names; an ISBN lookup that misses its home shard therefore asks the others before answering "not found",
+ * which the ISBN filter keeps rare. Lists and searches ask every shard in parallel for the first rows of the page
+ * and merge them.
+ *
+ * <p>ISBNs are unique across the shards: every book also claims its ISBN in {@code book_isbn_claims} on the ISBN's
+ * home shard, in the same shard transaction as the write, so two books can only get the same ISBN by claiming it on
+ * the same unique key. The home shards follow the ring, so adding a shard means moving the claims with it.
+ *
+ * <p>Inside a primary transaction, the writes to each shard go through one connection of that shard held for the
+ * transaction, and commit right after the primary commits, or roll back with it. A shard commit that fails after the
+ * primary has committed is rolled forward: the books it changed are written again, as they are now known to the
+ * primary, each in its own statement. Outside a transaction each write commits on its own.
+ */
+@Slf4j
+@Component
+public class BookShards {
+    /** Leaves ids below 2^53, so JavaScript clients still read them exactly. */
+    public static final int SHARD_BITS = 10;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private static final String COLUMNS = "id, title, isbn, published_year, version";
+    private static final String FIND_BY_ID_SQL = "SELECT " + COLUMNS + " FROM books WHERE id = ?";
+    private static final String FIND_BY_ISBN_SQL = "SELECT " + COLUMNS + " FROM books WHERE isbn = ?";
+    private static final String FIND_ALL_BY_ID_SQL = "SELECT " + COLUMNS + " FROM books WHERE id IN (:ids)";
+    private static final String FIND_ALL_BY_ISBN_SQL = "SELECT " + COLUMNS + " FROM books WHERE isbn IN (:isbns)";
+    private static final String LIST_AFTER_SQL = "SELECT " + COLUMNS + " FROM books WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM books";
+    private static final String INSERT_SQL = "INSERT INTO books (title, isbn, published_year, version) VALUES (?, ?, ?, 0)";
+    private static final String UPDATE_SQL =
+            "UPDATE books SET title = ?, isbn = ?, published_year = ?, version = version + 1 WHERE id = ? AND version = ?";
+    private static final String DELETE_SQL = "DELETE FROM books WHERE id = ? AND version = ?";
+    private static final String REPAIR_UPDATE_SQL = "UPDATE books SET title = ?, isbn = ?, published_year = ?, version = ? WHERE id = ?";
+    private static final String REPAIR_INSERT_SQL = "INSERT INTO books (id, title, isbn, published_year, version) VALUES (?, ?, ?, ?, ?)";
+    private static final String REPAIR_DELETE_SQL = "DELETE FROM books WHERE id = ?";
+    private static final String CLAIM_SQL = "INSERT INTO book_isbn_claims (isbn, book_id) VALUES (?, ?)";
+    private static final String RELEASE_SQL = "DELETE FROM book_isbn_claims WHERE isbn = ? AND book_id = ?";
+    private static final String REPAIR_CLAIM_SQL = "INSERT INTO book_isbn_claims (isbn, book_id) SELECT ?, ? FROM DUAL "
+            + "WHERE NOT EXISTS (SELECT 1 FROM book_isbn_claims WHERE isbn = ? AND book_id = ?)";
+
+    /** The shards' own migrations: the books table and the ISBN claims, none of the primary's other tables. */
+    static final String MIGRATIONS = "classpath:db/shard";
+
+    private static final Comparator<Book> BY_ID = Comparator.comparing(Book::getId);
+    /** MySQL sorts missing years first, as the unsharded search does. */
+    private static final Comparator<Book> BY_YEAR_AND_ID =
+            Comparator.comparing(Book::getPublishedYear, Comparator.nullsFirst(Comparator.<Integer>naturalOrder())).thenComparing(BY_ID);
+
+    private record Shard(int number, DataSource dataSource, JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedJdbcTemplate,
+                         TransactionTemplate transactionTemplate) {
+        RowMapper<Book> rowMapper() {
+            return (resultSet, rowNumber) -> Book.builder()
+                    .id(globalId(resultSet.getLong("id"), number))
+                    .title(resultSet.getString("title"))
+                    .isbn(resultSet.getString("isbn"))
+                    .publishedYear(resultSet.getObject("published_year", Integer.class))
+                    .version(resultSet.getLong("version"))
+                    .build();
+        }
+    }
+
+    private final Map<Integer, Shard> shards = new TreeMap<>();
+    private final List<DataSource> pools = new ArrayList<>();
+    private final ShardRing ring;
+    private final ExecutorService scatter;
+
+    @Autowired
+    public BookShards(DataSourceProperties properties, Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(pools(properties, Binder.get(environment), meterRegistry),
+                Binder.get(environment).bind("library.database.shards.virtual-nodes", Integer.class).orElse(128));
+        Binder binder = Binder.get(environment);
+        if (isEnabled() && binder.bind("library.reactive.enabled", Boolean.class).orElse(false)) {
+            close();
+            throw new IllegalStateException("library.reactive.enabled cannot be combined with library.database.shards.enabled: "
+                    + "the reactive endpoints read and write the books table of the primary");
+        }
+        if (isEnabled() && binder.bind("spring.flyway.enabled", Boolean.class).orElse(true)) {
+            String[] locations = binder.bind("library.database.shards.migrations", String[].class).orElse(new String[]{MIGRATIONS});
+            shards.forEach((number, shard) -> {
+                log.info("Migrating book shard {}", number);
+                Flyway.configure().dataSource(shard.jdbcTemplate().getDataSource()).locations(locations).load().migrate();
+            });
+        }
+    }
+
+    BookShards(Map<Integer, DataSource> dataSources, int virtualNodes) {
+        dataSources.forEach((number, dataSource) -> {
+            if (number < 0 || number >= MAX_SHARDS) {
+                throw new IllegalArgumentException("Shard numbers must be between 0 and " + (MAX_SHARDS - 1) + ": " + number);
+            }
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            shards.put(number, new Shard(number, dataSource, jdbcTemplate, new NamedParameterJdbcTemplate(jdbcTemplate),
+                    new TransactionTemplate(new DataSourceTransactionManager(dataSource))));
+            pools.add(dataSource);
+        });
+        this.ring = shards.isEmpty() ? null : new ShardRing(shards.keySet(), virtualNodes);
+        this.scatter = shards.isEmpty() ? null : Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("book-shard-", 0).factory());
+    }
+
+    public boolean isEnabled() {
+        return !shards.isEmpty();
+    }
+
+    public Set<Integer> shardNumbers() {
+        return shards.keySet();
+    }
+
+    /** Where a new book with this ISBN is stored. */
+    public int shardFor(String isbn) {
+        return ring.shardFor(isbn);
+    }
+
+    /** The shard named by an id; ids that name no configured shard belong to no book. */
+    public static int shardOf(long id) {
+        return (int) (id & (MAX_SHARDS - 1));
+    }
+
+    static long globalId(long localId, int shard) {
+        return (localId << SHARD_BITS) | shard;
+    }
+
+    private static long localId(long id) {
+        return id >>> SHARD_BITS;
+    }
+
+    public Book insert(Book book) {
+        Shard shard = shards.get(shardFor(book.getIsbn()));
+        return write(shard, jdbcTemplate -> {
+            KeyHolder keys = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
+                statement.setString(1, book.getTitle());
+                statement.setString(2, book.getIsbn());
+                statement.setObject(3, book.getPublishedYear(), Types.INTEGER);
+                return statement;
+            }, keys);
+            Book created = book.toBuilder().id(globalId(keys.getKey().longValue(), shard.number())).version(0L).build();
+            jdbcTemplate.update(CLAIM_SQL, created.getIsbn(), created.getId());
+            return created;
+        }, created -> List.of(new Row(created.getId(), created), new Claim(created.getId(), created.getIsbn())));
+    }
+
+    /**
+     * Inserts books that all belong to {@code shard} in one batch and one shard transaction, so a duplicate ISBN
+     * leaves none of them behind. Returns them as stored, with their ids.
+     */
+    public List<Book> insertAll(int shard, List<Book> books) {
+        Shard target = shards.get(shard);
+        return write(target, jdbcTemplate -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, books, books.size(), (statement, book) -> {
+                statement.setString(1, book.getTitle());
+                statement.setString(2, book.getIsbn());
+                statement.setObject(3, book.getPublishedYear(), Types.INTEGER);
+            });
+            List<Book> inserted = new NamedParameterJdbcTemplate(jdbcTemplate).query(FIND_ALL_BY_ISBN_SQL,
+                    Map.of("isbns", books.stream().map(Book::getIsbn).toList()), target.rowMapper());
+            jdbcTemplate.batchUpdate(CLAIM_SQL, inserted, inserted.size(), (statement, book) -> {
+                statement.setString(1, book.getIsbn());
+                statement.setLong(2, book.getId());
+            });
+            return inserted;
+        }, inserted -> inserted.stream()
+                .<Change>mapMulti((book, changes) -> {
+                    changes.accept(new Row(book.getId(), book));
+                    changes.accept(new Claim(book.getId(), book.getIsbn()));
+                })
+                .toList());
+    }
+
+    /**
+     * Writes the book's fields if it is still at its version, and returns it at the next version. A new ISBN is
+     * claimed on its home shard before the row changes, and {@code previousIsbn} released afterwards.
+     */
+    public Book update(Book book, String previousIsbn) {
+        Shard shard = owner(book.getId()).orElseThrow(() -> concurrentChange(book));
+        boolean renumbered = !book.getIsbn().equalsIgnoreCase(previousIsbn);
+        if (renumbered) claim(book.getIsbn(), book.getId());
+        Book updated;
+        try {
+            updated = write(shard, jdbcTemplate -> {
+                int rows = jdbcTemplate.update(UPDATE_SQL, book.getTitle(), book.getIsbn(), book.getPublishedYear(),
+                        localId(book.getId()), book.getVersion());
+                if (rows == 0) throw concurrentChange(book);
+                return book.toBuilder().version(book.getVersion() + 1).build();
+            }, written -> List.of(new Row(written.getId(), written)));
+        } catch (RuntimeException exception) {
+            // Inside a transaction the claim rolls back with it; outside, it has already committed on its own.
+            if (renumbered && !TransactionSynchronizationManager.isActualTransactionActive()) release(book.getIsbn(), book.getId());
+            throw exception;
+        }
+        if (renumbered) release(previousIsbn, book.getId());
+        return updated;
+    }
+
+    public void delete(Book book) {
+        Shard shard = owner(book.getId()).orElseThrow(() -> concurrentChange(book));
+        write(shard, jdbcTemplate -> {
+            if (jdbcTemplate.update(DELETE_SQL, localId(book.getId()), book.getVersion()) == 0) {
+                throw concurrentChange(book);
+            }
+            return book;
+        }, deleted -> List.of(new Row(deleted.getId(), null)));
+        release(book.getIsbn(), book.getId());
+    }
+
+    private void claim(String isbn, long bookId) {
+        write(shards.get(shardFor(isbn)), jdbcTemplate -> jdbcTemplate.update(CLAIM_SQL, isbn, bookId),
+                claimed -> List.of(new Claim(bookId, isbn)));
+    }
+
+    private void release(String isbn, long bookId) {
+        write(shards.get(shardFor(isbn)), jdbcTemplate -> jdbcTemplate.update(RELEASE_SQL, isbn, bookId),
+                released -> List.of(new Release(bookId, isbn)));
+    }
+
+    public Optional<Book> findById(long id) {
+        return owner(id).flatMap(shard -> shard.jdbcTemplate().query(FIND_BY_ID_SQL, shard.rowMapper(), localId(id)).stream().findFirst());
+    }
+
+    public Optional<Book> findByIsbn(String isbn) {
+        int home = shardFor(isbn);
+        Optional<Book> book = findByIsbn(shards.get(home), isbn);
+        if (book.isPresent()) return book;
+        return gather(others(home), shard -> findByIsbn(shard, isbn).stream().toList()).stream().findFirst();
+    }
+
+    public boolean existsByIsbn(String isbn) {
+        return findByIsbn(isbn).isPresent();
+    }
+
+    /** The books with these ids, in no particular order; one query per shard involved. */
+    public List<Book> findAllById(Collection<Long> ids) {
+        Map<Integer, List<Long>> byShard = new HashMap<>();
+        for (long id : ids) {
+            if (shards.containsKey(shardOf(id))) byShard.computeIfAbsent(shardOf(id), shard -> new ArrayList<>()).add(localId(id));
+        }
+        return gather(byShard.keySet().stream().map(shards::get).toList(), shard -> shard.namedJdbcTemplate()
+                .query(FIND_ALL_BY_ID_SQL, Map.of("ids", byShard.get(shard.number())), shard.rowMapper()));
+    }
+
+    /** The books with these ISBNs, in no particular order. ISBNs missing from their home shard are looked for everywhere. */
+    public List<Book> findAllByIsbn(Collection<String> isbns) {
+        Map<Integer, List<String>> byShard = new HashMap<>();
+        isbns.forEach(isbn -> byShard.computeIfAbsent(shardFor(isbn), shard -> new ArrayList<>()).add(isbn));
+        List<Book> found = new ArrayList<>(gather(byShard.keySet().stream().map(shards::get).toList(), shard -> shard.namedJdbcTemplate()
+                .query(FIND_ALL_BY_ISBN_SQL, Map.of("isbns", byShard.get(shard.number())), shard.rowMapper())));
+        Set<String> missing = new HashSet<>();
+        isbns.forEach(isbn -> missing.add(isbn.toUpperCase(Locale.ROOT)));
+        found.forEach(book -> missing.remove(book.getIsbn().toUpperCase(Locale.ROOT)));
+        if (!missing.isEmpty()) {
+            List<String> leftover = isbns.stream().filter(isbn -> missing.contains(isbn.toUpperCase(Locale.ROOT))).toList();
+            found.addAll(gather(shards.values(), shard -> shard.namedJdbcTemplate()
+                    .query(FIND_ALL_BY_ISBN_SQL, Map.of("isbns", leftover), shard.rowMapper())).stream()
+                    .filter(book -> shardFor(book.getIsbn()) != shardOf(book.getId()))
+                    .toList());
+        }
+        return found;
+    }
+
+    /** Those of the given ISBNs that any shard stores. */
+    public Set<String> existingIsbns(Collection<String> isbns) {
+        Set<String> existing = new HashSet<>();
+        findAllByIsbn(isbns).forEach(book -> existing.add(book.getIsbn()));
+        return existing;
+    }
+
+    /** Keyset page in id order: every shard returns its first {@code limit} books after {@code afterId}. */
+    public List<Book> listAfter(long afterId, int limit) {
+        return merge(shard -> shard.jdbcTemplate().query(LIST_AFTER_SQL, shard.rowMapper(),
+                Math.floorDiv(afterId - shard.number(), MAX_SHARDS), limit), BY_ID, 0, limit);
+    }
+
+    /**
+     * The sharded counterpart of {@link com.readstack.library.book.BookService#search}, with the same filters and
+     * order. A shard cannot know how many of its rows precede the page, so each returns the first
+     * {@code (page + 1) * size} rows and the merge drops the earlier pages.
+     */
+    public List<Book> search(String title, Integer fromYear, Integer toYear, int page, int size) {
+        boolean byYear = fromYear != null || toYear != null;
+        Filter filter = new Filter(title, fromYear, toYear);
+        String sql = "SELECT " + COLUMNS + " FROM books" + filter.where()
+                + (byYear ? " ORDER BY published_year, id" : " ORDER BY id") + " LIMIT :limit";
+        Map<String, Object> parameters = new HashMap<>(filter.parameters());
+        parameters.put("limit", ((long) page + 1) * size);
+        return merge(shard -> shard.namedJdbcTemplate().query(sql, parameters, shard.rowMapper()),
+                byYear ? BY_YEAR_AND_ID : BY_ID, Math.multiplyExact(page, size), size);
+    }
+
+    /** Book counts per published year, summed over the shards; {@code null} counts the books without a year. */
+    public Map<Integer, Long> countByYear(String title, Integer fromYear, Integer toYear) {
+        Filter filter = new Filter(title, fromYear, toYear);
+        String sql = "SELECT published_year, COUNT(*) AS book_count FROM books" + filter.where() + " GROUP BY published_year";
+        Map<Integer, Long> counts = new HashMap<>();
+        gather(shards.values(), shard -> shard.namedJdbcTemplate().query(sql, filter.parameters(), (resultSet, rowNumber) ->
+                Map.entry(Optional.ofNullable(resultSet.getObject("published_year", Integer.class)), resultSet.getLong("book_count"))))
+                .forEach(entry -> counts.merge(entry.getKey().orElse(null), entry.getValue(), Long::sum));
+        return counts;
+    }
+
+    public long count() {
+        return gather(shards.values(), shard -> List.of(shard.jdbcTemplate().queryForObject(COUNT_SQL, Long.class)))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Walks every book in global id order, as the unsharded catalog does: each shard is read in keyset pages of
+     * {@link BookRepository#STREAM_FETCH_SIZE} rows, and the heads of the shards are merged one book at a time, so
+     * no more than a page per shard is held.
+     */
+    public void forEach(Consumer<Book> action) {
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparing(Cursor::peek, BY_ID));
+        shards.values().stream().map(Cursor::new).filter(Cursor::hasNext).forEach(cursors::add);
+        while (!cursors.isEmpty()) {
+            Cursor cursor = cursors.poll();
+            action.accept(cursor.next());
+            if (cursor.hasNext()) cursors.add(cursor);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (scatter != null) scatter.shutdownNow();
+        pools.forEach(pool -> {
+            if (pool instanceof HikariDataSource hikari) hikari.close();
+        });
+    }
+
+    /**
+     * Runs {@code statements} on the shard's connection of the running transaction, opening it on the shard's first
+     * write, and remembers what they change in case the shard commit fails. Outside a transaction the statements
+     * run in a shard transaction of their own.
+     */
+    private <T> T write(Shard shard, Function<JdbcTemplate, T> statements, Function<T, List<Change>> changes) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return shard.transactionTemplate().execute(status -> statements.apply(shard.jdbcTemplate()));
+        }
+        Writes writes = (Writes) TransactionSynchronizationManager.getResource(this);
+        if (writes == null) {
+            writes = new Writes();
+            TransactionSynchronizationManager.bindResource(this, writes);
+            TransactionSynchronizationManager.registerSynchronization(writes);
+        }
+        Pending pending = writes.on(shard);
+        T result = statements.apply(pending.jdbcTemplate());
+        pending.changes().addAll(changes.apply(result));
+        return result;
+    }
+
+    /** One shard write, as it can be made again with plain JDBC whatever the shard holds by then. */
+    private sealed interface Change {
+        long bookId();
+
+        void repair(Connection connection) throws SQLException;
+    }
+
+    /** A book as the primary transaction left it; {@code after} is {@code null} for a deleted book. */
+    private record Row(long bookId, Book after) implements Change {
+        @Override
+        public void repair(Connection connection) throws SQLException {
+            long id = localId(bookId);
+            if (after == null) {
+                execute(connection, REPAIR_DELETE_SQL, id);
+            } else if (execute(connection, REPAIR_UPDATE_SQL, after.getTitle(), after.getIsbn(), after.getPublishedYear(), after.getVersion(), id) == 0) {
+                execute(connection, REPAIR_INSERT_SQL, id, after.getTitle(), after.getIsbn(), after.getPublishedYear(), after.getVersion());
+            }
+        }
+    }
+
+    private record Claim(long bookId, String isbn) implements Change {
+        @Override
+        public void repair(Connection connection) throws SQLException {
+            execute(connection, REPAIR_CLAIM_SQL, isbn, bookId, isbn, bookId);
+        }
+    }
+
+    private record Release(long bookId, String isbn) implements Change {
+        @Override
+        public void repair(Connection connection) throws SQLException {
+            execute(connection, RELEASE_SQL, isbn, bookId);
+        }
+    }
+
+    /** The open transaction on one shard and what it changed. */
+    private record Pending(Shard shard, Connection connection, JdbcTemplate jdbcTemplate, List<Change> changes) {
+    }
+
+    /** The shard transactions of one primary transaction; they complete as it does. */
+    private final class Writes implements TransactionSynchronization {
+        private final Map<Integer, Pending> byShard = new TreeMap<>();
+
+        private Pending on(Shard shard) {
+            return byShard.computeIfAbsent(shard.number(), number -> {
+                try {
+                    Connection connection = shard.dataSource().getConnection();
+                    connection.setAutoCommit(false);
+                    return new Pending(shard, connection, new JdbcTemplate(new SingleConnectionDataSource(connection, true)), new ArrayList<>());
+                } catch (SQLException exception) {
+                    throw new CannotGetJdbcConnectionException("Could not open a transaction on book shard " + number, exception);
+                }
+            });
+        }
+
+        /** Ahead of the other after-commit steps, so they see the shards as the primary does. */
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void afterCommit() {
+            byShard.values().forEach(this::commit);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BookShards.this);
+            for (Pending pending : byShard.values()) {
+                try {
+                    if (status != STATUS_COMMITTED) pending.connection().rollback();
+                    pending.connection().setAutoCommit(true);
+                    pending.connection().close();
+                } catch (SQLException exception) {
+                    log.warn("Could not release the connection of book shard {}", pending.shard().number(), exception);
+                }
+            }
+        }
+
+        private void commit(Pending pending) {
+            try {
+                pending.connection().commit();
+            } catch (SQLException exception) {
+                log.error("Book shard {} failed to commit after the primary did; writing its {} changes again",
+                        pending.shard().number(), pending.changes().size(), exception);
+                pending.changes().forEach(change -> repair(pending.shard(), change));
+            }
+        }
+    }
+
+    /**
+     * Makes {@code change} again, whatever the shard holds now. Plain JDBC, because the primary transaction's
+     * synchronization is still active here and would hold on to a {@link JdbcTemplate}'s connection.
+     */
+    private static void repair(Shard shard, Change change) {
+        try (Connection connection = shard.dataSource().getConnection()) {
+            change.repair(connection);
+        } catch (SQLException | RuntimeException exception) {
+            log.error("Book {} on shard {} is out of step with the primary and needs repair", change.bookId(), shard.number(), exception);
+        }
+    }
+
+    private static int execute(Connection connection, String sql, Object... values) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < values.length; i++) statement.setObject(i + 1, values[i]);
+            return statement.executeUpdate();
+        }
+    }
+
+    private Optional<Shard> owner(long id) {
+        return id < 0 ? Optional.empty() : Optional.ofNullable(shards.get(shardOf(id)));
+    }
+
+    private List<Shard> others(int number) {
+        return shards.values().stream().filter(shard -> shard.number() != number).toList();
+    }
+
+    private static Optional<Book> findByIsbn(Shard shard, String isbn) {
+        return shard.jdbcTemplate().query(FIND_BY_ISBN_SQL, shard.rowMapper(), isbn).stream().findFirst();
+    }
+
+    private List<Book> merge(Function<Shard, List<Book>> query, Comparator<Book> order, int skip, int limit) {
+        List<CompletableFuture<List<Book>>> pages = shards.values().stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), scatter))
+                .toList();
+        return SortedMerge.merge(pages.stream().map(BookShards::join).toList(), order, skip, limit);
+    }
+
+    /** Runs {@code query} on every given shard at once and concatenates the results. */
+    private <T> List<T> gather(Collection<Shard> targets, Function<Shard, List<T>> query) {
+        if (targets.size() == 1) return query.apply(targets.iterator().next());
+        List<CompletableFuture<List<T>>> results = targets.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), scatter))
+                .toList();
+        List<T> gathered = new ArrayList<>();
+        results.forEach(result -> gathered.addAll(join(result)));
+        return gathered;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException cause) throw cause;
+            throw exception;
+        }
+    }
+
+    private static OptimisticLockingFailureException concurrentChange(Book book) {
+        return new OptimisticLockingFailureException("Book " + book.getId() + " was changed or deleted concurrently");
+    }
+
+    /** One shard read in id order, a keyset page at a time. */
+    private static final class Cursor {
+        private final Shard shard;
+        private final ArrayDeque<Book> buffer = new ArrayDeque<>();
+        private long afterLocalId;
+        private boolean exhausted;
+
+        private Cursor(Shard shard) {
+            this.shard = shard;
+        }
+
+        private boolean hasNext() {
+            if (buffer.isEmpty() && !exhausted) {
+                List<Book> page = shard.jdbcTemplate().query(LIST_AFTER_SQL, shard.rowMapper(), afterLocalId, BookRepository.STREAM_FETCH_SIZE);
+                exhausted = page.size() < BookRepository.STREAM_FETCH_SIZE;
+                if (!page.isEmpty()) afterLocalId = localId(page.getLast().getId());
+                buffer.addAll(page);
+            }
+            return !buffer.isEmpty();
+        }
+
+        private Book peek() {
+            return buffer.getFirst();
+        }
+
+        private Book next() {
+            return buffer.removeFirst();
+        }
+    }
+
+    /** The filters of {@link com.readstack.library.book.BookSpecs} as a WHERE clause. */
+    private record Filter(String title, Integer fromYear, Integer toYear) {
+        String where() {
+            List<String> conditions = new ArrayList<>();
+            if (title != null && !title.isBlank()) conditions.add("LOWER(title) LIKE :title");
+            if (fromYear != null) conditions.add("published_year >= :fromYear");
+            if (toYear != null) conditions.add("published_year <= :toYear");
+            return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        }
+
+        Map<String, Object> parameters() {
+            Map<String, Object> parameters = new LinkedHashMap<>();
+            if (title != null && !title.isBlank()) parameters.put("title", "%" + title.toLowerCase() + "%");
+            if (fromYear != null) parameters.put("fromYear", fromYear);
+            if (toYear != null) parameters.put("toYear", toYear);
+            return parameters;
+        }
+    }
+
+    /**
+     * One pool per entry of {@code library.database.shards.urls}, keyed by shard number, with the
+     * {@code spring.datasource} credentials and {@code spring.datasource.hikari} settings.
+     */
+    private static Map<Integer, DataSource> pools(DataSourceProperties properties, Binder binder, ObjectProvider<MeterRegistry> meterRegistry) {
+        if (!binder.bind("library.database.shards.enabled", Boolean.class).orElse(false)) return Map.of();
+        Map<Integer, String> urls = binder.bind("library.database.shards.urls", Bindable.mapOf(Integer.class, String.class)).orElse(Map.of());
+        if (urls.isEmpty()) throw new IllegalStateException("library.database.shards.enabled is set, but library.database.shards.urls is empty");
+
+        HikariConfig template = binder.bind("spring.datasource.hikari", Bindable.ofInstance(new HikariConfig())).orElseGet(HikariConfig::new);
+        template.setUsername(properties.determineUsername());
+        template.setPassword(properties.determinePassword());
+        template.setDriverClassName(properties.determineDriverClassName());
+        meterRegistry.ifAvailable(registry -> template.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+
+        Map<Integer, DataSource> pools = new TreeMap<>();
+        urls.forEach((number, url) -> {
+            HikariConfig shard = new HikariConfig();
+            template.copyStateTo(shard);
+            shard.setJdbcUrl(url.trim());
+            shard.setPoolName("shard-" + number);
+            pools.put(number, new HikariDataSource(shard));
+        });
+        return pools;
+    }
+}
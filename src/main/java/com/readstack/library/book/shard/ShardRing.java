@@ -0,0 +1,47 @@
+package com.readstack.library.book.shard;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing of ISBNs onto shard numbers. Every shard owns {@code virtualNodes} points on a 64-bit ring and
+ * an ISBN belongs to the first point at or after its own hash, so adding a shard only takes over about
+ * {@code 1 / shards} of the ISBNs, all of them from the shards that were there before.
+ */
+public final class ShardRing {
+    private final TreeMap<Long, Integer> ring = new TreeMap<>();
+
+    public ShardRing(Collection<Integer> shards, int virtualNodes) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("At least one shard is required");
+        if (virtualNodes < 1) throw new IllegalArgumentException("virtualNodes must be positive");
+        for (int shard : shards) {
+            for (int node = 0; node < virtualNodes; node++) {
+                // A collision keeps the lower shard number, so the ring does not depend on the iteration order.
+                ring.merge(hash("shard-" + shard + "#" + node), shard, Math::min);
+            }
+        }
+    }
+
+    /** MySQL compares ISBNs case-insensitively, so {@code x} and {@code X} check digits land on the same shard. */
+    public int shardFor(String isbn) {
+        Map.Entry<Long, Integer> owner = ring.ceilingEntry(hash(isbn.toUpperCase(Locale.ROOT)));
+        return (owner != null ? owner : ring.firstEntry()).getValue();
+    }
+
+    /** FNV-1a over the UTF-16 code units, then the MurmurHash3 finalizer to spread the short, similar keys. */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
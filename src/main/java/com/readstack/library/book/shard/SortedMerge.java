@@ -0,0 +1,34 @@
+package com.readstack.library.book.shard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** K-way merge of the sorted pages the shards return, cut to one page of the combined order. */
+final class SortedMerge {
+    private SortedMerge() {
+    }
+
+    private record Cursor<T>(List<T> rows, int position) {
+        T head() {
+            return rows.get(position);
+        }
+    }
+
+    /** Skips the first {@code skip} elements of the merged order and returns up to {@code limit} of the rest. */
+    static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order, int skip, int limit) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+                (left, right) -> order.compare(left.head(), right.head()));
+        for (List<T> rows : sorted) {
+            if (!rows.isEmpty()) heads.add(new Cursor<>(rows, 0));
+        }
+        List<T> page = new ArrayList<>(Math.min(limit, 1024));
+        for (long taken = 0; taken < (long) skip + limit && !heads.isEmpty(); taken++) {
+            Cursor<T> next = heads.poll();
+            if (taken >= skip) page.add(next.head());
+            if (next.position() + 1 < next.rows().size()) heads.add(new Cursor<>(next.rows(), next.position() + 1));
+        }
+        return page;
+    }
+}
@@ -0,0 +1,149 @@
+package com.readstack.library.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.dto.BookChangeDto;
+import com.readstack.library.book.dto.BookChangePageDto;
+import com.readstack.library.book.dto.BookDto;
+import com.readstack.library.common.GoneException;
+import jakarta.annotation.PreDestroy;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the {@code book_changes} outbox by offset. Offsets are assigned in the commit step of the writing
+ * transaction, while it holds the {@code catalog_stamp} row lock, so they become visible in order and a consumer
+ * never skips a later-committing lower offset. Long polls park as {@link DeferredResult}s and are answered when a local commit happens, or when
+ * the once-a-second head check sees changes written by another instance.
+ */
+@Component
+public class BookChangeFeed {
+    private static final String SELECT_SQL = "SELECT id, book_id, change_type, payload, changed_at, catalog_version FROM book_changes "
+            + "WHERE id > :after ORDER BY id LIMIT :limit";
+    private static final String HEAD_SQL = "SELECT COALESCE(MAX(id), 0) FROM book_changes";
+    private static final String HORIZON_SQL = "SELECT changes_purged_through FROM catalog_stamp WHERE id = :id";
+    private static final Duration HEAD_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService headChecker;
+    private final ExecutorService responders;
+
+    private record Waiter(long after, int limit, DeferredResult<BookChangePageDto> result) {
+    }
+
+    public BookChangeFeed(NamedParameterJdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.headChecker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("book-changes-head").daemon().factory());
+        this.responders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("book-changes-", 0).factory());
+        long interval = HEAD_CHECK_INTERVAL.toMillis();
+        headChecker.scheduleWithFixedDelay(this::checkHead, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /** The newest offset; a consumer bootstrapping from a full listing continues from here. */
+    public long head() {
+        return jdbcTemplate.getJdbcOperations().queryForObject(HEAD_SQL, Long.class);
+    }
+
+    /**
+     * Changes after {@code after}, oldest first. Fails with {@link GoneException} if retention has already removed
+     * changes the consumer has not seen.
+     */
+    public BookChangePageDto read(long after, int limit) {
+        List<BookChangeDto> changes = jdbcTemplate.query(SELECT_SQL, Map.of("after", after, "limit", limit), this::toChange);
+        // Checked after the read: retention raises the horizon before it deletes anything.
+        Long horizon = jdbcTemplate.queryForObject(HORIZON_SQL, Map.of("id", CatalogStamp.ID), Long.class);
+        if (horizon != null && after < horizon) {
+            throw new GoneException("Changes up to offset " + horizon + " have been purged; "
+                    + "resync from a full listing and continue from /library/books/changes/head");
+        }
+        return new BookChangePageDto(changes, changes.isEmpty() ? after : changes.getLast().getOffset());
+    }
+
+    /** As {@link #read}, but waits up to {@code wait} for the first change instead of returning an empty page. */
+    public DeferredResult<BookChangePageDto> poll(long after, int limit, Duration wait) {
+        BookChangePageDto page = read(after, limit);
+        if (!page.getChanges().isEmpty() || wait.isZero()) {
+            DeferredResult<BookChangePageDto> result = new DeferredResult<>();
+            result.setResult(page);
+            return result;
+        }
+        DeferredResult<BookChangePageDto> result = new DeferredResult<>(wait.toMillis(), () -> page);
+        Waiter waiter = new Waiter(after, limit, result);
+        result.onCompletion(() -> waiters.remove(waiter));
+        waiters.add(waiter);
+        return result;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        for (Waiter waiter : waiters) wake(waiter);
+    }
+
+    @PreDestroy
+    public void close() {
+        headChecker.shutdownNow();
+        responders.shutdown();
+    }
+
+    private void checkHead() {
+        if (waiters.isEmpty()) return;
+        try {
+            long head = head();
+            for (Waiter waiter : waiters) {
+                if (waiter.after() < head) wake(waiter);
+            }
+        } catch (RuntimeException exception) {
+            // The next check retries; parked polls still time out normally.
+        }
+    }
+
+    private void wake(Waiter waiter) {
+        if (!waiters.remove(waiter)) return;
+        responders.execute(() -> {
+            try {
+                BookChangePageDto page = read(waiter.after(), waiter.limit());
+                if (!page.getChanges().isEmpty()) {
+                    waiter.result().setResult(page);
+                } else if (!waiter.result().isSetOrExpired()) {
+                    waiters.add(waiter);
+                }
+            } catch (RuntimeException exception) {
+                waiter.result().setErrorResult(exception);
+            }
+        });
+    }
+
+    private BookChangeDto toChange(ResultSet resultSet, int rowNumber) throws SQLException {
+        try {
+            return BookChangeDto.builder()
+                    .offset(resultSet.getLong("id"))
+                    .bookId(resultSet.getLong("book_id"))
+                    .type(BookChangedEvent.Type.valueOf(resultSet.getString("change_type")))
+                    .book(objectMapper.readValue(resultSet.getString("payload"), BookDto.class))
+                    .changedAt(resultSet.getTimestamp("changed_at").toInstant())
+                    .catalogVersion(resultSet.getObject("catalog_version", Long.class))
+                    .build();
+        } catch (JsonProcessingException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.readstack.library.catalog;
+
+import com.readstack.library.book.dto.BookChangePageDto;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Incremental sync for catalog mirrors. Bootstrap by reading {@code /head}, then a full listing; afterwards poll
+ * {@code ?after=<nextOffset>&wait=30}, which returns as soon as a change arrives. A 410 means the consumer fell
+ * behind the outbox retention and must bootstrap again.
+ */
+@RestController
+@RequestMapping("library/books/changes")
+@AllArgsConstructor
+public class BookChangeFeedController {
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+    static final int MAX_WAIT_SECONDS = 60;
+
+    private BookChangeFeed feed;
+
+    @GetMapping
+    public DeferredResult<BookChangePageDto> changes(@RequestParam(defaultValue = "0") long after,
+                                                     @RequestParam(defaultValue = "" + DEFAULT_LIMIT) int limit,
+                                                     @RequestParam(defaultValue = "0") int wait) {
+        return feed.poll(Math.max(after, 0), Math.clamp(limit, 1, MAX_LIMIT),
+                Duration.ofSeconds(Math.clamp(wait, 0, MAX_WAIT_SECONDS)));
+    }
+
+    @GetMapping("/head")
+    public BookChangePageDto head() {
+        return new BookChangePageDto(List.of(), feed.head());
+    }
+}
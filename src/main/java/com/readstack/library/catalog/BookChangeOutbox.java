@@ -0,0 +1,98 @@
+package com.readstack.library.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.BookMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Appends every {@link BookChangedEvent} to the {@code book_changes} outbox inside the transaction that made the
+ * change, so the feed can neither miss a committed change nor show a rolled-back one. The rows are written as the
+ * transaction commits, right after {@link CatalogVersion} has moved and locked the stamp, so offsets are assigned in
+ * commit order.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookChangeOutbox {
+    private static final String INSERT_SQL =
+            "INSERT INTO book_changes (book_id, change_type, payload, catalog_version) VALUES (:bookId, :type, :payload, :catalogVersion)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final CatalogVersion catalogVersion;
+    private final TransactionTemplate transactionTemplate;
+    private final BookMapper mapper;
+    private final ObjectMapper objectMapper;
+
+    /** The rows of the running transaction; the payload is written at once, in case the entity changes again. */
+    private record Pending(List<MapSqlParameterSource> rows) {
+    }
+
+    /** Collects the changes of the running transaction for its commit. */
+    @EventListener
+    @Order(1)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionTemplate.executeWithoutResult(status -> append(List.of(row(event)), OptionalLong.empty()));
+            return;
+        }
+        if (TransactionSynchronizationManager.getResource(this) instanceof Pending pending) {
+            pending.rows().add(row(event));
+            return;
+        }
+        Pending pending = new Pending(new ArrayList<>(List.of(row(event))));
+        TransactionSynchronizationManager.bindResource(this, pending);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return CatalogVersion.STAMP_ORDER + 1;
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                append(pending.rows(), catalogVersion.transactionVersion());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(BookChangeOutbox.this);
+            }
+        });
+    }
+
+    private MapSqlParameterSource row(BookChangedEvent event) {
+        return new MapSqlParameterSource()
+                .addValue("bookId", event.bookId())
+                .addValue("type", event.type().name())
+                .addValue("payload", toJson(event.after() != null ? event.after() : event.before()));
+    }
+
+    private void append(List<MapSqlParameterSource> rows, OptionalLong version) {
+        rows.forEach(row -> row.addValue("catalogVersion", version.isPresent() ? version.getAsLong() : null, Types.BIGINT));
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows.toArray(SqlParameterSource[]::new));
+    }
+
+    private String toJson(Book book) {
+        try {
+            return objectMapper.writeValueAsString(mapper.toDTO(book));
+        } catch (JsonProcessingException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
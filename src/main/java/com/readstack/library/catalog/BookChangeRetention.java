@@ -0,0 +1,96 @@
+package com.readstack.library.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the outbox small. Compaction drops changes older than {@code compact-after} that a newer change of the same
+ * book supersedes, so a replay still converges on the current state. Retention then drops everything older than
+ * {@code retention}, after first raising the purge horizon, so consumers that fall behind it get a 410 instead of
+ * silently missing changes. Every step is idempotent, so instances may run it concurrently.
+ */
+@Slf4j
+@Component
+public class BookChangeRetention {
+    private static final int CHUNK_SIZE = 1000;
+    private static final int COMPACTION_WINDOW = 10_000;
+    private static final String BOUNDARY_SQL = "SELECT COALESCE(MAX(id), 0) FROM book_changes WHERE changed_at < :before";
+    private static final String OLDEST_SQL = "SELECT COALESCE(MIN(id), 0) FROM book_changes";
+    private static final String LATEST_PER_BOOK_SQL =
+            "SELECT book_id, MAX(id) AS latest FROM book_changes WHERE id > :from AND id <= :to GROUP BY book_id";
+    private static final String DELETE_SUPERSEDED_SQL = "DELETE FROM book_changes WHERE book_id = :bookId AND id < :latest";
+    private static final String DELETE_RANGE_SQL = "DELETE FROM book_changes WHERE id > :from AND id <= :to";
+    private static final String RAISE_HORIZON_SQL =
+            "UPDATE catalog_stamp SET changes_purged_through = GREATEST(changes_purged_through, :to) WHERE id = :id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final Duration compactAfter;
+    private final Duration retention;
+    /** Offsets up to here have already deleted their predecessors; rescanned once after a restart. */
+    private volatile long compactedThrough;
+
+    public BookChangeRetention(NamedParameterJdbcTemplate jdbcTemplate,
+                               @Value("${library.changes.compact-after:1h}") Duration compactAfter,
+                               @Value("${library.changes.retention:7d}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.compactAfter = compactAfter;
+        this.retention = retention;
+    }
+
+    @Scheduled(fixedDelayString = "${library.changes.cleanup-interval:5m}", initialDelayString = "${library.changes.cleanup-interval:5m}")
+    public void run() {
+        int compacted = compact(Instant.now().minus(compactAfter));
+        int expired = expire(Instant.now().minus(retention));
+        if (compacted + expired > 0) log.info("Outbox cleanup removed {} superseded and {} expired changes", compacted, expired);
+    }
+
+    /** Each newly compactable change deletes the earlier changes of its book, so no row is examined twice. */
+    int compact(Instant before) {
+        long to = boundary(before);
+        int removed = 0;
+        for (long from = Math.max(compactedThrough, oldest() - 1); from < to; from += COMPACTION_WINDOW) {
+            List<MapSqlParameterSource> latest = jdbcTemplate.query(LATEST_PER_BOOK_SQL,
+                    Map.of("from", from, "to", Math.min(from + COMPACTION_WINDOW, to)),
+                    (resultSet, rowNumber) -> new MapSqlParameterSource()
+                            .addValue("bookId", resultSet.getLong("book_id"))
+                            .addValue("latest", resultSet.getLong("latest")));
+            if (latest.isEmpty()) continue;
+            int[] counts = jdbcTemplate.batchUpdate(DELETE_SUPERSEDED_SQL, latest.toArray(MapSqlParameterSource[]::new));
+            removed += Arrays.stream(counts).filter(count -> count > 0).sum();
+        }
+        compactedThrough = Math.max(compactedThrough, to);
+        return removed;
+    }
+
+    int expire(Instant before) {
+        long to = boundary(before);
+        if (to == 0) return 0;
+        jdbcTemplate.update(RAISE_HORIZON_SQL, Map.of("to", to, "id", CatalogStamp.ID));
+        int removed = 0;
+        // Short statements keep row locks and undo small while writers keep appending.
+        for (long from = oldest() - 1; from < to; from += CHUNK_SIZE) {
+            removed += jdbcTemplate.update(DELETE_RANGE_SQL, Map.of("from", from, "to", Math.min(from + CHUNK_SIZE, to)));
+        }
+        return removed;
+    }
+
+    private long oldest() {
+        return jdbcTemplate.getJdbcOperations().queryForObject(OLDEST_SQL, Long.class);
+    }
+
+    private long boundary(Instant before) {
+        Long boundary = jdbcTemplate.queryForObject(BOUNDARY_SQL, Map.of("before", Timestamp.from(before)), Long.class);
+        return boundary == null ? 0 : boundary;
+    }
+}
@@ -0,0 +1,16 @@
+package com.readstack.library.catalog;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface CatalogStampRepository extends JpaRepository<CatalogStamp, Long> {
+    @Modifying
+    @Query("update CatalogStamp s set s.version = s.version + 1 where s.id = :id")
+    int increment(Long id);
+
+    @Query("select s.version from CatalogStamp s where s.id = :id")
+    Optional<Long> findVersion(Long id);
+}
@@ -0,0 +1,94 @@
+package com.readstack.library.catalog;
+
+import com.readstack.library.book.BookChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.OptionalLong;
+import java.util.function.LongFunction;
+
+/**
+ * Catalog-wide version stamp shared by all instances through the database. Any transaction that publishes a
+ * {@link BookChangedEvent} increments it exactly once, in that same transaction, so a response tagged with the
+ * stamp read before its data can safely be answered with 304 while the stamp is unchanged. The stamp row itself is
+ * seeded by the V1 migration.
+ *
+ * <p>The increment is the first step of the commit rather than part of the first change, so its row lock is held for
+ * the commit alone and writers only queue behind each other there. Synchronizations ordered after
+ * {@link #STAMP_ORDER} run under that lock.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogVersion {
+    /** Order of the before-commit step that moves the stamp. */
+    public static final int STAMP_ORDER = 0;
+
+    private final CatalogStampRepository stampRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /** The stamp of the running transaction, set once its commit has moved it. */
+    private static final class Stamp {
+        private Long version;
+    }
+
+    public long current() {
+        return stampRepository.findVersion(CatalogStamp.ID).orElse(0L);
+    }
+
+    /**
+     * Runs {@code read} with the current stamp inside one read-only transaction, so the stamp and the data come from
+     * the same database, replica or primary. The stamp is read first, so a write committing in between can only make
+     * the tag older than the data, never newer.
+     */
+    @Transactional(readOnly = true)
+    public <T> T withCurrent(LongFunction<T> read) {
+        return read.apply(current());
+    }
+
+    /** Runs synchronously inside the writing transaction and registers the increment for its commit. */
+    @EventListener
+    @Order(0)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionTemplate.executeWithoutResult(status -> stampRepository.increment(CatalogStamp.ID));
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) return;
+        Stamp stamp = new Stamp();
+        TransactionSynchronizationManager.bindResource(this, stamp);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return STAMP_ORDER;
+            }
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                stampRepository.increment(CatalogStamp.ID);
+                // The row stays locked until commit, so no other writer can move the stamp past this value before then.
+                stamp.version = current();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(CatalogVersion.this);
+            }
+        });
+    }
+
+    /**
+     * The stamp the current transaction commits with, from its before-commit steps after {@link #STAMP_ORDER} until it
+     * has completed; empty otherwise.
+     */
+    public OptionalLong transactionVersion() {
+        return TransactionSynchronizationManager.getResource(this) instanceof Stamp stamp && stamp.version != null
+                ? OptionalLong.of(stamp.version)
+                : OptionalLong.empty();
+    }
+}
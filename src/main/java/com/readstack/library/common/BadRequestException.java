@@ -0,0 +1,7 @@
+package com.readstack.library.common;
+
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
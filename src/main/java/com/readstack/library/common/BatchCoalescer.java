@@ -0,0 +1,103 @@
+package com.readstack.library.common;
+
+import com.readstack.library.common.db.PrimaryPin;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * DataLoader-style request coalescing: keys requested within {@code window} of the first pending key are loaded
+ * together with one call to the batch function. A batch is dispatched early once it reaches {@code maxBatch} keys,
+ * and concurrent requests for the same key share one future. A batch is loaded {@link PrimaryPin pinned} if any of
+ * its callers was, as the primary answers every one of them correctly.
+ */
+public class BatchCoalescer<K, V> implements AutoCloseable {
+    private final Function<List<K>, Map<K, V>> batchLoader;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService loaders;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private boolean pendingPinned;
+    private long generation;
+
+    public BatchCoalescer(String name, Function<List<K>, Map<K, V>> batchLoader, Duration window, int maxBatch) {
+        this.batchLoader = batchLoader;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = maxBatch;
+        this.timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name(name + "-timer").daemon().factory());
+        this.loaders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    /** Completes with the loaded value, or {@code null} when the batch function returned nothing for the key. */
+    public CompletableFuture<V> load(K key) {
+        lock.lock();
+        try {
+            if (PrimaryPin.isPinned()) pendingPinned = true;
+            CompletableFuture<V> existing = pending.get(key);
+            if (existing != null) return existing;
+
+            CompletableFuture<V> future = new CompletableFuture<>();
+            pending.put(key, future);
+            if (pending.size() >= maxBatch) {
+                dispatch();
+            } else if (pending.size() == 1) {
+                long scheduledGeneration = generation;
+                timer.schedule(() -> flush(scheduledGeneration), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            return future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        loaders.shutdown();
+    }
+
+    private void flush(long scheduledGeneration) {
+        lock.lock();
+        try {
+            // The batch this timer was armed for may already have been dispatched because it filled up.
+            if (scheduledGeneration == generation && !pending.isEmpty()) dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Must be called with the lock held. */
+    private void dispatch() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        boolean pinned = pendingPinned;
+        pending = new LinkedHashMap<>();
+        pendingPinned = false;
+        generation++;
+        loaders.execute(() -> complete(batch, pinned));
+    }
+
+    private void complete(Map<K, CompletableFuture<V>> batch, boolean pinned) {
+        boolean wasPinned = pinned && PrimaryPin.pin();
+        try {
+            Map<K, V> values = batchLoader.apply(new ArrayList<>(batch.keySet()));
+            batch.forEach((key, future) -> future.complete(values.get(key)));
+        } catch (Throwable exception) {
+            batch.values().forEach(future -> future.completeExceptionally(exception));
+        } finally {
+            if (pinned) PrimaryPin.release(wasPinned);
+        }
+    }
+}
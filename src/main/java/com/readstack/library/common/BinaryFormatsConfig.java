@@ -0,0 +1,48 @@
+package com.readstack.library.common;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.readstack.library.common.observability.TimedBinaryJacksonHttpMessageConverter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Compact binary encodings of every JSON response, picked by the Accept header: {@code application/cbor} or
+ * {@code application/x-jackson-smile}. Both reuse the DTOs and Boot's Jackson settings, so no schema is involved.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    /**
+     * Spring MVC already registers CBOR and Smile converters once the data formats are on the classpath. They are
+     * swapped in place rather than added as converter beans, which Boot would put ahead of JSON, making binary the
+     * answer to {@code Accept: *}{@code /*}.
+     */
+    @Bean
+    WebMvcConfigurer binaryFormatsConfigurer(Jackson2ObjectMapperBuilder builder, MeterRegistry registry) {
+        TimedBinaryJacksonHttpMessageConverter cbor = new TimedBinaryJacksonHttpMessageConverter(
+                builder.factory(new CBORFactory()).build(), MediaType.APPLICATION_CBOR, registry);
+        TimedBinaryJacksonHttpMessageConverter smile = new TimedBinaryJacksonHttpMessageConverter(
+                builder.factory(new SmileFactory()).build(), APPLICATION_SMILE, registry);
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.replaceAll(converter -> switch (converter) {
+                    case MappingJackson2CborHttpMessageConverter ignored -> cbor;
+                    case MappingJackson2SmileHttpMessageConverter ignored -> smile;
+                    default -> converter;
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package com.readstack.library.common;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings. {@link #mightContain} never answers {@code false} for a value that was
+ * {@link #put}, and answers {@code true} for an absent value with roughly the configured false-positive rate.
+ * Values cannot be removed; callers rebuild the filter once too many stale values have accumulated.
+ */
+public class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final int numHashes;
+    private final long numBits;
+    private final AtomicLongArray words;
+
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        long expected = Math.max(expectedInsertions, 1);
+        long bits = Math.max(64, (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        int numHashes = Math.max(1, (int) Math.round((double) bits / expected * LN2));
+        return new BloomFilter(numHashes, new long[(int) ((bits + 63) / 64)]);
+    }
+
+    /** Restores a filter from the state returned by {@link #numHashes()} and {@link #words()}. */
+    public BloomFilter(int numHashes, long[] words) {
+        this.numHashes = numHashes;
+        this.numBits = (long) words.length * 64;
+        this.words = new AtomicLongArray(words);
+    }
+
+    public void put(String value) {
+        long hash = hash(value);
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(hash + i * step, numBits);
+            long mask = 1L << bit;
+            int index = (int) (bit >>> 6);
+            long word = words.get(index);
+            // Bits are only ever set, so a plain read that already shows the bit needs no CAS.
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(hash + i * step, numBits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public int numHashes() {
+        return numHashes;
+    }
+
+    public long[] words() {
+        long[] copy = new long[words.length()];
+        for (int i = 0; i < copy.length; i++) copy[i] = words.get(i);
+        return copy;
+    }
+
+    /** 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 mixer. */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,13 @@
+package com.readstack.library.common;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Turns on Spring's cache support so Boot configures the Caffeine {@link org.springframework.cache.CacheManager}
+ * from {@code spring.cache.*} and binds its statistics to the metrics endpoint.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+}
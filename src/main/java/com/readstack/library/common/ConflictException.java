@@ -0,0 +1,7 @@
+package com.readstack.library.common;
+
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,39 @@
+package com.readstack.library.common;
+
+/**
+ * Entity tags derived from a version number: strong ones such as {@code "3"} for a book, weak ones such as
+ * {@code W/"catalog-42"} for a collection. Collection tags are weak because they also cover the gzipped bodies,
+ * which are equivalent but not byte-identical, and Tomcat refuses to compress a response that carries a strong tag.
+ * A book is small enough to go uncompressed, so its tag can be strong, as {@code If-Match} requires.
+ */
+public final class ETags {
+    private ETags() {
+    }
+
+    public static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /** Tag for collection responses, which change whenever the catalog stamp does. */
+    public static String ofCatalog(long catalogVersion) {
+        return "W/\"catalog-" + catalogVersion + "\"";
+    }
+
+    /**
+     * Reads the version out of an {@code If-Match} header. Returns {@code null} when the header is absent or
+     * {@code *}, meaning any current version is acceptable. If-Match compares strongly, so a weak tag never matches.
+     */
+    public static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return null;
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            throw new PreconditionFailedException("If-Match needs a strong entity tag, not " + ifMatch);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) tag = tag.substring(1, tag.length() - 1);
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException exception) {
+            throw new PreconditionFailedException("If-Match does not name a version of this resource: " + ifMatch);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.readstack.library.common;
+
+public class GoneException extends RuntimeException {
+    public GoneException(String message) {
+        super(message);
+    }
+}
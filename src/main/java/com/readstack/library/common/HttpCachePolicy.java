@@ -0,0 +1,26 @@
+package com.readstack.library.common;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Cache-Control for cacheable read responses. With the default max-age of zero, shared caches may store responses
+ * but must revalidate them, which the ETag turns into a cheap 304.
+ */
+@Component
+public class HttpCachePolicy {
+    private final CacheControl cacheControl;
+
+    public HttpCachePolicy(@Value("${library.http.max-age:0s}") Duration maxAge) {
+        this.cacheControl = maxAge.isZero()
+                ? CacheControl.noCache().cachePublic()
+                : CacheControl.maxAge(maxAge).cachePublic();
+    }
+
+    public CacheControl cacheControl() {
+        return cacheControl;
+    }
+}
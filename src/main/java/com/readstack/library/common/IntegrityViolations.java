@@ -0,0 +1,53 @@
+package com.readstack.library.common;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Tells apart the rules a {@link DataIntegrityViolationException} can stand for, so callers can word their own
+ * message instead of passing on the driver's. Duplicates are recognized by their error code rather than by the
+ * constraint name in the driver's message, which differs between drivers and was generated on older schemas.
+ */
+public final class IntegrityViolations {
+    /** The unique key on {@code books.isbn}. */
+    public static final String BOOKS_ISBN = "uk_books_isbn";
+    /** The unique key on {@code book_isbn_claims.isbn}, which keeps ISBNs unique across book shards. */
+    public static final String ISBN_CLAIMS = "uk_book_isbn_claims_isbn";
+
+    private IntegrityViolations() {
+    }
+
+    /** MySQL's error for a duplicate entry in a unique key. */
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+
+    public static boolean violates(DataIntegrityViolationException exception, String constraint) {
+        return String.valueOf(exception.getMostSpecificCause().getMessage()).toLowerCase(Locale.ROOT).contains(constraint);
+    }
+
+    /** A duplicate in any unique key: MySQL's error 1062 under SQL state 23000, or the standard SQL state 23505. */
+    public static boolean isDuplicateKey(DataIntegrityViolationException exception) {
+        if (exception instanceof DuplicateKeyException) return true;
+        return exception.getMostSpecificCause() instanceof SQLException cause
+                && ("23505".equals(cause.getSQLState())
+                || ("23000".equals(cause.getSQLState()) && cause.getErrorCode() == MYSQL_DUPLICATE_ENTRY));
+    }
+
+    /**
+     * A duplicate ISBN. Apart from the generated id, {@link #BOOKS_ISBN} is the only unique key on books, and
+     * {@link #ISBN_CLAIMS} the only one on the shards' claims, so the constraint name only has to rule out the primary key.
+     */
+    public static boolean isDuplicateIsbn(DataIntegrityViolationException exception) {
+        return isDuplicateKey(exception)
+                && (violates(exception, BOOKS_ISBN) || violates(exception, ISBN_CLAIMS) || !violates(exception, "primary"));
+    }
+
+    /** SQL state class 22: a value too long or out of range for its column, rather than a broken constraint. */
+    public static boolean isDataException(DataIntegrityViolationException exception) {
+        return exception.getMostSpecificCause() instanceof SQLException cause
+                && cause.getSQLState() != null
+                && cause.getSQLState().startsWith("22");
+    }
+}
@@ -0,0 +1,7 @@
+package com.readstack.library.common;
+
+public class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
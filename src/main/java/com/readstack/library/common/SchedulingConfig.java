@@ -0,0 +1,10 @@
+package com.readstack.library.common;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/** Turns on {@code @Scheduled} housekeeping jobs, such as the outbox cleanup. */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
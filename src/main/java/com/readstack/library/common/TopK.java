@@ -0,0 +1,135 @@
+package com.readstack.library.common;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streaming heavy hitters in bounded memory: a Count-Min sketch estimates the frequency of every key ever added, and
+ * a map keeps the {@code k} keys with the highest estimates. {@link #decay()} halves all counts, letting the ranking
+ * follow shifts in traffic.
+ *
+ * <p>{@link #add} sits on the request path, so it takes no lock in the common cases: the sketch is a single
+ * {@link AtomicLongArray} and a tracked key only moves its own map entry. The lock is taken to admit a key whose
+ * estimate beats the weakest tracked one, which needs a scan of the {@code k} entries, and for {@link #decay()}.
+ */
+public class TopK<K> {
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    public record Entry<K>(K key, long count) {
+    }
+
+    private final int k;
+    private final int width;
+    private final int mask;
+    private final AtomicLongArray counters;
+    private final Map<K, Long> tracked = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    /** The weakest tracked estimate once {@code k} keys are tracked, else 0; keys at or below it are not admitted. */
+    private volatile long floor;
+
+    /** {@code width} is rounded up to a power of two; error is about total count / width per estimate. */
+    public TopK(int k, int width) {
+        this.k = k;
+        this.width = Integer.highestOneBit(Math.max(width, 2) - 1) << 1;
+        this.mask = this.width - 1;
+        this.counters = new AtomicLongArray(DEPTH * this.width);
+    }
+
+    public void add(K key) {
+        add(key, 1);
+    }
+
+    public void add(K key, long count) {
+        long estimate = increment(key, count);
+        if (tracked.computeIfPresent(key, (tracking, previous) -> Math.max(previous, estimate)) != null) return;
+        if (tracked.size() >= k && estimate <= floor) return;
+        lock.lock();
+        try {
+            admit(key, estimate);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long estimate(K key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(key, row)));
+        }
+        return estimate;
+    }
+
+    /** The tracked keys, most frequent first. */
+    public List<Entry<K>> top(int limit) {
+        List<Entry<K>> top = new ArrayList<>(tracked.size());
+        tracked.forEach((key, count) -> top.add(new Entry<>(key, count)));
+        top.sort(Comparator.comparingLong(Entry<K>::count).reversed());
+        return top.size() > limit ? List.copyOf(top.subList(0, limit)) : top;
+    }
+
+    /** Halves every count; keys whose count drops to zero leave the ranking. */
+    public void decay() {
+        lock.lock();
+        try {
+            for (int i = 0; i < counters.length(); i++) {
+                counters.getAndUpdate(i, count -> count >>> 1);
+            }
+            tracked.replaceAll((key, count) -> count >>> 1);
+            tracked.values().removeIf(count -> count == 0);
+            floor = weakest();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Must be called with the lock held. */
+    private void admit(K key, long estimate) {
+        if (tracked.size() >= k) {
+            Map.Entry<K, Long> weakest = null;
+            for (Map.Entry<K, Long> entry : tracked.entrySet()) {
+                if (weakest == null || entry.getValue() < weakest.getValue()) weakest = entry;
+            }
+            if (weakest != null && weakest.getValue() >= estimate) {
+                floor = weakest.getValue();
+                return;
+            }
+            if (weakest != null) tracked.remove(weakest.getKey());
+        }
+        tracked.merge(key, estimate, Math::max);
+        floor = weakest();
+    }
+
+    /** Must be called with the lock held. */
+    private long weakest() {
+        if (tracked.size() < k) return 0;
+        long weakest = Long.MAX_VALUE;
+        for (long count : tracked.values()) weakest = Math.min(weakest, count);
+        return weakest;
+    }
+
+    /**
+     * Plain Count-Min update: each row is incremented on its own, so concurrent adds never lose counts and estimates
+     * only overshoot where keys collide in every row.
+     */
+    private long increment(K key, long count) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.addAndGet(index(key, row), count));
+        }
+        return estimate;
+    }
+
+    private int index(K key, int row) {
+        long hash = (key.hashCode() ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return row * width + ((int) hash & mask);
+    }
+}
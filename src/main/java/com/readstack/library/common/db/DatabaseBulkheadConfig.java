@@ -0,0 +1,46 @@
+package com.readstack.library.common.db;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "library.database.bulkhead", name = "enabled", havingValue = "true")
+public class DatabaseBulkheadConfig {
+    @Bean
+    static BeanPostProcessor databaseBulkheadPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof BulkheadDataSource) return bean;
+                int maxConcurrent = environment.getRequiredProperty("library.database.bulkhead.max-concurrent", Integer.class);
+                Duration maxWait = environment.getProperty("library.database.bulkhead.max-wait", Duration.class, Duration.ofSeconds(2));
+                return new BulkheadDataSource(dataSource, maxConcurrent, maxWait);
+            }
+        };
+    }
+
+    /** Alongside the hikaricp.* meters: waiting callers here means the pool is saturated. */
+    @Bean
+    MeterBinder databaseBulkheadMetrics(DataSource dataSource) throws SQLException {
+        BulkheadDataSource bulkhead = dataSource.unwrap(BulkheadDataSource.class);
+        return registry -> {
+            Gauge.builder("library.database.bulkhead.available", bulkhead, BulkheadDataSource::getAvailablePermits)
+                    .description("Connections that can still be handed out without waiting")
+                    .register(registry);
+            Gauge.builder("library.database.bulkhead.waiting", bulkhead, BulkheadDataSource::getWaiting)
+                    .description("Callers queued for a connection")
+                    .register(registry);
+            Gauge.builder("library.database.bulkhead.max", bulkhead, BulkheadDataSource::getMaxConcurrent)
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.readstack.library.common.db;
+
+/**
+ * Pins the current thread's read-only transactions to the primary, for clients that must read their own writes
+ * before the replicas have caught up. Work handed to another thread takes the pin along through {@link #propagate}.
+ */
+public final class PrimaryPin {
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private PrimaryPin() {
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    /** Returns whether the thread was already pinned; pass that to {@link #release(boolean)}. */
+    public static boolean pin() {
+        boolean wasPinned = isPinned();
+        PINNED.set(Boolean.TRUE);
+        return wasPinned;
+    }
+
+    public static void release(boolean wasPinned) {
+        if (!wasPinned) PINNED.remove();
+    }
+
+    /**
+     * {@code task}, to run pinned wherever it runs if the calling thread is pinned now. Usable as a
+     * {@link org.springframework.core.task.TaskDecorator}.
+     */
+    public static Runnable propagate(Runnable task) {
+        if (!isPinned()) return task;
+        return () -> {
+            boolean wasPinned = pin();
+            try {
+                task.run();
+            } finally {
+                release(wasPinned);
+            }
+        };
+    }
+}
@@ -0,0 +1,69 @@
+package com.readstack.library.common.db;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskDecorator;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces Boot's single pool with a primary pool plus one pool per replica URL. The pools are not beans of their
+ * own, so the bulkhead still wraps exactly one {@link DataSource}. They share the {@code spring.datasource.hikari}
+ * settings and report metrics under the pool names {@code primary} and {@code replica-N}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "library.database.replicas", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+    @Bean
+    ReadWriteRoutingDataSource dataSource(DataSourceProperties properties, Environment environment,
+                                          ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        List<String> urls = binder.bind("library.database.replicas.urls", Bindable.listOf(String.class)).orElse(List.of());
+        Duration connectionTimeout = binder.bind("library.database.replicas.connection-timeout", Duration.class).orElse(Duration.ofMillis(500));
+        Duration downFor = binder.bind("library.database.replicas.down-for", Duration.class).orElse(Duration.ofSeconds(5));
+
+        HikariConfig primary = binder.bind("spring.datasource.hikari", Bindable.ofInstance(new HikariConfig())).orElseGet(HikariConfig::new);
+        primary.setJdbcUrl(properties.determineUrl());
+        primary.setUsername(properties.determineUsername());
+        primary.setPassword(properties.determinePassword());
+        primary.setDriverClassName(properties.determineDriverClassName());
+        primary.setPoolName("primary");
+        meterRegistry.ifAvailable(registry -> primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (url.isBlank()) continue;
+            HikariConfig replica = new HikariConfig();
+            primary.copyStateTo(replica);
+            replica.setJdbcUrl(url.trim());
+            replica.setPoolName("replica-" + replicas.size());
+            // A replica that is down at startup must not keep the service from starting.
+            replica.setInitializationFailTimeout(-1);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replicas.add(new HikariDataSource(replica));
+        }
+        return new ReadWriteRoutingDataSource(new HikariDataSource(primary), replicas, downFor);
+    }
+
+    /**
+     * Boot applies it to the application task executor, which runs streamed response bodies and other async MVC
+     * work, so those still read the primary for a pinned request.
+     */
+    @Bean
+    TaskDecorator primaryPinTaskDecorator() {
+        return PrimaryPin::propagate;
+    }
+}
@@ -0,0 +1,30 @@
+package com.readstack.library.common.db;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Application {@link DataSource} when read replicas are configured. The transaction manager asks for a connection
+ * before it publishes the read-only flag, so the physical connection is only fetched, through
+ * {@link ReplicaRouter}, at the first statement. Closing it closes every pool.
+ */
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+    private final List<DataSource> pools = new ArrayList<>();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration replicaDownFor) {
+        super(new ReplicaRouter(primary, replicas, replicaDownFor));
+        pools.add(primary);
+        pools.addAll(replicas);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource pool : pools) {
+            if (pool instanceof AutoCloseable closeable) closeable.close();
+        }
+    }
+}
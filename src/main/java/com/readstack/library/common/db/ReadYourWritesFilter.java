@@ -0,0 +1,87 @@
+package com.readstack.library.common.db;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Read-your-writes stickiness. A write request gets a cookie valid for {@code sticky-window}, and requests carrying
+ * an unexpired cookie are {@link PrimaryPin pinned} to the primary, so a client never reads from a replica that
+ * has not yet applied its own change. The cookie is set before the write runs because the response is usually
+ * committed by the time the handler returns; a failed write only costs a few extra primary reads.
+ *
+ * <p>The same expiry goes out in the {@value #HEADER_NAME} response header, for clients that do not keep cookies:
+ * sending it back on later requests pins them just the same.
+ */
+@Component
+@ConditionalOnProperty(prefix = "library.database.replicas", name = "enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String COOKIE_NAME = "library-read-primary";
+    static final String HEADER_NAME = "Read-Primary-Until";
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS", "TRACE");
+
+    private final Duration stickyWindow;
+
+    public ReadYourWritesFilter(@Value("${library.database.replicas.sticky-window:5s}") Duration stickyWindow) {
+        this.stickyWindow = stickyWindow;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean write = !SAFE_METHODS.contains(request.getMethod());
+        if (write) {
+            String until = String.valueOf(System.currentTimeMillis() + stickyWindow.toMillis());
+            ResponseCookie cookie = ResponseCookie.from(COOKIE_NAME, until)
+                    .maxAge(stickyWindow)
+                    .path("/")
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+            response.setHeader(HEADER_NAME, until);
+        }
+        if (!write && !pinnedByCookie(request) && !unexpired(request.getHeader(HEADER_NAME))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        boolean wasPinned = PrimaryPin.pin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            PrimaryPin.release(wasPinned);
+        }
+    }
+
+    private boolean pinnedByCookie(HttpServletRequest request) {
+        if (request.getCookies() == null) return false;
+        for (Cookie cookie : request.getCookies()) {
+            // The expiry is also checked here for clients that ignore Max-Age.
+            if (COOKIE_NAME.equals(cookie.getName())) return unexpired(cookie.getValue());
+        }
+        return false;
+    }
+
+    /** An expiry further out than one window was not issued here, so it pins nothing rather than pinning for long. */
+    private boolean unexpired(String until) {
+        if (until == null) return false;
+        try {
+            long remaining = Long.parseLong(until.trim()) - System.currentTimeMillis();
+            return remaining > 0 && remaining <= stickyWindow.toMillis();
+        } catch (NumberFormatException exception) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.readstack.library.common.db;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Remembers, for the running transaction, that {@link ReplicaRouter} handed it a replica connection. Rows read there
+ * may be older than what the primary has already committed, so caches must not keep them.
+ */
+public final class ReplicaReads {
+    private static final Object KEY = new Object();
+
+    private ReplicaReads() {
+    }
+
+    /** Whether the running transaction reads from a replica. */
+    public static boolean inTransaction() {
+        return TransactionSynchronizationManager.hasResource(KEY);
+    }
+
+    static void record() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || inTransaction()) return;
+        TransactionSynchronizationManager.bindResource(KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(KEY);
+            }
+        });
+    }
+}
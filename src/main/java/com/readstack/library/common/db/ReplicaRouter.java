@@ -0,0 +1,80 @@
+package com.readstack.library.common.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out replica connections, round robin, for read-only transactions and primary connections for everything
+ * else. A replica that fails to connect is skipped for {@code downFor}; with every replica down, reads fall back to
+ * the primary. Must sit behind {@link ReadWriteRoutingDataSource}, which delays the choice until the transaction's
+ * read-only flag is known.
+ */
+@Slf4j
+class ReplicaRouter extends AbstractDataSource {
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long downForNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private static final class Replica {
+        private final DataSource dataSource;
+        private volatile long downUntil;
+        private volatile boolean down;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    ReplicaRouter(DataSource primary, List<DataSource> replicas, Duration downFor) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.downForNanos = downFor.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (routesToReplica()) {
+            int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                long now = System.nanoTime();
+                if (replica.down && now - replica.downUntil < 0) continue;
+                try {
+                    Connection connection = connect(replica.dataSource, username, password);
+                    replica.down = false;
+                    ReplicaReads.record();
+                    return connection;
+                } catch (SQLException exception) {
+                    replica.downUntil = now + downForNanos;
+                    replica.down = true;
+                    log.warn("Replica unavailable, skipping it for {} ms: {}", downForNanos / 1_000_000, exception.getMessage());
+                }
+            }
+        }
+        return connect(primary, username, password);
+    }
+
+    private boolean routesToReplica() {
+        return !replicas.isEmpty()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !PrimaryPin.isPinned();
+    }
+
+    private static Connection connect(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+}
@@ -0,0 +1,20 @@
+package com.readstack.library.common.observability;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+/**
+ * Application meters that Boot does not provide on its own. HTTP, repository, Hikari and {@code @Timed} service
+ * meters come from auto-configuration; histogram settings for all of them live under {@code management.metrics}.
+ */
+@Configuration
+public class MetricsConfig {
+    /** Replaces Boot's JSON converter, so every {@code @RestController} response body is timed while it is written. */
+    @Bean
+    MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper, MeterRegistry registry) {
+        return new TimedJacksonHttpMessageConverter(objectMapper, registry);
+    }
+}
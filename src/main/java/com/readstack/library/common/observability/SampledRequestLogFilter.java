@@ -0,0 +1,66 @@
+package com.readstack.library.common.observability;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs one structured line per sampled request instead of per-statement debug output. Server errors and requests
+ * slower than {@code slow-threshold} are always logged; the rest only at {@code sample-rate}.
+ */
+@Slf4j
+@Component
+public class SampledRequestLogFilter extends OncePerRequestFilter {
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    public SampledRequestLogFilter(@Value("${library.logging.requests.sample-rate:0.01}") double sampleRate,
+                                   @Value("${library.logging.requests.slow-threshold:500ms}") Duration slowThreshold) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long started = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // Streamed responses are still being written here; their duration is covered by http.server.requests.
+            if (log.isInfoEnabled() && !request.isAsyncStarted()) {
+                log(request, response.getStatus(), System.nanoTime() - started);
+            }
+        }
+    }
+
+    private void log(HttpServletRequest request, int status, long elapsedNanos) {
+        String reason;
+        if (status >= 500) {
+            reason = "error";
+        } else if (elapsedNanos >= slowThresholdNanos) {
+            reason = "slow";
+        } else if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            reason = "sampled";
+        } else {
+            return;
+        }
+        log.atInfo()
+                .setMessage("request")
+                .addKeyValue("method", request.getMethod())
+                .addKeyValue("path", request.getRequestURI())
+                .addKeyValue("status", status)
+                .addKeyValue("durationMs", elapsedNanos / 1_000_000)
+                .addKeyValue("reason", reason)
+                .log();
+    }
+}
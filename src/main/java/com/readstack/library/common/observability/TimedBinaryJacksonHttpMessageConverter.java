@@ -0,0 +1,36 @@
+package com.readstack.library.common.observability;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Jackson converter for a binary data format such as CBOR or Smile, timed like {@link TimedJacksonHttpMessageConverter}
+ * with the media subtype as the {@code format} tag. The object mapper must be built on the matching factory.
+ */
+public class TimedBinaryJacksonHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+    private final MeterRegistry registry;
+    private final String format;
+
+    public TimedBinaryJacksonHttpMessageConverter(ObjectMapper objectMapper, MediaType mediaType, MeterRegistry registry) {
+        super(objectMapper, mediaType);
+        this.registry = registry;
+        this.format = mediaType.getSubtype();
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            sample.stop(TimedJacksonHttpMessageConverter.timer(registry, object, format));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.readstack.library.common.observability;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Records {@code library.http.serialization}, tagged with the body's class. Jackson writes straight into the response,
+ * so for large bodies the time includes flushing to a slow client.
+ */
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+    static final String METER_NAME = "library.http.serialization";
+
+    private final MeterRegistry registry;
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry registry) {
+        super(objectMapper);
+        this.registry = registry;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            sample.stop(timer(registry, object, "json"));
+        }
+    }
+
+    static Timer timer(MeterRegistry registry, Object body, String format) {
+        return Timer.builder(METER_NAME)
+                .description("Time to serialize a response body")
+                .tag("type", body.getClass().getSimpleName())
+                .tag("format", format)
+                .register(registry);
+    }
+}
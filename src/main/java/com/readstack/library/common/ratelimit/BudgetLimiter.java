@@ -0,0 +1,78 @@
+package com.readstack.library.common.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.readstack.library.common.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Admission control for one {@link RateLimited.Budget}: a token bucket per client, then the shared adaptive
+ * concurrency limit. Buckets of idle clients expire once they would have refilled anyway.
+ */
+class BudgetLimiter {
+    private static final long MAX_CLIENTS = 100_000;
+    private static final Duration CONCURRENCY_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final String name;
+    private final double ratePerSecond;
+    private final double burst;
+    private final Cache<String, TokenBucket> buckets;
+    private final GradientConcurrencyLimiter concurrencyLimiter;
+    private final Counter rateRejections;
+    private final Counter concurrencyRejections;
+
+    BudgetLimiter(RateLimited.Budget budget, double ratePerSecond, double burst, int maxConcurrency, MeterRegistry registry) {
+        this.name = budget.name().toLowerCase(Locale.ROOT);
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterAccess(Duration.ofNanos((long) Math.ceil(burst / ratePerSecond * 1_000_000_000d)).plusSeconds(1))
+                .build();
+        this.concurrencyLimiter = new GradientConcurrencyLimiter(Math.max(1, maxConcurrency / 4), 1, maxConcurrency);
+        this.rateRejections = rejections(registry, "rate");
+        this.concurrencyRejections = rejections(registry, "concurrency");
+        Gauge.builder("library.ratelimit.concurrency.limit", concurrencyLimiter, GradientConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .tag("budget", name)
+                .register(registry);
+        Gauge.builder("library.ratelimit.concurrency.in-flight", concurrencyLimiter, GradientConcurrencyLimiter::getInFlight)
+                .description("Admitted requests still being handled")
+                .tag("budget", name)
+                .register(registry);
+    }
+
+    /** Admits the request or throws {@link TooManyRequestsException}; an admitted request must be released. */
+    void admit(String client) {
+        long waitNanos = buckets.get(client, key -> new TokenBucket(ratePerSecond, burst, System::nanoTime)).tryAcquire();
+        if (waitNanos > 0) {
+            rateRejections.increment();
+            throw new TooManyRequestsException("Rate limit for " + name + " requests exceeded", Duration.ofNanos(waitNanos));
+        }
+        if (!concurrencyLimiter.tryAcquire()) {
+            concurrencyRejections.increment();
+            throw new TooManyRequestsException("Too many concurrent " + name + " requests", CONCURRENCY_RETRY_AFTER);
+        }
+    }
+
+    void release(long latencyNanos) {
+        concurrencyLimiter.release(latencyNanos);
+    }
+
+    void releaseWithoutSample() {
+        concurrencyLimiter.release();
+    }
+
+    private Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("library.ratelimit.rejected")
+                .description("Requests refused with 429")
+                .tag("budget", name)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,86 @@
+package com.readstack.library.common.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive concurrency limit in the style of Netflix's gradient limiter. A short and a long moving average of the
+ * observed latency are compared: while they agree the limit grows by about its square root per sample, and once
+ * queueing makes recent requests slower than the long-term baseline the limit shrinks in proportion. Requests
+ * beyond the limit are refused immediately rather than queued.
+ */
+public class GradientConcurrencyLimiter {
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 600;
+    /** Recent latency may exceed the baseline by this factor before the limit starts to shrink. */
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limit;
+    private double shortRtt;
+    private double longRtt;
+    private long samples;
+
+    public GradientConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.clamp(initialLimit, minLimit, maxLimit);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) return false;
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /** Releases a slot and feeds the request's latency into the limit. */
+    public void release(long rttNanos) {
+        int before = inFlight.getAndDecrement();
+        update(rttNanos, before);
+    }
+
+    /** Releases a slot without a latency sample, e.g. for a request that continues asynchronously. */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void update(long rttNanos, int inFlightAtRelease) {
+        if (rttNanos <= 0) return;
+        lock.lock();
+        try {
+            samples++;
+            if (samples == 1) {
+                shortRtt = rttNanos;
+                longRtt = rttNanos;
+            } else {
+                shortRtt += (rttNanos - shortRtt) / Math.min(samples, SHORT_WINDOW);
+                longRtt += (rttNanos - longRtt) / Math.min(samples, LONG_WINDOW);
+            }
+            // After a sustained slowdown the baseline would otherwise stay high and mask the next one.
+            if (longRtt > 2 * shortRtt) longRtt *= 0.95;
+
+            double current = limit;
+            double gradient = Math.clamp(TOLERANCE * longRtt / shortRtt, 0.5, 1.0);
+            double target = current * gradient + Math.sqrt(current);
+            // Far below the limit, low latency says nothing about what a higher limit would do.
+            if (target > current && inFlightAtRelease < current / 2) return;
+            limit = Math.clamp(current * (1 - SMOOTHING) + target * SMOOTHING, minLimit, maxLimit);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
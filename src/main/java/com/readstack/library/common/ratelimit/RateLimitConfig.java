@@ -0,0 +1,39 @@
+package com.readstack.library.common.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/** Installs the {@link RateLimitInterceptor}; budgets are configured under {@code library.ratelimit}. */
+@Configuration
+@ConditionalOnProperty(prefix = "library.ratelimit", name = "enabled", havingValue = "true")
+public class RateLimitConfig implements WebMvcConfigurer {
+    private final RateLimitInterceptor interceptor;
+
+    public RateLimitConfig(MeterRegistry registry,
+                           @Value("${library.ratelimit.api-key-header:X-API-Key}") String apiKeyHeader,
+                           @Value("${library.ratelimit.api-keys:}") Set<String> apiKeys,
+                           @Value("${library.ratelimit.get.rate:200}") double getRate,
+                           @Value("${library.ratelimit.get.burst:400}") double getBurst,
+                           @Value("${library.ratelimit.get.max-concurrency:400}") int getMaxConcurrency,
+                           @Value("${library.ratelimit.query.rate:20}") double queryRate,
+                           @Value("${library.ratelimit.query.burst:40}") double queryBurst,
+                           @Value("${library.ratelimit.query.max-concurrency:50}") int queryMaxConcurrency) {
+        this.interceptor = new RateLimitInterceptor(Map.of(
+                RateLimited.Budget.GET, new BudgetLimiter(RateLimited.Budget.GET, getRate, getBurst, getMaxConcurrency, registry),
+                RateLimited.Budget.QUERY, new BudgetLimiter(RateLimited.Budget.QUERY, queryRate, queryBurst, queryMaxConcurrency, registry)
+        ), apiKeyHeader, apiKeys.stream().filter(key -> !key.isBlank()).collect(Collectors.toUnmodifiableSet()));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptor);
+    }
+}
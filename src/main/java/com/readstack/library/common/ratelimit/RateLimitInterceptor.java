@@ -0,0 +1,110 @@
+package com.readstack.library.common.ratelimit;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies the {@link BudgetLimiter} of every {@link RateLimited} handler. Clients are told apart by their
+ * authenticated principal or a configured API key; anything else, including an unknown key, which a client could
+ * otherwise rotate for a fresh bucket per request, counts against the remote address. Requests that go asynchronous
+ * (streams, long polls) hold their concurrency slot until the async request completes, but their duration is not
+ * sampled, as it says nothing about server load.
+ */
+class RateLimitInterceptor implements AsyncHandlerInterceptor {
+    private static final String ADMITTED = RateLimitInterceptor.class.getName() + ".admitted";
+
+    private record Admission(BudgetLimiter limiter, long startedAt) {
+    }
+
+    private final Map<RateLimited.Budget, BudgetLimiter> limiters;
+    private final String apiKeyHeader;
+    private final Set<String> apiKeys;
+
+    RateLimitInterceptor(Map<RateLimited.Budget, BudgetLimiter> limiters, String apiKeyHeader, Set<String> apiKeys) {
+        this.limiters = limiters;
+        this.apiKeyHeader = apiKeyHeader;
+        this.apiKeys = apiKeys;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod method)) return true;
+        RateLimited rateLimited = method.getMethodAnnotation(RateLimited.class);
+        if (rateLimited == null) return true;
+
+        BudgetLimiter limiter = limiters.get(rateLimited.value());
+        limiter.admit(client(request));
+        request.setAttribute(ADMITTED, new Admission(limiter, System.nanoTime()));
+        return true;
+    }
+
+    /** The async dispatch that follows has its own completion callback, so the slot moves to the async listener. */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(ADMITTED) instanceof Admission admission) {
+            request.removeAttribute(ADMITTED);
+            request.getAsyncContext().addListener(new Release(admission.limiter()));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception exception) {
+        if (request.getAttribute(ADMITTED) instanceof Admission admission) {
+            request.removeAttribute(ADMITTED);
+            admission.limiter().release(System.nanoTime() - admission.startedAt());
+        }
+    }
+
+    private String client(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) return "user:" + principal.getName();
+        String apiKey = request.getHeader(apiKeyHeader);
+        if (apiKey != null && apiKeys.contains(apiKey)) return "key:" + apiKey;
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    /** Gives the slot back once, on whichever of complete, timeout or error comes first. */
+    private static final class Release implements AsyncListener {
+        private final BudgetLimiter limiter;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Release(BudgetLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Re-registers on a new async cycle, keeping the slot until that one ends.
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) limiter.releaseWithoutSample();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.readstack.library.common.ratelimit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a handler method under the per-client rate limit and the adaptive concurrency limit of its budget. Each
+ * budget is limited on its own, so a flood of searches cannot use up the capacity reserved for single-book gets.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RateLimited {
+    Budget value();
+
+    enum Budget {
+        /** Lookups of known books by key: cheap, usually cached. */
+        GET,
+        /** Listings and searches, which may scan many rows. */
+        QUERY
+    }
+}
@@ -0,0 +1,44 @@
+package com.readstack.library.common.ratelimit;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Classic token bucket: holds up to {@code capacity} tokens and refills continuously at {@code ratePerSecond}, so a
+ * client may burst up to the capacity and is then held to the rate.
+ */
+public class TokenBucket {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final double capacity;
+    private final double ratePerSecond;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double ratePerSecond, double capacity, LongSupplier nanoClock) {
+        this.capacity = capacity;
+        this.ratePerSecond = ratePerSecond;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    /** Takes one token. Returns 0 on success, otherwise the nanoseconds until the next token is due. */
+    public long tryAcquire() {
+        lock.lock();
+        try {
+            long now = nanoClock.getAsLong();
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * ratePerSecond / NANOS_PER_SECOND);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / ratePerSecond);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
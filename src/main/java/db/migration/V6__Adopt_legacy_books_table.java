@@ -0,0 +1,65 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Brings a books table created by the former {@code ddl-auto: update} in line with V1, which skipped it: that table
+ * has no {@code version} column and its ISBN key has a generated name. Adds the column and replaces the key with
+ * {@code uk_books_isbn}; on a database that V1 created, it changes nothing.
+ *
+ * <p>Written in Java because neither step can be made conditional in plain MySQL DDL.
+ */
+public class V6__Adopt_legacy_books_table extends BaseJavaMigration {
+    static final String ISBN_KEY = "uk_books_isbn";
+
+    private static final String VERSION_COLUMN_SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+            + "WHERE TABLE_SCHEMA = ? AND UPPER(TABLE_NAME) = 'BOOKS' AND UPPER(COLUMN_NAME) = 'VERSION'";
+    /** Unique keys on the ISBN alone. */
+    private static final String ISBN_KEYS_SQL = "SELECT tc.CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc "
+            + "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE k ON k.CONSTRAINT_SCHEMA = tc.CONSTRAINT_SCHEMA "
+            + "AND k.CONSTRAINT_NAME = tc.CONSTRAINT_NAME AND k.TABLE_NAME = tc.TABLE_NAME "
+            + "WHERE tc.TABLE_SCHEMA = ? AND UPPER(tc.TABLE_NAME) = 'BOOKS' AND tc.CONSTRAINT_TYPE = 'UNIQUE' "
+            + "GROUP BY tc.CONSTRAINT_NAME HAVING COUNT(*) = 1 AND MAX(UPPER(k.COLUMN_NAME)) = 'ISBN'";
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        // MySQL calls the database a catalog, H2 a schema.
+        String schema = connection.getSchema() != null ? connection.getSchema() : connection.getCatalog();
+        boolean h2 = connection.getMetaData().getDatabaseProductName().toUpperCase(Locale.ROOT).contains("H2");
+        try (Statement statement = connection.createStatement()) {
+            if (query(connection, VERSION_COLUMN_SQL, schema).getFirst().equals("0")) {
+                statement.execute("ALTER TABLE books ADD COLUMN version BIGINT NOT NULL DEFAULT 0");
+            }
+            List<String> keys = query(connection, ISBN_KEYS_SQL, schema);
+            if (keys.stream().anyMatch(ISBN_KEY::equalsIgnoreCase)) return;
+            statement.execute("ALTER TABLE books ADD CONSTRAINT " + ISBN_KEY + " UNIQUE (isbn)");
+            for (String key : keys) {
+                statement.execute(h2
+                        ? "ALTER TABLE books DROP CONSTRAINT \"" + key + "\""
+                        : "ALTER TABLE books DROP INDEX `" + key + "`");
+            }
+        }
+    }
+
+    private static List<String> query(Connection connection, String sql, String schema) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, schema);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<String> values = new ArrayList<>();
+                while (resultSet.next()) values.add(resultSet.getString(1));
+                return values;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+-- Baseline schema. IF NOT EXISTS keeps this safe on databases that Hibernate's ddl-auto created before
+-- migrations took over (see spring.flyway.baseline-on-migrate).
+CREATE TABLE IF NOT EXISTS books (
+    id             BIGINT       NOT NULL AUTO_INCREMENT,
+    title          VARCHAR(255) NOT NULL,
+    isbn           VARCHAR(20)  NOT NULL,
+    published_year INT          NULL,
+    version        BIGINT       NOT NULL DEFAULT 0,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_books_isbn UNIQUE (isbn)
+);
+
+CREATE TABLE IF NOT EXISTS catalog_stamp (
+    id      BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    PRIMARY KEY (id)
+);
+
+INSERT INTO catalog_stamp (id, version)
+SELECT 1, 0 FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM catalog_stamp WHERE id = 1);
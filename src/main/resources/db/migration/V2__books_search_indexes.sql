@@ -0,0 +1,3 @@
+-- Serves /library/books/search year filters as a range scan, ordered by (published_year, id) so paging needs
+-- no filesort.
+CREATE INDEX idx_books_published_year_id ON books (published_year, id);
@@ -0,0 +1,17 @@
+-- Transactional outbox behind GET /library/books/changes: one row per book mutation, written in the mutating
+-- transaction. The id is the feed offset.
+CREATE TABLE book_changes (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    book_id     BIGINT       NOT NULL,
+    change_type VARCHAR(16)  NOT NULL,
+    payload     VARCHAR(2000) NOT NULL,
+    changed_at  TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6),
+    PRIMARY KEY (id)
+);
+
+-- Compaction looks for newer changes of the same book; retention for the newest expired offset.
+CREATE INDEX idx_book_changes_book_id_id ON book_changes (book_id, id);
+CREATE INDEX idx_book_changes_changed_at ON book_changes (changed_at);
+
+-- Highest offset removed by retention. Consumers behind it have missed changes and must resync.
+ALTER TABLE catalog_stamp ADD COLUMN changes_purged_through BIGINT NOT NULL DEFAULT 0;
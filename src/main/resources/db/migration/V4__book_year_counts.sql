@@ -0,0 +1,10 @@
+-- Books per published year behind the unfiltered GET /library/books/facets, kept in step with books by every
+-- writing transaction (see BookFacets). Year 0 counts the books without a published year.
+CREATE TABLE book_year_counts (
+    published_year INT    NOT NULL,
+    book_count     BIGINT NOT NULL,
+    PRIMARY KEY (published_year)
+);
+
+INSERT INTO book_year_counts (published_year, book_count)
+SELECT COALESCE(published_year, 0), COUNT(*) FROM books GROUP BY COALESCE(published_year, 0);
@@ -0,0 +1,3 @@
+-- Catalog stamp each change was committed with. Changes of one transaction share it, and instances compare it with
+-- the stamp to notice changes they have missed. Empty for changes recorded before this column.
+ALTER TABLE book_changes ADD COLUMN catalog_version BIGINT NULL;
@@ -0,0 +1,14 @@
+-- Outcomes of POST /library/books with "Prefer: respond-async", so every instance can answer the status URL once
+-- the book has been written, not only the one that accepted it. Rows older than
+-- library.books.ingest.status-retention are deleted by the ingest writers.
+CREATE TABLE book_ingest_statuses (
+    ticket      CHAR(36)      NOT NULL,
+    state       VARCHAR(16)   NOT NULL,
+    isbn        VARCHAR(20)   NOT NULL,
+    book_id     BIGINT        NULL,
+    message     VARCHAR(1000) NULL,
+    recorded_at TIMESTAMP(6)  NOT NULL,
+    PRIMARY KEY (ticket)
+);
+
+CREATE INDEX idx_book_ingest_statuses_recorded_at ON book_ingest_statuses (recorded_at);
@@ -0,0 +1,13 @@
+-- The books table of a shard, as the primary's migrations leave it (V1, V2 and V6 there). Shards have their own
+-- migrations because they hold no catalog stamp, change outbox or year counts.
+CREATE TABLE books (
+    id             BIGINT       NOT NULL AUTO_INCREMENT,
+    title          VARCHAR(255) NOT NULL,
+    isbn           VARCHAR(20)  NOT NULL,
+    published_year INT          NULL,
+    version        BIGINT       NOT NULL DEFAULT 0,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_books_isbn UNIQUE (isbn)
+);
+
+CREATE INDEX idx_books_published_year_id ON books (published_year, id);
@@ -0,0 +1,8 @@
+-- Every book claims its ISBN here on the ISBN's home shard, which need not be the shard that stores the book once
+-- its ISBN has changed. The unique key makes an ISBN taken across all shards at once, not just on one.
+CREATE TABLE book_isbn_claims (
+    isbn    VARCHAR(20) NOT NULL,
+    book_id BIGINT      NOT NULL,
+    PRIMARY KEY (book_id, isbn),
+    CONSTRAINT uk_book_isbn_claims_isbn UNIQUE (isbn)
+);
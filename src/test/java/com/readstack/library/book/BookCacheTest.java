@@ -0,0 +1,98 @@
+package com.readstack.library.book;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookCacheTest {
+    private final BookCache cache = new BookCache(new ConcurrentMapCacheManager(BookCache.BY_ID, BookCache.BY_ISBN));
+
+    private final Book BOOK_MOCK = Book.builder()
+            .id(1L)
+            .title("Domain-Driven Design")
+            .isbn("9780321125217")
+            .publishedYear(2003)
+            .build();
+
+    @Test
+    void cachedBooksCannotBeMutatedByCallers() {
+        cache.put(BOOK_MOCK);
+
+        cache.getById(BOOK_MOCK.getId()).orElseThrow().setTitle("Changed");
+
+        assertThat(cache.getById(BOOK_MOCK.getId())).get().extracting(Book::getTitle).isEqualTo("Domain-Driven Design");
+    }
+
+    @Test
+    void resolvesByIsbn() {
+        cache.put(BOOK_MOCK);
+
+        assertThat(cache.getByIsbn(BOOK_MOCK.getIsbn())).get().extracting(Book::getId).isEqualTo(BOOK_MOCK.getId());
+    }
+
+    @Test
+    void updateEvictsOldAndNewIsbn() {
+        cache.put(BOOK_MOCK);
+        Book renumbered = BOOK_MOCK.toBuilder().isbn("9780321125218").build();
+
+        cache.onBookChanged(BookChangedEvent.updated(BOOK_MOCK, renumbered));
+
+        assertThat(cache.getById(BOOK_MOCK.getId())).isEmpty();
+        assertThat(cache.getByIsbn(BOOK_MOCK.getIsbn())).isEmpty();
+    }
+
+    @Test
+    void readsFinishingAfterAnUpdateAreNotCached() {
+        Book stale = BOOK_MOCK.toBuilder().version(3L).build();
+        Book updated = stale.toBuilder().title("Domain-Driven Design Reference").version(4L).build();
+
+        cache.onBookChanged(BookChangedEvent.updated(stale, updated));
+        cache.put(stale);
+        assertThat(cache.getById(BOOK_MOCK.getId())).isEmpty();
+        assertThat(cache.getByIsbn(BOOK_MOCK.getIsbn())).isEmpty();
+
+        cache.put(updated);
+        assertThat(cache.getById(BOOK_MOCK.getId())).get().extracting(Book::getVersion).isEqualTo(4L);
+    }
+
+    @Test
+    void keepsTheNewerCopy() {
+        Book updated = BOOK_MOCK.toBuilder().title("Domain-Driven Design Reference").version(4L).build();
+        cache.put(updated);
+
+        cache.put(BOOK_MOCK.toBuilder().version(3L).build());
+
+        assertThat(cache.getById(BOOK_MOCK.getId())).get().extracting(Book::getTitle).isEqualTo("Domain-Driven Design Reference");
+    }
+
+    @Test
+    void evictedBooksCountAsMisses() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(BookCache.BY_ID, BookCache.BY_ISBN);
+        cacheManager.setCaffeine(Caffeine.newBuilder().recordStats());
+        BookCache cache = new BookCache(cacheManager);
+        Book book = BOOK_MOCK.toBuilder().version(3L).build();
+        cache.put(book);
+        cache.evict(book);
+
+        assertThat(cache.getById(book.getId())).isEmpty();
+
+        CacheStats stats = ((CaffeineCache) cacheManager.getCache(BookCache.BY_ID)).getNativeCache().stats();
+        assertThat(stats.hitCount()).isZero();
+        assertThat(stats.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void deletedBooksAreNotCachedAgain() {
+        Book book = BOOK_MOCK.toBuilder().version(3L).build();
+
+        cache.onBookChanged(BookChangedEvent.deleted(book));
+        cache.put(book);
+
+        assertThat(cache.getById(BOOK_MOCK.getId())).isEmpty();
+    }
+}
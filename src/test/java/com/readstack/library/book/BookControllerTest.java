@@ -1,37 +1,73 @@
 package com.readstack.library.book;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.readstack.library.book.dto.BookCreateUpdateDto;
 import com.readstack.library.book.dto.BookDto;
+import com.readstack.library.book.dto.BookYearFacetDto;
+import com.readstack.library.book.facet.BookFacets;
+import com.readstack.library.book.hot.HotBooks;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.book.search.TitleSuggester;
+import com.readstack.library.catalog.CatalogVersion;
+import com.readstack.library.common.HttpCachePolicy;
 import com.readstack.library.common.NotFoundException;
+import com.readstack.library.common.PreconditionFailedException;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(BookController.class)
+@Import(HttpCachePolicy.class)
 public class BookControllerTest {
     @Autowired
     private MockMvc mockMvc;
     @MockitoBean
     private BookService service;
     @MockitoBean
-    private BookRepository repository;
-    @MockitoBean
     private BookMapper mapper;
+    @MockitoBean
+    private BookTitleIndex titleIndex;
+    @MockitoBean
+    private CatalogVersion catalogVersion;
+    @MockitoBean
+    private HotBooks hotBooks;
+    @MockitoBean
+    private TitleSuggester suggester;
+    @MockitoBean
+    private BookFacets facets;
 
     private final Book BOOK_MOCK = Book.builder()
             .id(1L)
@@ -51,15 +87,93 @@ public class BookControllerTest {
             .publishedYear(BOOK_MOCK.getPublishedYear())
             .build();
 
+    /** The stamp read inside the transaction is whatever {@code current()} is stubbed to. */
+    @BeforeEach
+    void readStampWithData() {
+        when(catalogVersion.withCurrent(any())).thenAnswer(invocation ->
+                invocation.<LongFunction<?>>getArgument(0).apply(catalogVersion.current()));
+    }
+
     @Test
     public void list_ok() throws Exception {
-        when(service.list()).thenReturn(List.of(BOOK_MOCK));
+        when(service.listAfter(0L, BookController.DEFAULT_PAGE_SIZE + 1)).thenReturn(List.of(BOOK_MOCK));
         when(mapper.toDTO(BOOK_MOCK)).thenReturn(BOOK_DTO_MOCK);
 
         mockMvc.perform(get("/library/books"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].id").value(BOOK_DTO_MOCK.getId()))
-                .andExpect(jsonPath("$[0].title").value(BOOK_DTO_MOCK.getTitle()));
+                .andExpect(jsonPath("$.items[0].id").value(BOOK_DTO_MOCK.getId()))
+                .andExpect(jsonPath("$.items[0].title").value(BOOK_DTO_MOCK.getTitle()))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    public void list_returnsNextCursorWhenMoreRowsExist() throws Exception {
+        final Book nextBook = Book.builder().id(2L).title("Refactoring").isbn("9780134757599").publishedYear(2018).build();
+        when(service.listAfter(0L, 2)).thenReturn(List.of(BOOK_MOCK, nextBook));
+        when(mapper.toDTO(BOOK_MOCK)).thenReturn(BOOK_DTO_MOCK);
+
+        mockMvc.perform(get("/library/books").param("after", "0").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.nextCursor").value(BOOK_DTO_MOCK.getId()));
+    }
+
+    @Test
+    public void stream_writesNdjson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(0);
+            action.accept(BOOK_MOCK);
+            return null;
+        }).when(service).forEach(any());
+        when(mapper.toDTO(BOOK_MOCK)).thenReturn(BOOK_DTO_MOCK);
+
+        MvcResult result = mockMvc.perform(get("/library/books/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(org.hamcrest.Matchers.endsWith("\"title\":\"Clean Code\",\"isbn\":\"9780132350884\",\"publishedYear\":2008}\n")));
+    }
+
+    @Test
+    public void list_notModifiedWhileCatalogUnchanged() throws Exception {
+        when(catalogVersion.current()).thenReturn(42L);
+
+        mockMvc.perform(get("/library/books").header(HttpHeaders.IF_NONE_MATCH, "\"catalog-42\""))
+                .andExpect(status().isNotModified());
+        verify(service, never()).listAfter(anyLong(), anyInt());
+    }
+
+    @Test
+    public void get_returnsETagAndAnswersNotModified() throws Exception {
+        final Book versioned = BOOK_MOCK.toBuilder().version(3L).build();
+        when(service.get(BOOK_MOCK.getId())).thenReturn(versioned);
+        when(mapper.toDTO(versioned)).thenReturn(BOOK_DTO_MOCK);
+
+        mockMvc.perform(get("/library/books/{id}", BOOK_MOCK.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, public"));
+
+        mockMvc.perform(get("/library/books/{id}", BOOK_MOCK.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified());
+        verify(mapper, times(1)).toDTO(versioned);
+    }
+
+    @Test
+    public void get_negotiatesCbor() throws Exception {
+        when(service.get(BOOK_MOCK.getId())).thenReturn(BOOK_MOCK);
+        when(mapper.toDTO(BOOK_MOCK)).thenReturn(BOOK_DTO_MOCK);
+
+        byte[] body = mockMvc.perform(get("/library/books/{id}", BOOK_MOCK.getId()).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(new CBORMapper().readValue(body, BookDto.class)).usingRecursiveComparison().isEqualTo(BOOK_DTO_MOCK);
     }
 
     @Test
@@ -72,6 +186,38 @@ public class BookControllerTest {
                 .andExpect(jsonPath("$.message").value("Book not found: " + bookId));
     }
 
+    @Test
+    public void batch_byIds() throws Exception {
+        when(service.getAll(List.of(1L, 5L))).thenReturn(List.of(BOOK_MOCK));
+        when(mapper.toDTO(BOOK_MOCK)).thenReturn(BOOK_DTO_MOCK);
+
+        mockMvc.perform(post("/library/books/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1, 5]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(BOOK_DTO_MOCK.getId()));
+    }
+
+    @Test
+    public void batch_requiresExactlyOneKeyKind() throws Exception {
+        mockMvc.perform(post("/library/books/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1], \"isbns\": [\"9780132350884\"]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Provide either ids or isbns"));
+    }
+
+    @Test
+    public void getByIsbn_ok() throws Exception {
+        when(service.getByIsbn(BOOK_MOCK.getIsbn())).thenReturn(BOOK_MOCK);
+        when(mapper.toDTO(BOOK_MOCK)).thenReturn(BOOK_DTO_MOCK);
+
+        mockMvc.perform(get("/library/books/isbn/{isbn}", BOOK_MOCK.getIsbn()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(BOOK_DTO_MOCK.getId()));
+    }
+
     @Test
     public void create_valid() throws Exception {
         when(mapper.toBook(any(BookCreateUpdateDto.class))).thenReturn(BOOK_MOCK);
@@ -124,10 +270,65 @@ public class BookControllerTest {
                 .andExpect(jsonPath("$.fieldErrors[?(@.field=='title')].message").value("must not be blank"));
     }
 
+    @Test
+    public void patch_appliesOnlyGivenFieldsAndReturnsETag() throws Exception {
+        final Book patched = BOOK_MOCK.toBuilder().publishedYear(2009).version(4L).build();
+        when(service.modify(eq(BOOK_MOCK.getId()), eq(3L), any())).thenReturn(patched);
+        when(mapper.toDTO(patched)).thenReturn(BOOK_DTO_MOCK);
+
+        mockMvc.perform(
+                        patch("/library/books/{id}", BOOK_MOCK.getId())
+                                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"publishedYear\": 2009}")
+                )
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    public void patch_weakIfMatch() throws Exception {
+        mockMvc.perform(
+                        patch("/library/books/{id}", BOOK_MOCK.getId())
+                                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"publishedYear\": 2009}")
+                )
+                .andExpect(status().isPreconditionFailed());
+        verify(service, never()).modify(anyLong(), any(), any());
+    }
+
+    @Test
+    public void patch_invalid() throws Exception {
+        mockMvc.perform(
+                        patch("/library/books/{id}", BOOK_MOCK.getId())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"title\": \"  \"}")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.fieldErrors[?(@.field=='title')].message").value("must not be blank"));
+    }
+
+    @Test
+    public void update_staleIfMatch() throws Exception {
+        when(mapper.toBook(any(BookCreateUpdateDto.class))).thenReturn(BOOK_MOCK);
+        when(service.update(BOOK_MOCK.getId(), BOOK_MOCK, 1L))
+                .thenThrow(new PreconditionFailedException("Book 1 is at version 2, not 1"));
+        String payload = String.format("{\"title\": \"%s\", \"isbn\": \"%s\", \"publishedYear\": %s}",
+                BOOK_CREATE_UPDATE_DTO_MOCK.getTitle(), BOOK_CREATE_UPDATE_DTO_MOCK.getIsbn(), BOOK_CREATE_UPDATE_DTO_MOCK.getPublishedYear());
+
+        mockMvc.perform(
+                        put("/library/books/{id}", BOOK_MOCK.getId())
+                                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(payload)
+                )
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     public void search_ok() throws Exception {
-        when(repository.findAll(org.mockito.ArgumentMatchers.<Specification<Book>>any()))
-                .thenReturn(List.of(BOOK_MOCK));
+        when(service.search("Clean", 2000, 2020, 0, BookController.DEFAULT_PAGE_SIZE)).thenReturn(List.of(BOOK_MOCK));
         when(mapper.toDTO(BOOK_MOCK)).thenReturn(BOOK_DTO_MOCK);
 
         mockMvc.perform(get("/library/books/search")
@@ -138,5 +339,74 @@ public class BookControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].id").value(BOOK_DTO_MOCK.getId()))
                 .andExpect(jsonPath("$[0].title").value(BOOK_DTO_MOCK.getTitle()));
+        verify(hotBooks).recordSearch("Clean", 2000, 2020);
+    }
+
+    @Test
+    public void search_usesTitleIndexOnceReady() throws Exception {
+        when(titleIndex.isReady()).thenReturn(true);
+        when(titleIndex.search("clean", 2000, null, 20L, 10)).thenReturn(List.of(BOOK_MOCK.getId()));
+        when(service.getAll(List.of(BOOK_MOCK.getId()))).thenReturn(List.of(BOOK_MOCK));
+        when(mapper.toDTO(BOOK_MOCK)).thenReturn(BOOK_DTO_MOCK);
+
+        mockMvc.perform(get("/library/books/search")
+                        .param("title", "clean")
+                        .param("fromYear", "2000")
+                        .param("page", "2")
+                        .param("size", "10")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(BOOK_DTO_MOCK.getId()));
+        verify(service, never()).search(any(), any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void search_pastTheLastPossibleOffsetIsEmpty() throws Exception {
+        when(titleIndex.isReady()).thenReturn(true);
+
+        mockMvc.perform(get("/library/books/search")
+                        .param("title", "clean")
+                        .param("page", String.valueOf(Integer.MAX_VALUE))
+                        .param("size", "100")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+        verify(titleIndex, never()).search(any(), any(), any(), anyLong(), anyInt());
+        verify(service, never()).search(any(), any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void suggest_ok() throws Exception {
+        when(suggester.suggest("clea", 5)).thenReturn(List.of(new TitleSuggester.Suggestion(BOOK_MOCK.getId(), BOOK_MOCK.getTitle())));
+
+        mockMvc.perform(get("/library/books/suggest")
+                        .param("prefix", "clea")
+                        .param("limit", "5")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(BOOK_MOCK.getId()))
+                .andExpect(jsonPath("$[0].title").value(BOOK_MOCK.getTitle()));
+        verify(service, never()).search(any(), any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void facets_countsByDecade() throws Exception {
+        when(catalogVersion.current()).thenReturn(7L);
+        when(facets.countByYear("clean", null, null, 10, 7L)).thenReturn(List.of(new BookYearFacetDto(2000, 2009, 3)));
+
+        mockMvc.perform(get("/library/books/facets")
+                        .param("bucket", "decade")
+                        .param("title", "clean")
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].fromYear").value(2000))
+                .andExpect(jsonPath("$[0].toYear").value(2009))
+                .andExpect(jsonPath("$[0].count").value(3));
+    }
+
+    @Test
+    public void facets_rejectsUnknownBucket() throws Exception {
+        mockMvc.perform(get("/library/books/facets").param("bucket", "century"))
+                .andExpect(status().isBadRequest());
     }
 }
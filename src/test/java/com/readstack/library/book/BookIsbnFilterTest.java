@@ -0,0 +1,39 @@
+package com.readstack.library.book;
+
+import com.readstack.library.book.shard.BookShards;
+import com.readstack.library.catalog.BookChangeFeed;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BookIsbnFilterTest {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private BookChangeFeed changeFeed;
+    @Mock
+    private BookShards shards;
+
+    @Test
+    void readsTrustAbsenceOnlyOnceTheFilterHasCaughtUpToTheirStart() {
+        when(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM books", Long.class)).thenReturn(0L);
+        BookIsbnFilter filter = new BookIsbnFilter(jdbcTemplate, changeFeed, shards, new SimpleMeterRegistry(), 1000, 0.01, "", Duration.ofSeconds(1));
+        long startedBeforeLoad = System.nanoTime();
+
+        filter.rebuild();
+        long startedAfterLoad = System.nanoTime();
+
+        assertThat(filter.mightContain("9780132350884")).isFalse();
+        assertThat(filter.mightContain("9780132350884", startedBeforeLoad)).isFalse();
+        assertThat(filter.mightContain("9780132350884", startedAfterLoad)).isTrue();
+    }
+}
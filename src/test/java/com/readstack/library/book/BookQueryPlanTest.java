@@ -0,0 +1,142 @@
+package com.readstack.library.book;
+
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static com.readstack.library.book.BookSpecs.yearGTE;
+import static com.readstack.library.book.BookSpecs.yearLTE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the repository calls behind the list, search and ISBN endpoints against the Flyway schema in H2's MySQL mode,
+ * EXPLAINs the statements Hibernate actually sent, with the values it bound, and fails if any of them falls back to
+ * a full table scan.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class BookQueryPlanTest {
+    private static final String TABLE_SCAN = "tableScan";
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private Statements statements;
+
+    private JdbcTemplate jdbcTemplate;
+
+    /** The statements sent through the data source, with their bound values in parameter order. */
+    record Statements(List<Statement> sent) {
+        record Statement(String sql, Object[] values) {
+        }
+    }
+
+    @TestConfiguration
+    static class CaptureConfig {
+        @Bean
+        Statements statements() {
+            return new Statements(new CopyOnWriteArrayList<>());
+        }
+
+        @Bean
+        static BeanPostProcessor statementCapture(ObjectProvider<Statements> statements) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) return bean;
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .afterQuery((execution, queries) -> queries.forEach(query -> record(statements.getObject(), query)))
+                            .build();
+                }
+            };
+        }
+
+        private static void record(Statements statements, QueryInfo query) {
+            for (List<ParameterSetOperation> parameters : query.getParametersList()) {
+                Object[] values = parameters.stream()
+                        .sorted(Comparator.comparingInt(operation -> (Integer) operation.getArgs()[0]))
+                        .map(operation -> ParameterSetOperation.isSetNullParameterOperation(operation) ? null : operation.getArgs()[1])
+                        .toArray();
+                statements.sent().add(new Statements.Statement(query.getQuery(), values));
+            }
+            if (query.getParametersList().isEmpty()) {
+                statements.sent().add(new Statements.Statement(query.getQuery(), new Object[0]));
+            }
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.batchUpdate("INSERT INTO books (title, isbn, published_year, version) VALUES (?, ?, ?, 0)",
+                IntStream.range(0, 2_000)
+                        .mapToObj(i -> new Object[]{"Book " + i, "isbn-" + i, 1900 + i % 125})
+                        .toList());
+        statements.sent().clear();
+    }
+
+    @Test
+    void yearRangeSearchUsesPublishedYearIndex() {
+        bookRepository.findAll(Specification.<Book>unrestricted().and(yearGTE(2000)).and(yearLTE(2005)),
+                PageRequest.of(0, 50, Sort.by("publishedYear", "id")));
+
+        assertThat(plans()).isNotEmpty()
+                .allSatisfy(plan -> assertThat(plan).containsIgnoringCase("idx_books_published_year_id").doesNotContain(TABLE_SCAN));
+    }
+
+    @Test
+    void openEndedYearSearchUsesPublishedYearIndex() {
+        bookRepository.findAll(Specification.<Book>unrestricted().and(yearGTE(2020)),
+                PageRequest.of(0, 50, Sort.by("publishedYear", "id")));
+
+        assertThat(plans()).isNotEmpty()
+                .allSatisfy(plan -> assertThat(plan).containsIgnoringCase("idx_books_published_year_id").doesNotContain(TABLE_SCAN));
+    }
+
+    @Test
+    void keysetPageUsesPrimaryKey() {
+        bookRepository.findByIdGreaterThanOrderByIdAsc(1000L, Limit.of(50));
+
+        assertThat(plans()).singleElement()
+                .satisfies(plan -> assertThat(plan).containsIgnoringCase("primary_key").doesNotContain(TABLE_SCAN));
+    }
+
+    @Test
+    void isbnLookupsUseUniqueIndex() {
+        bookRepository.findByIsbn("isbn-42");
+        bookRepository.findAllByIsbnIn(List.of("isbn-1", "isbn-2", "isbn-3"));
+
+        assertThat(plans()).hasSize(2)
+                .allSatisfy(plan -> assertThat(plan).containsIgnoringCase("uk_books_isbn").doesNotContain(TABLE_SCAN));
+    }
+
+    /** The plans of the statements sent since {@link #setUp()}, taken before the EXPLAINs add their own. */
+    private List<String> plans() {
+        List<Statements.Statement> sent = List.copyOf(statements.sent());
+        return sent.stream()
+                .map(statement -> jdbcTemplate.queryForObject("EXPLAIN " + statement.sql(), String.class, statement.values()))
+                .toList();
+    }
+}
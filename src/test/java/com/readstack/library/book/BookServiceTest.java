@@ -1,17 +1,39 @@
 package com.readstack.library.book;
 
+import com.readstack.library.book.shard.BookShards;
+import com.readstack.library.common.ConflictException;
 import com.readstack.library.common.NotFoundException;
+import com.readstack.library.common.PreconditionFailedException;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -19,9 +41,28 @@ import static org.mockito.Mockito.when;
 public class BookServiceTest {
     @Mock
     private BookRepository repository;
+    @Mock
+    private EntityManager entityManager;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Spy
+    private BookCache bookCache = new BookCache(new ConcurrentMapCacheManager(BookCache.BY_ID, BookCache.BY_ISBN));
+    @Mock
+    private BookLoader bookLoader;
+    @Mock
+    private BookIsbnFilter isbnFilter;
+    @Mock
+    private BookShards shards;
     @InjectMocks
     private BookService service;
 
+    @BeforeEach
+    void loadThroughRepository() {
+        lenient().when(bookLoader.load(any())).thenAnswer(invocation -> repository.findById(invocation.getArgument(0)));
+        lenient().when(isbnFilter.mightContain(any())).thenReturn(true);
+        lenient().when(isbnFilter.mightContain(any(), anyLong())).thenReturn(true);
+    }
+
     private final Book BOOK_MOCK = Book.builder()
             .title("The Great Gatsby")
             .isbn("9780743273565")
@@ -42,6 +83,7 @@ public class BookServiceTest {
 
         assertThat(created.getId()).isEqualTo(1L);
         verify(repository).save(input);
+        verify(eventPublisher).publishEvent(any(BookChangedEvent.class));
     }
 
     @Test
@@ -55,34 +97,141 @@ public class BookServiceTest {
     }
 
     @Test
-    public void updates() {
+    public void getServesRepeatReadsFromCache() {
+        BOOK_MOCK.setId(1L);
         when(repository.findById(BOOK_MOCK.getId())).thenReturn(Optional.of(BOOK_MOCK));
+
+        service.get(BOOK_MOCK.getId());
+        Book cached = service.get(BOOK_MOCK.getId());
+
+        assertThat(cached.getTitle()).isEqualTo(BOOK_MOCK.getTitle());
+        assertThat(cached).isNotSameAs(BOOK_MOCK);
+        verify(repository, times(1)).findById(BOOK_MOCK.getId());
+    }
+
+    @Test
+    public void getByIsbnOrThrows() {
+        BOOK_MOCK.setId(1L);
+        when(repository.findByIsbn(BOOK_MOCK.getIsbn())).thenReturn(Optional.of(BOOK_MOCK));
+        when(repository.findByIsbn("0000000000")).thenReturn(Optional.empty());
+
+        assertThat(service.getByIsbn(BOOK_MOCK.getIsbn()).getId()).isEqualTo(1L);
+        assertThat(service.get(1L).getIsbn()).isEqualTo(BOOK_MOCK.getIsbn());
+        assertThatThrownBy(() -> service.getByIsbn("0000000000")).isInstanceOf(NotFoundException.class);
+        verify(repository, never()).findById(1L);
+    }
+
+    @Test
+    public void getByIsbnSkipsDatabaseForUnknownIsbn() {
+        when(isbnFilter.mightContain(eq("0000000000"), anyLong())).thenReturn(false);
+
+        assertThatThrownBy(() -> service.getByIsbn("0000000000")).isInstanceOf(NotFoundException.class);
+        verify(repository, never()).findByIsbn(any());
+    }
+
+    @Test
+    public void createRejectsStoredIsbn() {
+        when(repository.existsByIsbn(BOOK_MOCK.getIsbn())).thenReturn(true);
+
+        assertThatThrownBy(() -> service.createBook(BOOK_MOCK)).isInstanceOf(ConflictException.class);
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    public void createSkipsExistenceCheckForUnknownIsbn() {
+        when(isbnFilter.mightContain(BOOK_MOCK.getIsbn())).thenReturn(false);
         when(repository.save(BOOK_MOCK)).thenAnswer(invocation -> invocation.getArgument(0));
 
+        service.createBook(BOOK_MOCK);
+
+        verify(repository, never()).existsByIsbn(any());
+    }
+
+    @Test
+    public void updates() {
+        when(repository.findById(BOOK_MOCK.getId())).thenReturn(Optional.of(BOOK_MOCK));
+        when(repository.saveAndFlush(BOOK_MOCK)).thenAnswer(invocation -> invocation.getArgument(0));
+
         Book updated = service.update(BOOK_MOCK.getId(), Book.builder().title("The Great Gatsby - Updated").isbn(BOOK_MOCK.getIsbn()).publishedYear(1950).build());
 
         assertThat(updated.getTitle()).isEqualTo("The Great Gatsby - Updated");
         assertThat(updated.getPublishedYear()).isEqualTo(1950);
     }
 
+    @Test
+    public void modifyRejectsStaleVersion() {
+        BOOK_MOCK.setVersion(2L);
+        when(repository.findById(BOOK_MOCK.getId())).thenReturn(Optional.of(BOOK_MOCK));
+
+        assertThatThrownBy(() -> service.modify(BOOK_MOCK.getId(), 1L, book -> book.setTitle("Changed")))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThat(BOOK_MOCK.getTitle()).isEqualTo("The Great Gatsby");
+        verify(repository, never()).saveAndFlush(any());
+    }
+
     @Test
     public void deletesOrThrows() {
-        when(repository.existsById(BOOK_MOCK.getId())).thenReturn(true);
-        when(repository.existsById(9L)).thenReturn(false);
+        when(repository.findById(BOOK_MOCK.getId())).thenReturn(Optional.of(BOOK_MOCK));
+        when(repository.findById(9L)).thenReturn(Optional.empty());
 
         service.delete(BOOK_MOCK.getId());
 
-        verify(repository).deleteById(BOOK_MOCK.getId());
+        verify(repository).delete(BOOK_MOCK);
+        verify(eventPublisher).publishEvent(any(BookChangedEvent.class));
         assertThatThrownBy(() -> service.delete(9L)).isInstanceOf(NotFoundException.class);
     }
 
     @Test
-    public void lists() {
-        when(repository.findAll()).thenReturn(List.of(
+    public void getsAllByIsbnInRequestedOrderUsingCache() {
+        final Book other = Book.builder().id(2L).title("1984").isbn("9780451524935").publishedYear(1949).build();
+        BOOK_MOCK.setId(1L);
+        bookCache.put(BOOK_MOCK);
+        when(repository.findAllByIsbnIn(List.of(other.getIsbn(), "0000000000"))).thenReturn(List.of(other));
+
+        List<Book> books = service.getAllByIsbn(List.of(other.getIsbn(), "0000000000", BOOK_MOCK.getIsbn()));
+
+        assertThat(books).extracting(Book::getId).containsExactly(2L, 1L);
+    }
+
+    @Test
+    public void getsAllInRequestedOrder() {
+        final Book other = Book.builder().id(2L).title("1984").isbn("9780451524935").publishedYear(1949).build();
+        BOOK_MOCK.setId(1L);
+        when(repository.findAllById(List.of(2L, 7L, 1L))).thenReturn(List.of(BOOK_MOCK, other));
+
+        assertThat(service.getAll(List.of(2L, 7L, 1L))).containsExactly(other, BOOK_MOCK);
+    }
+
+    @Test
+    public void listsAfterCursor() {
+        when(repository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2))).thenReturn(List.of(
                 BOOK_MOCK,
                 Book.builder().id(2L).title("1984").isbn("9780451524935").publishedYear(1949).build()
         ));
-        List<Book> books = service.list();
+        List<Book> books = service.listAfter(0L, 2);
         assertThat(books).hasSize(2);
     }
+
+    @Test
+    public void forEachDetachesStreamedBooks() {
+        final Book other = Book.builder().id(2L).title("1984").isbn("9780451524935").publishedYear(1949).build();
+        when(repository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(BOOK_MOCK, other));
+        List<Book> seen = new ArrayList<>();
+
+        service.forEach(seen::add);
+
+        assertThat(seen).containsExactly(BOOK_MOCK, other);
+        verify(entityManager).detach(BOOK_MOCK);
+        verify(entityManager).detach(other);
+    }
+
+    @Test
+    public void searchOrdersYearRangesByYearThenId() {
+        when(repository.findAll(org.mockito.ArgumentMatchers.<Specification<Book>>any(), any(Pageable.class)))
+                .thenReturn(new PageImpl<>(List.of(BOOK_MOCK)));
+
+        assertThat(service.search(null, 2000, null, 2, 10)).containsExactly(BOOK_MOCK);
+        verify(repository).findAll(org.mockito.ArgumentMatchers.<Specification<Book>>any(),
+                eq(PageRequest.of(2, 10, Sort.by("publishedYear", "id"))));
+    }
 }
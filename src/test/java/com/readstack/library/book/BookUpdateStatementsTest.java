@@ -0,0 +1,67 @@
+package com.readstack.library.book;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Counts the JDBC statements of an update, which the mocked service tests cannot see. */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class BookUpdateStatementsTest {
+    @Autowired
+    private BookService service;
+    @Autowired
+    private BookRepository repository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        book = repository.save(Book.builder().title("Clean Code").isbn("9780132350884").publishedYear(2008).build());
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void patchLoadsOnceAndWritesOneUpdate() {
+        Book patched = service.modify(book.getId(), book.getVersion(), changed -> changed.setPublishedYear(2009));
+
+        assertThat(patched.getVersion()).isEqualTo(book.getVersion() + 1);
+        // SELECT book, UPDATE book, UPDATE catalog_stamp
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+    }
+
+    @Test
+    void unchangedPatchWritesNothing() {
+        service.modify(book.getId(), null, changed -> changed.setPublishedYear(book.getPublishedYear()));
+
+        assertThat(statistics.getEntityUpdateCount()).isZero();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void staleWriterLosesOptimisticRace() {
+        Book stale = repository.findById(book.getId()).orElseThrow();
+        service.modify(book.getId(), null, changed -> changed.setTitle("Clean Code, 2nd edition"));
+
+        stale.setTitle("Stale title");
+        assertThatThrownBy(() -> repository.save(stale)).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+}
@@ -0,0 +1,117 @@
+package com.readstack.library.book.bulk;
+
+import com.readstack.library.book.BookRepository;
+import com.readstack.library.book.dto.BookImportReport;
+import com.readstack.library.common.BadRequestException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "library.import.batch-size=2")
+public class BookImportServiceTest {
+    @Autowired
+    private BookImportService importService;
+    @Autowired
+    private BookRepository repository;
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void importsNdjsonInBatchesAndReportsFailuresPerRow() throws Exception {
+        String body = """
+                {"title": "Clean Code", "isbn": "9780132350884", "publishedYear": 2008}
+                {"title": "Refactoring", "isbn": "9780134757599", "publishedYear": 2018}
+                {"title": "Clean Code (copy)", "isbn": "9780132350884", "publishedYear": 2008}
+                {"title": "", "isbn": "9780201633610", "publishedYear": 1994}
+                {"title": "Broken
+                """;
+
+        BookImportReport report = importService.importBooks(stream(body), BookImportFormat.NDJSON);
+
+        assertThat(report.getTotalRows()).isEqualTo(5);
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getFailed()).isEqualTo(3);
+        assertThat(report.getBatches()).hasSize(2);
+        assertThat(report.getBatches().get(0).getImported()).isEqualTo(2);
+        assertThat(report.getBatches().get(1).getFailures())
+                .extracting(BookImportReport.RowFailure::getLine)
+                .containsExactly(3L, 4L, 5L);
+        assertThat(report.getBatches().get(1).getFailures().get(0).getMessage()).isEqualTo("Duplicate ISBN");
+        assertThat(repository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void importsCsvWithQuotedFields() throws Exception {
+        String body = """
+                title,isbn,publishedYear
+                "Design Patterns: Elements of Reusable Object-Oriented Software, 1st Edition",9780201633610,1994
+                Working Effectively with Legacy Code,9780131177055,
+                """;
+
+        BookImportReport report = importService.importBooks(stream(body), BookImportFormat.CSV);
+
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(repository.findByIsbn("9780201633610")).get()
+                .extracting(book -> book.getTitle())
+                .isEqualTo("Design Patterns: Elements of Reusable Object-Oriented Software, 1st Edition");
+        assertThat(repository.findByIsbn("9780131177055")).get()
+                .extracting(book -> book.getPublishedYear())
+                .isNull();
+    }
+
+    @Test
+    void readsTheCsvHeaderAfterLeadingBlankLines() throws Exception {
+        String body = "\n  \ntitle,isbn,publishedYear\nClean Code,9780132350884,2008\n";
+
+        BookImportReport report = importService.importBooks(stream(body), BookImportFormat.CSV);
+
+        assertThat(report.getTotalRows()).isEqualTo(1);
+        assertThat(report.getImported()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyUniqueKeyViolationsAreReportedAsDuplicates() {
+        assertThat(BookBatchWriter.rejection(new DataIntegrityViolationException("insert",
+                new SQLException("Duplicate entry '9780132350884' for key 'books.uk_books_isbn'", "23000", 1062))))
+                .isEqualTo("Duplicate ISBN");
+        // The generated key name of a schema created before the migrations.
+        assertThat(BookBatchWriter.rejection(new DataIntegrityViolationException("insert",
+                new SQLException("Duplicate entry '9780132350884' for key 'books.UKkibbepcitr0a3cpk3rfr7nihn'", "23000", 1062))))
+                .isEqualTo("Duplicate ISBN");
+        assertThat(BookBatchWriter.rejection(new DuplicateKeyException("insert")))
+                .isEqualTo("Duplicate ISBN");
+        assertThat(BookBatchWriter.rejection(new DataIntegrityViolationException("insert",
+                new SQLException("Duplicate entry '5' for key 'books.PRIMARY'", "23000", 1062))))
+                .isEqualTo("Violates a database constraint");
+        assertThat(BookBatchWriter.rejection(new DataIntegrityViolationException("insert",
+                new SQLException("Data too long for column 'title' at row 1", "22001", 1406))))
+                .isEqualTo("A value is too long or out of range");
+        assertThat(BookBatchWriter.rejection(new DataIntegrityViolationException("insert",
+                new SQLException("Column 'title' cannot be null", "23000", 1048))))
+                .isEqualTo("Violates a database constraint");
+    }
+
+    @Test
+    void rejectsCsvWithoutHeader() {
+        assertThatThrownBy(() -> importService.importBooks(stream("Clean Code,9780132350884,2008\n"), BookImportFormat.CSV))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
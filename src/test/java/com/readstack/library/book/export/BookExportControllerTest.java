@@ -0,0 +1,110 @@
+package com.readstack.library.book.export;
+
+import com.readstack.library.book.dto.BookExportStatusDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(BookExportController.class)
+public class BookExportControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @MockitoBean
+    private BookExportService exportService;
+
+    @TempDir
+    Path directory;
+
+    private final UUID ID = UUID.randomUUID();
+    private final BookExportStatusDto COMPLETED = BookExportStatusDto.builder()
+            .id(ID)
+            .state(BookExportStatusDto.State.COMPLETED)
+            .format(BookExportFormat.CSV)
+            .compression(BookExportCompression.NONE)
+            .build();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = directory.resolve(ID + ".csv");
+        Files.writeString(file, "0123456789");
+        when(exportService.status(ID)).thenReturn(Optional.of(COMPLETED));
+        when(exportService.file(COMPLETED)).thenReturn(file);
+    }
+
+    @Test
+    public void start_acceptsAndPointsToStatus() throws Exception {
+        when(exportService.start(BookExportFormat.NDJSON, BookExportCompression.GZIP)).thenReturn(
+                COMPLETED.toBuilder().state(BookExportStatusDto.State.QUEUED).format(BookExportFormat.NDJSON).build());
+
+        mockMvc.perform(post("/library/books/exports").param("format", "ndjson").param("compression", "gzip"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "http://localhost/library/books/exports/" + ID))
+                .andExpect(jsonPath("$.state").value("QUEUED"));
+    }
+
+    @Test
+    public void start_rejectsUnknownFormat() throws Exception {
+        mockMvc.perform(post("/library/books/exports").param("format", "parquet"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void download_servesWholeFile() throws Exception {
+        mockMvc.perform(get("/library/books/exports/{id}/file", ID))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    public void download_servesRequestedRange() throws Exception {
+        mockMvc.perform(get("/library/books/exports/{id}/file", ID).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(content().bytes("2345".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void download_ignoresRangeForAnotherFile() throws Exception {
+        mockMvc.perform(get("/library/books/exports/{id}/file", ID)
+                        .header(HttpHeaders.RANGE, "bytes=2-5")
+                        .header(HttpHeaders.IF_RANGE, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    public void download_rejectsUnsatisfiableRange() throws Exception {
+        mockMvc.perform(get("/library/books/exports/{id}/file", ID).header(HttpHeaders.RANGE, "bytes=20-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    public void download_conflictsWhileRunning() throws Exception {
+        when(exportService.status(ID)).thenReturn(Optional.of(COMPLETED.toBuilder().state(BookExportStatusDto.State.RUNNING).build()));
+
+        mockMvc.perform(get("/library/books/exports/{id}/file", ID))
+                .andExpect(status().isConflict());
+    }
+}
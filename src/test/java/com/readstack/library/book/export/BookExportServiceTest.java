@@ -0,0 +1,165 @@
+package com.readstack.library.book.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookRepository;
+import com.readstack.library.book.dto.BookExportStatusDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "library.export.checkpoint-rows=2")
+public class BookExportServiceTest {
+    @TempDir
+    static Path directory;
+
+    @DynamicPropertySource
+    static void exportDirectory(DynamicPropertyRegistry registry) {
+        registry.add("library.export.directory", () -> directory.toString());
+    }
+
+    @Autowired
+    private BookExportService exportService;
+    @Autowired
+    private BookRepository repository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private List<Book> books;
+
+    @BeforeEach
+    void setUp() {
+        books = repository.saveAll(List.of(
+                Book.builder().title("Clean Code").isbn("9780132350884").publishedYear(2008).build(),
+                Book.builder().title("Refactoring, 2nd Edition").isbn("9780134757599").publishedYear(2018).build(),
+                Book.builder().title("The \"Pragmatic\" Programmer").isbn("9780201616224").publishedYear(1999).build(),
+                Book.builder().title("Untitled").isbn("9780000000017").build(),
+                Book.builder().title("Code Complete").isbn("9780735619678").publishedYear(2004).build()));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void exportsNdjsonAsGzipMembersReadableAsOneStream() throws Exception {
+        BookExportStatusDto job = awaitCompletion(exportService.start(BookExportFormat.NDJSON, BookExportCompression.GZIP).getId());
+
+        List<String> lines;
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(exportService.file(job)))) {
+            lines = new String(input.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+        assertThat(lines).hasSize(5);
+        assertThat(lines.getFirst()).contains("\"isbn\":\"9780132350884\"");
+        assertThat(job.getRows()).isEqualTo(5);
+        assertThat(job.getLastId()).isEqualTo(books.getLast().getId());
+        assertThat(job.getBytes()).isEqualTo(Files.size(exportService.file(job)));
+    }
+
+    @Test
+    void exportsQuotedCsv() throws Exception {
+        BookExportStatusDto job = awaitCompletion(exportService.start(BookExportFormat.CSV, BookExportCompression.NONE).getId());
+
+        List<String> lines = Files.readAllLines(exportService.file(job));
+        assertThat(lines).hasSize(6);
+        assertThat(lines.getFirst()).isEqualTo("id,title,isbn,publishedYear,version");
+        assertThat(lines.get(2)).isEqualTo(books.get(1).getId() + ",\"Refactoring, 2nd Edition\",9780134757599,2018,0");
+        assertThat(lines.get(3)).contains("\"The \"\"Pragmatic\"\" Programmer\"");
+        assertThat(lines.get(4)).isEqualTo(books.get(3).getId() + ",Untitled,9780000000017,,0");
+    }
+
+    @Test
+    void resumesAnInterruptedExportFromItsCheckpoint() throws Exception {
+        BookExportStatusDto complete = awaitCompletion(exportService.start(BookExportFormat.CSV, BookExportCompression.GZIP).getId());
+        byte[] expected = gunzip(Files.readAllBytes(exportService.file(complete)));
+
+        // A run that checkpointed after two rows and then died mid-write.
+        BookExportStatusDto fresh = awaitCompletion(exportService.start(BookExportFormat.CSV, BookExportCompression.GZIP).getId());
+        byte[] firstMembers = checkpointPrefix(fresh);
+        UUID id = UUID.randomUUID();
+        BookExportStatusDto interrupted = fresh.toBuilder()
+                .id(id)
+                .state(BookExportStatusDto.State.RUNNING)
+                .rows(2)
+                .bytes(firstMembers.length)
+                .lastId(books.get(1).getId())
+                .finishedAt(null)
+                .build();
+        Path file = exportService.file(interrupted);
+        Files.write(file, firstMembers);
+        Files.write(file, "partial garbage".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        objectMapper.writeValue(directory.resolve(id + ".json").toFile(), interrupted);
+
+        exportService.recover();
+        BookExportStatusDto resumed = awaitCompletion(id);
+
+        assertThat(gunzip(Files.readAllBytes(file))).isEqualTo(expected);
+        assertThat(resumed.getRows()).isEqualTo(5);
+    }
+
+    @Test
+    void recoveryMarksJobsWithUnreadableStatusFailed() throws Exception {
+        UUID id = UUID.randomUUID();
+        Files.writeString(directory.resolve(id + ".json"), "{\"id\":");
+
+        exportService.recover();
+
+        assertThat(exportService.status(id)).hasValueSatisfying(job -> {
+            assertThat(job.getState()).isEqualTo(BookExportStatusDto.State.FAILED);
+            assertThat(job.getMessage()).startsWith("Export could not be recovered");
+        });
+    }
+
+    /** The bytes of the gzip members that hold the header and the first two rows. */
+    private byte[] checkpointPrefix(BookExportStatusDto job) throws IOException {
+        byte[] all = Files.readAllBytes(exportService.file(job));
+        for (int length = 1; length < all.length; length++) {
+            try {
+                String text = new String(gunzip(Arrays.copyOf(all, length)), StandardCharsets.UTF_8);
+                if (text.lines().count() == 3) return Arrays.copyOf(all, length);
+            } catch (IOException truncated) {
+                // Not a member boundary yet.
+            }
+        }
+        throw new AssertionError("No member boundary after two rows");
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return input.readAllBytes();
+        }
+    }
+
+    private BookExportStatusDto awaitCompletion(UUID id) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        BookExportStatusDto job = exportService.status(id).orElseThrow();
+        while (job.getState() != BookExportStatusDto.State.COMPLETED && System.nanoTime() < deadline) {
+            assertThat(job.getState()).isNotEqualTo(BookExportStatusDto.State.FAILED);
+            Thread.sleep(20);
+            job = exportService.status(id).orElseThrow();
+        }
+        assertThat(job.getState()).isEqualTo(BookExportStatusDto.State.COMPLETED);
+        return job;
+    }
+}
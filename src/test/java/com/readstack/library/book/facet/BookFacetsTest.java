@@ -0,0 +1,109 @@
+package com.readstack.library.book.facet;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.dto.BookYearFacetDto;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.catalog.CatalogVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.doReturn;
+
+@SpringBootTest
+public class BookFacetsTest {
+    @Autowired
+    private BookFacets facets;
+    @Autowired
+    private BookService service;
+    @Autowired
+    private CatalogVersion catalogVersion;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @MockitoSpyBean
+    private BookTitleIndex titleIndex;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        // Deleted through the service, so the year counts stay in step for the tests that follow.
+        created.forEach(service::delete);
+    }
+
+    @Test
+    void unfilteredCountsFollowWrites() {
+        long before1925 = count(1925, 1);
+        long beforeUnknown = count(null, 1);
+
+        Book gatsby = create("The Great Gatsby", "9780743273565", 1925);
+        create("Mrs Dalloway", "9780156628709", 1925);
+        create("Untitled Draft", "9780000000017", null);
+
+        assertThat(count(1925, 1)).isEqualTo(before1925 + 2);
+        assertThat(count(null, 1)).isEqualTo(beforeUnknown + 1);
+
+        service.modify(gatsby.getId(), null, book -> book.setPublishedYear(1926));
+
+        assertThat(count(1925, 1)).isEqualTo(before1925 + 1);
+        assertThat(count(1920, 10)).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void aTransactionAppliesItsNetChanges() {
+        long before1950 = count(1950, 1);
+        long before1951 = count(1951, 1);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            create("Batch One", "9780000000055", 1950);
+            Book moved = create("Batch Two", "9780000000062", 1950);
+            create("Batch Three", "9780000000079", 1950);
+            service.modify(moved.getId(), null, book -> book.setPublishedYear(1951));
+        });
+
+        assertThat(count(1950, 1)).isEqualTo(before1950 + 2);
+        assertThat(count(1951, 1)).isEqualTo(before1951 + 1);
+    }
+
+    @Test
+    void titleFiltersMatchTheSearchRoute() {
+        create("Facet Study One", "9780000000024", 1931);
+        create("Facet Study Two", "9780000000031", 1938);
+        create("Facet Study Three", "9780000000048", 1941);
+
+        assertThat(facets.countByYear("facet study", null, null, 10, catalogVersion.current()))
+                .extracting(BookYearFacetDto::getFromYear, BookYearFacetDto::getCount)
+                .containsExactly(tuple(1930, 2L), tuple(1940, 1L));
+
+        doReturn(false).when(titleIndex).isReady();
+
+        assertThat(facets.countByYear("facet study", null, 1940, 1, catalogVersion.current()))
+                .extracting(BookYearFacetDto::getFromYear, BookYearFacetDto::getCount)
+                .containsExactly(tuple(1931, 1L), tuple(1938, 1L));
+    }
+
+    private Book create(String title, String isbn, Integer year) {
+        Book book = service.createBook(Book.builder().title(title).isbn(isbn).publishedYear(year).build());
+        created.add(book.getId());
+        return book;
+    }
+
+    /** The unfiltered count of the bucket starting at {@code bucketStart}, or of books without a year for {@code null}. */
+    private long count(Integer bucketStart, int bucketYears) {
+        return facets.countByYear(null, null, null, bucketYears, catalogVersion.current()).stream()
+                .filter(facet -> Objects.equals(facet.getFromYear(), bucketStart))
+                .mapToLong(BookYearFacetDto::getCount)
+                .findFirst()
+                .orElse(0);
+    }
+}
@@ -0,0 +1,69 @@
+package com.readstack.library.book.hot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.common.TopK;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class HotBooksTest {
+    @Mock
+    private BookService bookService;
+    @Mock
+    private BookTitleIndex titleIndex;
+    @TempDir
+    private Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void ranksBooksAndNormalizedSearches() {
+        HotBooks hotBooks = hotBooks("");
+        hotBooks.recordBook(1L);
+        hotBooks.recordBook(2L);
+        hotBooks.recordBook(2L);
+        hotBooks.recordSearch("Clean  Code", null, null);
+        hotBooks.recordSearch("clean code", null, null);
+
+        HotBooks.Snapshot top = hotBooks.top(10);
+
+        assertThat(top.books()).containsExactly(new TopK.Entry<>(2L, 2), new TopK.Entry<>(1L, 1));
+        assertThat(top.queries()).containsExactly(new TopK.Entry<>(new HotBooks.HotQuery("clean code", null, null), 2));
+    }
+
+    @Test
+    void snapshotSurvivesRestartAndWarmsCaches() {
+        String snapshot = directory.resolve("hot/snapshot.json").toString();
+        HotBooks before = hotBooks(snapshot);
+        before.recordBook(7L);
+        before.recordSearch(null, 2000, 2010);
+        before.save();
+
+        HotBooks after = hotBooks(snapshot);
+        after.restore();
+        assertThat(after.top(10)).isEqualTo(before.top(10));
+
+        Book book = Book.builder().id(8L).title("Refactoring").isbn("9780201485677").publishedYear(2005).build();
+        when(bookService.search(null, 2000, 2010, 0, 50)).thenReturn(List.of(book));
+        after.warmUp();
+        verify(bookService).getAll(List.of(7L));
+        verify(bookService).getAll(List.of(8L));
+    }
+
+    private HotBooks hotBooks(String snapshot) {
+        return new HotBooks(bookService, titleIndex, objectMapper, 100, 1024, snapshot, 100);
+    }
+}
@@ -0,0 +1,17 @@
+package com.readstack.library.book.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookIngestControllerTest {
+    @Test
+    void findsRespondAsyncAmongOtherPreferences() {
+        assertThat(BookIngestController.prefersAsync(List.of("respond-async"))).isTrue();
+        assertThat(BookIngestController.prefersAsync(List.of("respond-async, wait=5"))).isTrue();
+        assertThat(BookIngestController.prefersAsync(List.of("return=minimal", "Respond-Async; foo=bar"))).isTrue();
+        assertThat(BookIngestController.prefersAsync(List.of("wait=5", "return=representation"))).isFalse();
+    }
+}
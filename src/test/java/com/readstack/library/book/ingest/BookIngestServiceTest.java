@@ -0,0 +1,281 @@
+package com.readstack.library.book.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.bulk.BookBatchWriter;
+import com.readstack.library.book.bulk.ImportRow;
+import com.readstack.library.book.dto.BookCreateUpdateDto;
+import com.readstack.library.book.dto.BookImportReport;
+import com.readstack.library.book.dto.BookIngestStatusDto;
+import com.readstack.library.common.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BookIngestServiceTest {
+    @Mock
+    private BookBatchWriter batchWriter;
+    @Mock
+    private BookService bookService;
+    @TempDir
+    private Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final BookIngestStatuses recordedStatuses = new BookIngestStatuses(new NamedParameterJdbcTemplate(migrated()));
+    private BookIngestService service;
+
+    private final BookCreateUpdateDto CLEAN_CODE = BookCreateUpdateDto.builder().title("Clean Code").isbn("9780132350884").publishedYear(2008).build();
+    private final BookCreateUpdateDto REFACTORING = BookCreateUpdateDto.builder().title("Refactoring").isbn("9780201485677").publishedYear(1999).build();
+    private final BookCreateUpdateDto DDD = BookCreateUpdateDto.builder().title("Domain-Driven Design").isbn("9780321125217").publishedYear(2003).build();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null) service.stop();
+    }
+
+    @Test
+    void writesQueuedBooksAndReportsTheirIds() throws Exception {
+        when(batchWriter.write(anyInt(), anyList(), any())).thenAnswer(invocation -> insertAll(invocation.getArgument(1), invocation.getArgument(2)));
+        service = start(10, "");
+
+        BookIngestStatusDto accepted = service.submit(CLEAN_CODE);
+
+        assertThat(accepted.getState()).isEqualTo(BookIngestStatusDto.State.PENDING);
+        BookIngestStatusDto done = awaitDone(accepted.getTicket());
+        assertThat(done.getState()).isEqualTo(BookIngestStatusDto.State.CREATED);
+        assertThat(done.getBookId()).isEqualTo(100L);
+        assertThat(registry.get("library.books.ingest.lag").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void reportsRejectedRows() throws Exception {
+        when(batchWriter.write(anyInt(), anyList(), any())).thenAnswer(invocation -> {
+            List<ImportRow> rows = invocation.getArgument(1);
+            return BookImportReport.Batch.builder()
+                    .failures(List.of(new BookImportReport.RowFailure(rows.getFirst().line(), rows.getFirst().book().getIsbn(), "Duplicate ISBN")))
+                    .build();
+        });
+        service = start(10, "");
+
+        BookIngestStatusDto done = awaitDone(service.submit(CLEAN_CODE).getTicket());
+
+        assertThat(done.getState()).isEqualTo(BookIngestStatusDto.State.FAILED);
+        assertThat(done.getMessage()).isEqualTo("Duplicate ISBN");
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(batchWriter.write(anyInt(), anyList(), any())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return insertAll(invocation.getArgument(1), invocation.getArgument(2));
+        });
+        service = start(1, "");
+
+        service.submit(CLEAN_CODE);
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        BookIngestStatusDto queued = service.submit(REFACTORING);
+
+        assertThatThrownBy(() -> service.submit(DDD)).isInstanceOf(TooManyRequestsException.class);
+        assertThat(registry.get("library.books.ingest.rejected").counter().count()).isEqualTo(1);
+        assertThat(registry.get("library.books.ingest.queue.depth").gauge().value()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(awaitDone(queued.getTicket()).getState()).isEqualTo(BookIngestStatusDto.State.CREATED);
+    }
+
+    @Test
+    void retriesWhileTheDatabaseIsUnavailable() throws Exception {
+        when(batchWriter.write(anyInt(), anyList(), any()))
+                .thenThrow(new CannotGetJdbcConnectionException("Connection refused"))
+                .thenAnswer(invocation -> insertAll(invocation.getArgument(1), invocation.getArgument(2)));
+        service = start(10, "");
+
+        assertThat(awaitDone(service.submit(CLEAN_CODE).getTicket()).getState()).isEqualTo(BookIngestStatusDto.State.CREATED);
+    }
+
+    @Test
+    void failsOnlyTheBooksThatCannotBeWritten() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(batchWriter.write(anyInt(), anyList(), any())).thenAnswer(invocation -> {
+            release.await();
+            List<ImportRow> rows = invocation.getArgument(1);
+            if (rows.stream().anyMatch(row -> row.book().getIsbn().equals(REFACTORING.getIsbn()))) {
+                throw new IllegalStateException("Cannot map row");
+            }
+            return insertAll(rows, invocation.getArgument(2));
+        });
+        service = start(10, "");
+
+        UUID cleanCode = service.submit(CLEAN_CODE).getTicket();
+        UUID refactoring = service.submit(REFACTORING).getTicket();
+        release.countDown();
+
+        assertThat(awaitDone(refactoring).getState()).isEqualTo(BookIngestStatusDto.State.FAILED);
+        assertThat(awaitDone(cleanCode).getState()).isEqualTo(BookIngestStatusDto.State.CREATED);
+    }
+
+    @Test
+    void otherInstancesAnswerOnceTheBookIsWritten() throws Exception {
+        when(batchWriter.write(anyInt(), anyList(), any())).thenAnswer(invocation -> insertAll(invocation.getArgument(1), invocation.getArgument(2)));
+        service = start(10, "");
+        UUID ticket = service.submit(CLEAN_CODE).getTicket();
+        awaitDone(ticket);
+
+        BookIngestService other = new BookIngestService(batchWriter, bookService, recordedStatuses, objectMapper, registry, 10, 100, "", false, Duration.ofHours(1));
+
+        assertThat(other.status(ticket)).hasValueSatisfying(status -> {
+            assertThat(status.getState()).isEqualTo(BookIngestStatusDto.State.CREATED);
+            assertThat(status.getBookId()).isEqualTo(100L);
+        });
+        assertThat(other.status(UUID.randomUUID())).isEmpty();
+    }
+
+    @Test
+    void concurrentSyncsShareAnFsync() throws Exception {
+        try (BookIngestJournal journal = new BookIngestJournal(directory.resolve("ingest.ndjson"), true, objectMapper)) {
+            long first = journal.append(new BookIngestJournal.Entry(UUID.randomUUID(), CLEAN_CODE));
+            journal.append(new BookIngestJournal.Entry(UUID.randomUUID(), REFACTORING));
+            long last = journal.append(new BookIngestJournal.Entry(UUID.randomUUID(), DDD));
+
+            journal.sync(last);
+            journal.sync(first);
+
+            assertThat(journal.forces()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void journalDropsEntriesUpToTheWrittenPosition() throws Exception {
+        Path journalPath = directory.resolve("ingest.ndjson");
+        UUID pending = UUID.randomUUID();
+        try (BookIngestJournal journal = new BookIngestJournal(journalPath, false, objectMapper)) {
+            journal.append(new BookIngestJournal.Entry(UUID.randomUUID(), CLEAN_CODE));
+            long written = journal.append(new BookIngestJournal.Entry(UUID.randomUUID(), REFACTORING));
+            journal.append(new BookIngestJournal.Entry(pending, DDD));
+            journal.compact(written);
+        }
+
+        try (BookIngestJournal journal = new BookIngestJournal(journalPath, false, objectMapper)) {
+            assertThat(journal.recover()).extracting(BookIngestJournal.Entry::ticket).containsExactly(pending);
+        }
+    }
+
+    @Test
+    void replaysJournalLeftByPreviousRun() throws Exception {
+        Path journalPath = directory.resolve("ingest.ndjson");
+        UUID ticket = UUID.randomUUID();
+        try (BookIngestJournal journal = new BookIngestJournal(journalPath, false, objectMapper)) {
+            journal.append(new BookIngestJournal.Entry(ticket, CLEAN_CODE));
+        }
+        when(batchWriter.write(anyInt(), anyList(), any())).thenAnswer(invocation -> insertAll(invocation.getArgument(1), invocation.getArgument(2)));
+
+        service = start(10, journalPath.toString());
+
+        assertThat(awaitDone(ticket).getState()).isEqualTo(BookIngestStatusDto.State.CREATED);
+        assertThat(journalPath.resolveSibling("ingest.ndjson.replay")).doesNotExist();
+    }
+
+    @Test
+    void replayedEntriesThatWereWrittenBeforeAreCompleted() throws Exception {
+        Path journalPath = directory.resolve("ingest.ndjson");
+        UUID ticket = UUID.randomUUID();
+        try (BookIngestJournal journal = new BookIngestJournal(journalPath, false, objectMapper)) {
+            journal.append(new BookIngestJournal.Entry(ticket, CLEAN_CODE));
+        }
+        when(batchWriter.write(anyInt(), anyList(), any())).thenAnswer(invocation -> {
+            List<ImportRow> rows = invocation.getArgument(1);
+            return BookImportReport.Batch.builder()
+                    .failures(List.of(new BookImportReport.RowFailure(rows.getFirst().line(), rows.getFirst().book().getIsbn(), "Duplicate ISBN")))
+                    .build();
+        });
+        when(bookService.getAllByIsbn(List.of(CLEAN_CODE.getIsbn()))).thenReturn(List.of(Book.builder()
+                .id(42L).title(CLEAN_CODE.getTitle()).isbn(CLEAN_CODE.getIsbn()).publishedYear(CLEAN_CODE.getPublishedYear()).build()));
+
+        service = start(10, journalPath.toString());
+
+        BookIngestStatusDto done = awaitDone(ticket);
+        assertThat(done.getState()).isEqualTo(BookIngestStatusDto.State.CREATED);
+        assertThat(done.getBookId()).isEqualTo(42L);
+    }
+
+    @Test
+    void recordedEntriesAreNotReplayed() throws Exception {
+        Path journalPath = directory.resolve("ingest.ndjson");
+        UUID ticket = UUID.randomUUID();
+        try (BookIngestJournal journal = new BookIngestJournal(journalPath, false, objectMapper)) {
+            journal.append(new BookIngestJournal.Entry(ticket, CLEAN_CODE));
+        }
+        recordedStatuses.record(List.of(BookIngestStatusDto.builder()
+                .ticket(ticket).state(BookIngestStatusDto.State.CREATED).isbn(CLEAN_CODE.getIsbn()).bookId(7L).build()));
+
+        service = start(10, journalPath.toString());
+
+        assertThat(service.status(ticket)).hasValueSatisfying(status -> assertThat(status.getBookId()).isEqualTo(7L));
+        assertThat(registry.get("library.books.ingest.queue.depth").gauge().value()).isZero();
+        verifyNoInteractions(batchWriter);
+    }
+
+    private BookIngestService start(int capacity, String journal) throws Exception {
+        BookIngestService started = new BookIngestService(batchWriter, bookService, recordedStatuses, objectMapper, registry,
+                capacity, 100, journal, false, Duration.ofHours(1));
+        started.start();
+        return started;
+    }
+
+    private BookIngestStatusDto awaitDone(UUID ticket) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            BookIngestStatusDto status = service.status(ticket).orElseThrow();
+            if (status.getState() != BookIngestStatusDto.State.PENDING) return status;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Ticket " + ticket + " still pending");
+    }
+
+    private static DataSource migrated() {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:ingest;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        return dataSource;
+    }
+
+    private static BookImportReport.Batch insertAll(List<ImportRow> rows, Consumer<Book> onCreated) {
+        rows.forEach(row -> onCreated.accept(Book.builder()
+                .id(100L + row.line())
+                .title(row.book().getTitle())
+                .isbn(row.book().getIsbn())
+                .publishedYear(row.book().getPublishedYear())
+                .build()));
+        return BookImportReport.Batch.builder().imported(rows.size()).failures(List.of()).build();
+    }
+}
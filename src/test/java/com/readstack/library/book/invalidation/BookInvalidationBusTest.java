@@ -0,0 +1,150 @@
+package com.readstack.library.book.invalidation;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookCache;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.BookMapperImpl;
+import com.readstack.library.book.dto.BookChangeDto;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.book.search.TitleSuggester;
+import com.readstack.library.catalog.CatalogVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Two buses on one loopback transport stand in for two instances. */
+@ExtendWith(MockitoExtension.class)
+public class BookInvalidationBusTest {
+    private static final Duration GRACE = Duration.ofSeconds(10);
+
+    @Mock
+    private CatalogVersion catalogVersion;
+    @Mock
+    private BookTitleIndex indexA;
+    @Mock
+    private TitleSuggester suggesterA;
+    @Mock
+    private BookTitleIndex indexB;
+    @Mock
+    private TitleSuggester suggesterB;
+
+    private final LoopbackInvalidationTransport transport = new LoopbackInvalidationTransport();
+    private final AtomicLong now = new AtomicLong();
+    private final BookCache cacheB = new BookCache(new ConcurrentMapCacheManager(BookCache.BY_ID, BookCache.BY_ISBN));
+    private BookInvalidationBus busA;
+    private BookInvalidationBus busB;
+
+    private final Book CLEAN_CODE = Book.builder().id(1L).title("Clean Code").isbn("9780132350884").publishedYear(2008).version(0L).build();
+    private final Book REFACTORING = Book.builder().id(2L).title("Refactoring").isbn("9780201485677").publishedYear(1999).version(0L).build();
+
+    @BeforeEach
+    void setUp() {
+        when(catalogVersion.current()).thenReturn(10L);
+        busA = bus(new BookCache(new ConcurrentMapCacheManager(BookCache.BY_ID, BookCache.BY_ISBN)), indexA, suggesterA);
+        busB = bus(cacheB, indexB, suggesterB);
+    }
+
+    @Test
+    void sendsTheTransactionsChangesAfterCommit() {
+        cacheB.put(CLEAN_CODE);
+        Book renamed = CLEAN_CODE.toBuilder().title("Clean Code, 2nd Edition").version(1L).build();
+        when(catalogVersion.transactionVersion()).thenReturn(OptionalLong.of(11));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            busA.onBookChanged(BookChangedEvent.updated(CLEAN_CODE, renamed));
+            busA.onBookChanged(BookChangedEvent.deleted(REFACTORING));
+            verify(indexB, never()).index(any());
+
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(cacheB.getById(1L)).isEmpty();
+        verify(indexB).index(argThat(book -> book.getTitle().equals("Clean Code, 2nd Edition")));
+        verify(suggesterB).remove(2L);
+        // The sender applied its own changes through its after-commit listeners already.
+        verify(indexA, never()).index(any());
+        assertThat(busA.applied()).isEqualTo(11);
+        assertThat(busB.applied()).isEqualTo(11);
+    }
+
+    @Test
+    void appliesEachVersionOnce() {
+        transport.publish(created(11, REFACTORING));
+        transport.publish(created(11, REFACTORING));
+
+        verify(indexB, times(1)).index(argThat(book -> book.getId() == 2L));
+    }
+
+    @Test
+    void waitsForLateMessages() {
+        when(catalogVersion.current()).thenReturn(12L);
+        transport.publish(created(12, REFACTORING));
+        busB.check();
+        now.addAndGet(GRACE.toNanos() / 2);
+        transport.publish(created(11, CLEAN_CODE));
+        now.addAndGet(GRACE.toNanos());
+        busB.check();
+
+        assertThat(busB.applied()).isEqualTo(12);
+        verify(indexB, never()).rebuild();
+    }
+
+    @Test
+    void resyncsWhenAMessageIsLost() {
+        cacheB.put(CLEAN_CODE);
+        when(catalogVersion.current()).thenReturn(12L);
+        transport.publish(created(12, REFACTORING));
+
+        busB.check();
+        now.addAndGet(GRACE.toNanos() - 1);
+        busB.check();
+        verify(indexB, never()).rebuild();
+
+        now.addAndGet(1);
+        busB.check();
+
+        verify(indexB).rebuild();
+        verify(suggesterB).rebuild();
+        assertThat(cacheB.getById(1L)).isEmpty();
+        assertThat(busB.applied()).isEqualTo(12);
+    }
+
+    private BookInvalidationBus bus(BookCache cache, BookTitleIndex index, TitleSuggester suggester) {
+        BookInvalidationBus bus = new BookInvalidationBus(transport, catalogVersion, new BookMapperImpl(), cache, index,
+                suggester, new SimpleMeterRegistry(), GRACE, Duration.ofSeconds(5), now::get);
+        bus.start();
+        return bus;
+    }
+
+    private static BookInvalidation created(long version, Book book) {
+        return new BookInvalidation(version, List.of(BookChangeDto.builder()
+                .type(BookChangedEvent.Type.CREATED)
+                .bookId(book.getId())
+                .book(new BookMapperImpl().toDTO(book))
+                .build()));
+    }
+}
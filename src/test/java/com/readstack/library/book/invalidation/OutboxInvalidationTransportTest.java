@@ -0,0 +1,66 @@
+package com.readstack.library.book.invalidation;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookCache;
+import com.readstack.library.book.search.BookTitleIndex;
+import com.readstack.library.catalog.CatalogStamp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** A change written straight to the database stands in for a write made by another instance. */
+@SpringBootTest
+public class OutboxInvalidationTransportTest {
+    private static final long REMOTE_ID = 987_654_321L;
+
+    @Autowired
+    private OutboxInvalidationTransport transport;
+    @Autowired
+    private BookInvalidationBus bus;
+    @Autowired
+    private BookCache bookCache;
+    @Autowired
+    private BookTitleIndex titleIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        titleIndex.remove(REMOTE_ID);
+        jdbcTemplate.update("DELETE FROM book_changes WHERE book_id = ?", REMOTE_ID);
+    }
+
+    @Test
+    void appliesChangesCommittedElsewhere() throws InterruptedException {
+        bookCache.put(Book.builder().id(REMOTE_ID).title("Stale Title").isbn("9780000000550").publishedYear(2001).version(0L).build());
+
+        long version = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("UPDATE catalog_stamp SET version = version + 1 WHERE id = ?", CatalogStamp.ID);
+            long stamp = jdbcTemplate.queryForObject("SELECT version FROM catalog_stamp WHERE id = ?", Long.class, CatalogStamp.ID);
+            jdbcTemplate.update("INSERT INTO book_changes (book_id, change_type, payload, catalog_version) VALUES (?, 'UPDATED', ?, ?)",
+                    REMOTE_ID, "{\"id\":" + REMOTE_ID + ",\"title\":\"Remote Invalidation\",\"isbn\":\"9780000000550\","
+                            + "\"publishedYear\":2001,\"version\":1}", stamp);
+            return stamp;
+        });
+
+        // The scheduled poll may be running at the same time, in which case this one returns at once.
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (bookCache.getById(REMOTE_ID).isPresent() && System.nanoTime() < deadline) {
+            transport.poll();
+            Thread.sleep(10);
+        }
+
+        assertThat(bookCache.getById(REMOTE_ID)).isEmpty();
+        assertThat(titleIndex.search("remote invalidation", null, null, 0, 10)).isEqualTo(List.of(REMOTE_ID));
+        assertThat(bus.applied()).isGreaterThanOrEqualTo(version);
+    }
+}
@@ -0,0 +1,84 @@
+package com.readstack.library.book.reactive;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Reads over R2DBC from the same in-memory H2 database the JPA side writes to. */
+@SpringBootTest(properties = {
+        "library.reactive.enabled=true",
+        "library.reactive.r2dbc.url=r2dbc:h2:mem:///libtest?options=MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "library.reactive.r2dbc.username=sa"
+})
+public class ReactiveBookRepositoryTest {
+    @Autowired
+    private ReactiveBookRepository reactiveRepository;
+    @Autowired
+    private BookRepository repository;
+
+    private List<Book> books;
+
+    @BeforeEach
+    void setUp() {
+        books = repository.saveAll(List.of(
+                Book.builder().title("Clean Code").isbn("9780132350884").publishedYear(2008).build(),
+                Book.builder().title("Clean Architecture").isbn("9780134494166").publishedYear(2017).build(),
+                Book.builder().title("Refactoring").isbn("9780201485677").publishedYear(1999).build()));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void emitsOnlyAsManyRowsAsRequested() {
+        StepVerifier.create(reactiveRepository.findAfter(0, 10), 1)
+                .assertNext(book -> assertId(book, 0))
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenRequest(2)
+                .assertNext(book -> assertId(book, 1))
+                .assertNext(book -> assertId(book, 2))
+                .verifyComplete();
+    }
+
+    @Test
+    void pagesAfterCursor() {
+        StepVerifier.create(reactiveRepository.findAfter(books.get(0).getId(), 1))
+                .assertNext(book -> assertId(book, 1))
+                .verifyComplete();
+    }
+
+    @Test
+    void findsById() {
+        StepVerifier.create(reactiveRepository.findById(books.get(2).getId()))
+                .assertNext(book -> assertId(book, 2))
+                .verifyComplete();
+        StepVerifier.create(reactiveRepository.findById(-1L)).verifyComplete();
+    }
+
+    @Test
+    void searchesByTitleAndYear() {
+        StepVerifier.create(reactiveRepository.search("clean", 2010, null, 0, 10))
+                .assertNext(book -> assertId(book, 1))
+                .verifyComplete();
+        StepVerifier.create(reactiveRepository.search(null, null, 2010, 0, 10))
+                .assertNext(book -> assertId(book, 2))
+                .assertNext(book -> assertId(book, 0))
+                .verifyComplete();
+    }
+
+    private void assertId(Book book, int index) {
+        assertThat(book.getId()).isEqualTo(books.get(index).getId());
+    }
+}
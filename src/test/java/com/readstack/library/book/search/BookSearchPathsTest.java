@@ -0,0 +1,71 @@
+package com.readstack.library.book.search;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The two answers of {@code GET /library/books/search} over one catalog: the title index once it is ready, the
+ * database before. They agree on titles with a word starting with the query and differ as documented otherwise.
+ */
+@SpringBootTest
+public class BookSearchPathsTest {
+    @Autowired
+    private BookService service;
+    @Autowired
+    private BookTitleIndex titleIndex;
+
+    private Book gardens;
+    private Book single;
+    private Book inside;
+
+    @BeforeEach
+    void setUp() {
+        gardens = service.createBook(Book.builder().title("Zephyrine Gardens Revisited").isbn("9791000000011").publishedYear(2001).build());
+        single = service.createBook(Book.builder().title("Zephyrine").isbn("9791000000012").publishedYear(2002).build());
+        inside = service.createBook(Book.builder().title("Tales of Subzephyrine").isbn("9791000000013").publishedYear(2003).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        List.of(gardens, single, inside).forEach(book -> service.delete(book.getId()));
+    }
+
+    @Test
+    void indexRanksWordMatchesAndDatabaseListsSubstringsById() {
+        assertThat(titleIndex.isReady()).isTrue();
+
+        assertThat(titleIndex.search("zephyrine", null, null, 0, 10)).containsExactly(single.getId(), gardens.getId());
+        assertThat(ids(service.search("zephyrine", null, null, 0, 10))).containsExactly(gardens.getId(), single.getId(), inside.getId());
+
+        assertThat(titleIndex.search("zephyr", null, null, 0, 10)).containsExactly(single.getId(), gardens.getId());
+        assertThat(ids(service.search("zephyr", null, null, 0, 10))).containsExactly(gardens.getId(), single.getId(), inside.getId());
+    }
+
+    @Test
+    void indexMatchesWordsInAnyOrderAndDatabaseOnlyTheWholeString() {
+        assertThat(titleIndex.search("gardens zephyrine", null, null, 0, 10)).containsExactly(gardens.getId());
+        assertThat(service.search("gardens zephyrine", null, null, 0, 10)).isEmpty();
+
+        assertThat(titleIndex.search("zephyrine gardens", null, null, 0, 10)).containsExactly(gardens.getId());
+        assertThat(ids(service.search("zephyrine gardens", null, null, 0, 10))).containsExactly(gardens.getId());
+    }
+
+    @Test
+    void bothApplyTheYearRange() {
+        assertThat(titleIndex.search("zephyrine", 2002, null, 0, 10)).containsExactly(single.getId());
+        assertThat(ids(service.search("zephyrine", 2002, null, 0, 10))).containsExactly(single.getId(), inside.getId());
+    }
+
+    private static List<Long> ids(List<Book> books) {
+        return books.stream().map(Book::getId).toList();
+    }
+}
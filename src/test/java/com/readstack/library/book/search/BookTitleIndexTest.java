@@ -0,0 +1,86 @@
+package com.readstack.library.book.search;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.BookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+public class BookTitleIndexTest {
+    @Mock
+    private BookService bookService;
+
+    private BookTitleIndex index;
+
+    private final Book CLEAN_CODE = Book.builder().id(1L).title("Clean Code").isbn("9780132350884").publishedYear(2008).build();
+    private final Book CLEAN_ARCHITECTURE = Book.builder().id(2L).title("Clean Architecture").isbn("9780134494166").publishedYear(2017).build();
+    private final Book CODE_COMPLETE = Book.builder().id(3L).title("Code Complete: A Practical Handbook of Software Construction").isbn("9780735619678").publishedYear(2004).build();
+
+    @BeforeEach
+    void setUp() {
+        index = new BookTitleIndex(bookService);
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(0);
+            action.accept(CLEAN_CODE);
+            action.accept(CLEAN_ARCHITECTURE);
+            action.accept(CODE_COMPLETE);
+            return null;
+        }).when(bookService).forEach(any());
+        index.rebuild();
+    }
+
+    @Test
+    void rebuildsFromService() {
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void requiresEveryTerm() {
+        assertThat(index.search("clean code", null, null, 0, 10)).containsExactly(1L);
+    }
+
+    @Test
+    void ranksExactAboveShorterPrefixMatches() {
+        assertThat(index.search("code", null, null, 0, 10)).containsExactly(1L, 3L);
+        assertThat(index.search("cod", null, null, 0, 10)).containsExactly(1L, 3L);
+        assertThat(index.search("clean", null, null, 0, 10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void filtersByYearAndPaginates() {
+        assertThat(index.search("clean", 2010, null, 0, 10)).containsExactly(2L);
+        assertThat(index.search("clean", null, 2010, 0, 10)).containsExactly(1L);
+        assertThat(index.search("clean", null, null, 1, 1)).containsExactly(2L);
+    }
+
+    @Test
+    void ignoresCaseAndAccents() {
+        index.index(Book.builder().id(4L).title("Les Misérables").isbn("9780140444308").publishedYear(1862).build());
+
+        assertThat(index.search("MISERABLES", null, null, 0, 10)).containsExactly(4L);
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        Book renamed = CLEAN_CODE.toBuilder().title("Refactoring").build();
+
+        index.onBookChanged(BookChangedEvent.updated(CLEAN_CODE, renamed));
+        assertThat(index.search("clean", null, null, 0, 10)).containsExactly(2L);
+        assertThat(index.search("refactoring", null, null, 0, 10)).containsExactly(1L);
+
+        index.onBookChanged(BookChangedEvent.deleted(renamed));
+        assertThat(index.search("refactoring", null, null, 0, 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,110 @@
+package com.readstack.library.book.search;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.hot.HotBooks;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TitleSuggesterTest {
+    @Mock
+    private BookService bookService;
+    @Mock
+    private HotBooks hotBooks;
+
+    private TitleSuggester suggester;
+
+    private final Book CLEAN_CODE = Book.builder().id(1L).title("Clean Code").isbn("9780132350884").publishedYear(2008).build();
+    private final Book CLEAN_ARCHITECTURE = Book.builder().id(2L).title("Clean Architecture").isbn("9780134494166").publishedYear(2017).build();
+    private final Book CODE_COMPLETE = Book.builder().id(3L).title("Code Complete").isbn("9780735619678").publishedYear(2004).build();
+
+    @BeforeEach
+    void setUp() {
+        suggester = new TitleSuggester(bookService, hotBooks, 2, Duration.ofMinutes(10));
+        lenient().when(hotBooks.popularity(anyLong())).thenReturn(0L);
+        doAnswer(invocation -> {
+            Consumer<Book> action = invocation.getArgument(0);
+            action.accept(CLEAN_CODE);
+            action.accept(CLEAN_ARCHITECTURE);
+            action.accept(CODE_COMPLETE);
+            return null;
+        }).when(bookService).forEach(any());
+        suggester.rebuild();
+    }
+
+    @Test
+    void rebuildsFromService() {
+        assertThat(suggester.isReady()).isTrue();
+        assertThat(suggester.size()).isEqualTo(3);
+    }
+
+    @Test
+    void matchesTitleAndWordPrefixes() {
+        assertThat(ids("clean")).containsExactly(1L, 2L);
+        assertThat(ids("clean c")).containsExactly(1L);
+        assertThat(ids("CODE")).containsExactly(1L, 3L);
+        assertThat(ids("arch")).containsExactly(2L);
+        assertThat(ids("cleaner")).isEmpty();
+        assertThat(ids(" ")).isEmpty();
+    }
+
+    @Test
+    void matchesPhrasesStartingAtAnyWord() {
+        assertThat(ids("code comp")).containsExactly(3L);
+        assertThat(ids("clean code")).containsExactly(1L);
+        assertThat(ids("code clean")).isEmpty();
+        assertThat(ids("lean c")).isEmpty();
+    }
+
+    @Test
+    void keepsRankingAfterTopBooksAreRemoved() {
+        suggester.remove(1L);
+        suggester.remove(2L);
+
+        assertThat(ids("c")).containsExactly(3L);
+        assertThat(ids("clean")).isEmpty();
+    }
+
+    @Test
+    void ranksByPopularityAndCapsAtTopN() {
+        when(hotBooks.popularity(3L)).thenReturn(50L);
+        when(hotBooks.popularity(2L)).thenReturn(10L);
+
+        suggester.reweight();
+
+        assertThat(ids("c")).containsExactly(3L, 2L);
+        assertThat(suggester.suggest("c", 1)).extracting(TitleSuggester.Suggestion::title).containsExactly("Code Complete");
+    }
+
+    @Test
+    void followsWrites() {
+        Book renamed = CLEAN_CODE.toBuilder().title("Refactoring").build();
+        suggester.onBookChanged(BookChangedEvent.updated(CLEAN_CODE, renamed));
+        suggester.onBookChanged(BookChangedEvent.deleted(CODE_COMPLETE));
+
+        assertThat(ids("clean")).containsExactly(2L);
+        assertThat(ids("code")).isEmpty();
+        assertThat(ids("ref")).containsExactly(1L);
+        assertThat(suggester.size()).isEqualTo(2);
+    }
+
+    private List<Long> ids(String prefix) {
+        return suggester.suggest(prefix, 10).stream().map(TitleSuggester.Suggestion::id).toList();
+    }
+}
@@ -0,0 +1,288 @@
+package com.readstack.library.book.shard;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookService;
+import com.readstack.library.common.ConflictException;
+import com.readstack.library.common.NotFoundException;
+import com.readstack.library.common.PreconditionFailedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Three more in-memory H2 databases stand in for MySQL shards; the application migrates them at startup. */
+@SpringBootTest(properties = {
+        "library.database.shards.enabled=true",
+        "library.database.shards.urls.0=" + BookShardingTest.SHARD_0,
+        "library.database.shards.urls.1=" + BookShardingTest.SHARD_1,
+        "library.database.shards.urls.5=" + BookShardingTest.SHARD_5
+})
+public class BookShardingTest {
+    static final String SHARD_0 = "jdbc:h2:mem:shard0;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:shard1;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String SHARD_5 = "jdbc:h2:mem:shard5;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private BookService service;
+    @Autowired
+    private BookShards shards;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() {
+        // Deleted through the service, so the year counts on the primary stay in step for other tests.
+        created.forEach(service::delete);
+    }
+
+    @Test
+    void storesEachBookOnTheShardOfItsIsbn() {
+        List<Book> books = create("Routing", 30, 1990);
+
+        Map<Integer, Long> perShard = books.stream().collect(Collectors.groupingBy(book -> BookShards.shardOf(book.getId()), Collectors.counting()));
+        assertThat(perShard.keySet()).containsAnyOf(0, 1, 5).hasSizeGreaterThan(1);
+        for (Book book : books) {
+            assertThat(BookShards.shardOf(book.getId())).isEqualTo(shards.shardFor(book.getIsbn()));
+            assertThat(service.get(book.getId()).getIsbn()).isEqualTo(book.getIsbn());
+            assertThat(service.getByIsbn(book.getIsbn()).getId()).isEqualTo(book.getId());
+        }
+        perShard.forEach((shard, count) -> assertThat(rows(shard, "Routing")).isEqualTo(count));
+        assertThat(service.getAll(books.stream().map(Book::getId).toList())).extracting(Book::getId)
+                .containsExactlyElementsOf(books.stream().map(Book::getId).toList());
+    }
+
+    @Test
+    void listsAllShardsInIdOrder() {
+        List<Long> ids = create("Listing", 25, 1991).stream().map(Book::getId).toList();
+
+        List<Long> listed = new ArrayList<>();
+        for (List<Book> page = service.listAfter(0, 7); !page.isEmpty(); page = service.listAfter(listed.getLast(), 7)) {
+            assertThat(page.size()).isLessThanOrEqualTo(7);
+            page.forEach(book -> listed.add(book.getId()));
+        }
+        assertThat(listed).isSorted().doesNotHaveDuplicates().containsAll(ids);
+    }
+
+    @Test
+    void streamsAllShardsInIdOrder() {
+        List<Long> ids = create("Streaming", 25, 1996).stream().map(Book::getId).toList();
+
+        List<Long> streamed = new ArrayList<>();
+        service.forEach(book -> streamed.add(book.getId()));
+
+        assertThat(streamed).isSorted().doesNotHaveDuplicates().containsAll(ids);
+    }
+
+    @Test
+    void searchPagesMergeTheShards() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            books.addAll(create("Merged " + i, 1, 1900 + (i * 7) % 11));
+        }
+        List<Book> expected = books.stream()
+                .sorted(Comparator.comparing(Book::getPublishedYear).thenComparing(Book::getId))
+                .toList();
+
+        List<Book> paged = new ArrayList<>();
+        for (int page = 0; page < 6; page++) {
+            paged.addAll(service.search("merged", 1900, 1910, page, 4));
+        }
+        assertThat(paged).extracting(Book::getId).containsExactlyElementsOf(expected.stream().map(Book::getId).toList());
+        assertThat(shards.countByYear("merged", null, null).values().stream().mapToLong(Long::longValue).sum()).isEqualTo(20);
+    }
+
+    @Test
+    void updatesStayOnTheOwningShard() {
+        Book book = create("Moving", 1, 1992).getFirst();
+        int shard = BookShards.shardOf(book.getId());
+        String elsewhere = isbnOnAnotherShard(shard);
+
+        Book updated = service.update(book.getId(), Book.builder().title("Moved").isbn(elsewhere).publishedYear(1993).build(), book.getVersion());
+
+        assertThat(updated.getVersion()).isEqualTo(book.getVersion() + 1);
+        assertThat(service.getByIsbn(elsewhere).getId()).isEqualTo(book.getId());
+        assertThat(rows(shard, "Moved")).isEqualTo(1);
+        assertThatThrownBy(() -> service.update(book.getId(), updated, book.getVersion())).isInstanceOf(PreconditionFailedException.class);
+
+        service.delete(book.getId());
+        created.remove(book.getId());
+        assertThatThrownBy(() -> service.get(book.getId())).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void anIsbnIsTakenOnceAcrossShards() throws Exception {
+        Book moving = create("Contended", 1, 1997).getFirst();
+        String isbn = isbnOnAnotherShard(BookShards.shardOf(moving.getId()));
+        int creates = 6;
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Book>> attempts = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(creates + 1)) {
+            attempts.add(executor.submit(() -> {
+                start.await();
+                return service.update(moving.getId(), Book.builder().title("Contended Moved").isbn(isbn).publishedYear(1997).build(), moving.getVersion());
+            }));
+            for (int i = 0; i < creates; i++) {
+                String title = "Contended Copy " + i;
+                attempts.add(executor.submit(() -> {
+                    start.await();
+                    return service.createBook(Book.builder().title(title).isbn(isbn).publishedYear(1997).build());
+                }));
+            }
+            start.countDown();
+        }
+
+        List<Book> winners = new ArrayList<>();
+        for (Future<Book> attempt : attempts) {
+            try {
+                winners.add(attempt.get());
+            } catch (ExecutionException exception) {
+                assertThat(exception.getCause()).isInstanceOfAny(ConflictException.class, DataAccessException.class);
+            }
+        }
+        winners.stream().map(Book::getId).filter(id -> !id.equals(moving.getId())).forEach(created::add);
+        assertThat(winners).singleElement().satisfies(winner -> assertThat(winner.getIsbn()).isEqualTo(isbn));
+        assertThat(List.of(0, 1, 5).stream().mapToLong(shard -> count(shard, "SELECT COUNT(*) FROM books WHERE isbn = ?", isbn)).sum()).isEqualTo(1);
+        assertThat(count(shards.shardFor(isbn), "SELECT COUNT(*) FROM book_isbn_claims WHERE isbn = ?", isbn)).isEqualTo(1);
+    }
+
+    @Test
+    void primaryRollbackAfterTheShardWritesUndoesThem() {
+        Book kept = create("Kept", 1, 1994).getFirst();
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            service.createBook(Book.builder().title("Rolled Back").isbn(nextIsbn()).publishedYear(1994).build());
+            service.update(kept.getId(), Book.builder().title("Kept Changed").isbn(kept.getIsbn()).publishedYear(1994).build(), kept.getVersion());
+            throw new IllegalStateException("The primary transaction fails after the shard writes");
+        })).isInstanceOf(IllegalStateException.class);
+
+        for (int shard : List.of(0, 1, 5)) {
+            assertThat(rows(shard, "Rolled Back")).isZero();
+            assertThat(rows(shard, "Kept Changed")).isZero();
+        }
+        assertThat(rows(BookShards.shardOf(kept.getId()), "Kept 0")).isEqualTo(1);
+    }
+
+    @Test
+    void failedShardCommitsAreWrittenAgain() {
+        DriverManagerDataSource shardDatabase = new DriverManagerDataSource("jdbc:h2:mem:shard-repair;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(shardDatabase).locations(BookShards.MIGRATIONS).load().migrate();
+        BookShards failingCommits = new BookShards(Map.of(0, failingCommits(shardDatabase)), 16);
+        TransactionTemplate primary = new TransactionTemplate(new DataSourceTransactionManager(
+                new DriverManagerDataSource("jdbc:h2:mem:primary-repair;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "")));
+        try {
+            Book book = primary.execute(status -> failingCommits.insert(Book.builder().title("Repaired").isbn(nextIsbn()).publishedYear(1995).build()));
+            assertThat(failingCommits.findById(book.getId())).hasValueSatisfying(stored -> assertThat(stored.getTitle()).isEqualTo("Repaired"));
+
+            Book renamed = primary.execute(status -> failingCommits.update(book.toBuilder().title("Repaired Again").build(), book.getIsbn()));
+            assertThat(failingCommits.findById(book.getId())).hasValueSatisfying(stored -> {
+                assertThat(stored.getTitle()).isEqualTo("Repaired Again");
+                assertThat(stored.getVersion()).isEqualTo(renamed.getVersion());
+            });
+
+            primary.executeWithoutResult(status -> failingCommits.delete(renamed));
+            assertThat(failingCommits.findById(book.getId())).isEmpty();
+        } finally {
+            failingCommits.close();
+        }
+    }
+
+    @Test
+    void refusesToStartWithTheReactiveEndpoints() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("library.database.shards.enabled", "true")
+                .withProperty("library.database.shards.urls.0", "jdbc:h2:mem:shard-reactive;MODE=MySQL;DB_CLOSE_DELAY=-1")
+                .withProperty("library.reactive.enabled", "true");
+
+        assertThatThrownBy(() -> new BookShards(new DataSourceProperties(), environment,
+                new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("library.reactive.enabled");
+    }
+
+    /** Connections whose every commit fails, as if the shard went away between the primary commit and its own. */
+    private static DataSource failingCommits(DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class}, (proxy, method, args) -> {
+            Object result = invoke(method, dataSource, args);
+            if (!(result instanceof Connection connection)) return result;
+            return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (connectionProxy, connectionMethod, connectionArgs) -> {
+                if (connectionMethod.getName().equals("commit")) {
+                    connection.rollback();
+                    throw new SQLException("Shard unavailable");
+                }
+                return invoke(connectionMethod, connection, connectionArgs);
+            });
+        });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getCause();
+        }
+    }
+
+    private List<Book> create(String title, int count, int year) {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Book book = service.createBook(Book.builder().title(title + " " + i).isbn(nextIsbn()).publishedYear(year).build());
+            created.add(book.getId());
+            books.add(book);
+        }
+        return books;
+    }
+
+    private String isbnOnAnotherShard(int shard) {
+        String isbn = nextIsbn();
+        while (shards.shardFor(isbn) == shard) isbn = nextIsbn();
+        return isbn;
+    }
+
+    private static int sequence;
+
+    private static String nextIsbn() {
+        return String.format("979%010d", ++sequence);
+    }
+
+    private static long rows(int shard, String titlePrefix) {
+        return count(shard, "SELECT COUNT(*) FROM books WHERE title LIKE ?", titlePrefix + "%");
+    }
+
+    private static long count(int shard, String sql, String argument) {
+        String url = Map.of(0, SHARD_0, 1, SHARD_1, 5, SHARD_5).get(shard);
+        return new JdbcTemplate(new DriverManagerDataSource(url, "sa", "")).queryForObject(sql, Long.class, argument);
+    }
+}
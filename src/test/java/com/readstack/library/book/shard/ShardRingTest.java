@@ -0,0 +1,61 @@
+package com.readstack.library.book.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShardRingTest {
+    private static final int ISBNS = 30_000;
+
+    @Test
+    void spreadsIsbnsEvenly() {
+        ShardRing ring = new ShardRing(List.of(0, 1, 2), 128);
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int i = 0; i < ISBNS; i++) {
+            counts.merge(ring.shardFor(isbn(i)), 1, Integer::sum);
+        }
+        assertThat(counts).containsOnlyKeys(0, 1, 2);
+        // 128 points per shard keep every share within a few percent of a third.
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(ISBNS / 3 * 8 / 10, ISBNS / 3 * 12 / 10));
+    }
+
+    @Test
+    void addingAShardOnlyMovesIsbnsToIt() {
+        ShardRing three = new ShardRing(List.of(0, 1, 2), 128);
+        ShardRing four = new ShardRing(List.of(0, 1, 2, 3), 128);
+        int moved = 0;
+        for (int i = 0; i < ISBNS; i++) {
+            int before = three.shardFor(isbn(i));
+            int after = four.shardFor(isbn(i));
+            if (before != after) {
+                assertThat(after).isEqualTo(3);
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(ISBNS / 4 * 8 / 10, ISBNS / 4 * 12 / 10);
+    }
+
+    @Test
+    void ignoresCaseAndShardOrder() {
+        ShardRing ring = new ShardRing(List.of(0, 1, 2), 16);
+        ShardRing reordered = new ShardRing(List.of(2, 0, 1), 16);
+        for (int i = 0; i < 1000; i++) {
+            String isbn = "080442957" + i + (i % 2 == 0 ? "x" : "X");
+            assertThat(ring.shardFor(isbn)).isEqualTo(ring.shardFor(isbn.toUpperCase())).isEqualTo(reordered.shardFor(isbn));
+        }
+    }
+
+    @Test
+    void requiresShards() {
+        assertThatThrownBy(() -> new ShardRing(List.of(), 128)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String isbn(int i) {
+        return String.format("978%010d", i);
+    }
+}
@@ -0,0 +1,100 @@
+package com.readstack.library.catalog;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import com.readstack.library.book.BookRepository;
+import com.readstack.library.book.BookService;
+import com.readstack.library.book.dto.BookChangeDto;
+import com.readstack.library.book.dto.BookChangePageDto;
+import com.readstack.library.common.GoneException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+public class BookChangeFeedTest {
+    @Autowired
+    private BookService service;
+    @Autowired
+    private BookRepository repository;
+    @Autowired
+    private BookChangeFeed feed;
+    @Autowired
+    private BookChangeRetention retention;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long start;
+
+    @BeforeEach
+    void setUp() {
+        start = feed.head();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        repository.deleteAll();
+        jdbcTemplate.update("DELETE FROM book_changes");
+        jdbcTemplate.update("UPDATE catalog_stamp SET changes_purged_through = 0");
+    }
+
+    @Test
+    void recordsEveryMutationInOrder() {
+        Book created = service.createBook(Book.builder().title("Clean Code").isbn("9780132350884").publishedYear(2008).build());
+        service.modify(created.getId(), null, book -> book.setPublishedYear(2009));
+        service.delete(created.getId());
+
+        BookChangePageDto page = feed.read(start, 10);
+
+        assertThat(page.getChanges()).extracting(BookChangeDto::getType).containsExactly(
+                BookChangedEvent.Type.CREATED, BookChangedEvent.Type.UPDATED, BookChangedEvent.Type.DELETED);
+        assertThat(page.getChanges()).extracting(BookChangeDto::getBookId).containsOnly(created.getId());
+        assertThat(page.getChanges().get(1).getBook().getPublishedYear()).isEqualTo(2009);
+        assertThat(page.getNextOffset()).isEqualTo(feed.head());
+        assertThat(feed.read(page.getNextOffset(), 10).getChanges()).isEmpty();
+    }
+
+    @Test
+    void longPollIsAnsweredByTheNextCommit() throws Exception {
+        DeferredResult<BookChangePageDto> result = feed.poll(start, 10, Duration.ofSeconds(10));
+        assertThat(result.hasResult()).isFalse();
+
+        service.createBook(Book.builder().title("Refactoring").isbn("9780201485677").publishedYear(1999).build());
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!result.hasResult() && System.nanoTime() < deadline) Thread.sleep(10);
+        assertThat(((BookChangePageDto) result.getResult()).getChanges()).hasSize(1);
+    }
+
+    @Test
+    void compactionKeepsLatestChangePerBook() {
+        Book created = service.createBook(Book.builder().title("Clean Code").isbn("9780132350884").publishedYear(2008).build());
+        service.modify(created.getId(), null, book -> book.setPublishedYear(2009));
+
+        retention.compact(Instant.now().plusSeconds(60));
+
+        assertThat(feed.read(start, 10).getChanges()).extracting(BookChangeDto::getType)
+                .containsExactly(BookChangedEvent.Type.UPDATED);
+    }
+
+    @Test
+    void consumersBehindRetentionMustResync() {
+        service.createBook(Book.builder().title("Clean Code").isbn("9780132350884").publishedYear(2008).build());
+        long head = feed.head();
+
+        retention.expire(Instant.now().plusSeconds(60));
+
+        assertThatThrownBy(() -> feed.read(start, 10)).isInstanceOf(GoneException.class);
+        assertThat(feed.read(head, 10).getChanges()).isEmpty();
+    }
+}
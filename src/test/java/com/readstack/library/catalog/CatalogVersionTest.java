@@ -0,0 +1,57 @@
+package com.readstack.library.catalog;
+
+import com.readstack.library.book.Book;
+import com.readstack.library.book.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(CatalogVersion.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class CatalogVersionTest {
+    @Autowired
+    private CatalogVersion catalogVersion;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Book BOOK_MOCK = Book.builder()
+            .id(1L)
+            .title("The Mythical Man-Month")
+            .isbn("9780201835953")
+            .publishedYear(1975)
+            .build();
+
+    @Test
+    void bumpsOncePerTransactionWhenItCommits() {
+        long before = catalogVersion.current();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            catalogVersion.onBookChanged(BookChangedEvent.created(BOOK_MOCK));
+            catalogVersion.onBookChanged(BookChangedEvent.deleted(BOOK_MOCK));
+            // Nothing is locked before the commit.
+            assertThat(catalogVersion.current()).isEqualTo(before);
+            assertThat(catalogVersion.transactionVersion()).isEmpty();
+        });
+
+        assertThat(catalogVersion.current()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void rolledBackTransactionsLeaveTheStamp() {
+        long before = catalogVersion.current();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            catalogVersion.onBookChanged(BookChangedEvent.created(BOOK_MOCK));
+            status.setRollbackOnly();
+        });
+
+        assertThat(catalogVersion.current()).isEqualTo(before);
+    }
+}
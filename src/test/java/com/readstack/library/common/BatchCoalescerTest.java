@@ -0,0 +1,85 @@
+package com.readstack.library.common;
+
+import com.readstack.library.common.db.PrimaryPin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BatchCoalescerTest {
+    private final List<List<Long>> batches = new CopyOnWriteArrayList<>();
+    private BatchCoalescer<Long, String> coalescer;
+
+    @AfterEach
+    void tearDown() {
+        coalescer.close();
+    }
+
+    @Test
+    void mergesKeysRequestedWithinTheWindow() throws Exception {
+        coalescer = new BatchCoalescer<>("test", this::echo, Duration.ofMillis(50), 100);
+
+        CompletableFuture<String> first = coalescer.load(1L);
+        CompletableFuture<String> second = coalescer.load(2L);
+        CompletableFuture<String> duplicate = coalescer.load(1L);
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("book-1");
+        assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("book-2");
+        assertThat(duplicate).isSameAs(first);
+        assertThat(batches).containsExactly(List.of(1L, 2L));
+    }
+
+    @Test
+    void dispatchesEarlyWhenTheBatchIsFull() throws Exception {
+        coalescer = new BatchCoalescer<>("test", this::echo, Duration.ofMinutes(1), 2);
+
+        CompletableFuture<String> first = coalescer.load(1L);
+        CompletableFuture<String> second = coalescer.load(2L);
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("book-1");
+        assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("book-2");
+    }
+
+    @Test
+    void completesMissingKeysWithNullAndFailuresExceptionally() throws Exception {
+        coalescer = new BatchCoalescer<>("test", keys -> Map.of(), Duration.ofMillis(1), 100);
+        assertThat(coalescer.load(7L).get(1, TimeUnit.SECONDS)).isNull();
+        coalescer.close();
+
+        coalescer = new BatchCoalescer<>("test", keys -> {
+            throw new IllegalStateException("database down");
+        }, Duration.ofMillis(1), 100);
+        assertThatThrownBy(() -> coalescer.load(7L).get(1, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void loadsABatchPinnedWhenAnyCallerIsPinned() throws Exception {
+        coalescer = new BatchCoalescer<>("test", keys -> Map.of(keys.getFirst(), String.valueOf(PrimaryPin.isPinned())),
+                Duration.ofMillis(1), 1);
+
+        assertThat(coalescer.load(1L).get(1, TimeUnit.SECONDS)).isEqualTo("false");
+        boolean wasPinned = PrimaryPin.pin();
+        try {
+            assertThat(coalescer.load(2L).get(1, TimeUnit.SECONDS)).isEqualTo("true");
+        } finally {
+            PrimaryPin.release(wasPinned);
+        }
+        assertThat(coalescer.load(3L).get(1, TimeUnit.SECONDS)).isEqualTo("false");
+    }
+
+    private Map<Long, String> echo(List<Long> keys) {
+        batches.add(keys);
+        return keys.stream().collect(Collectors.toMap(Function.identity(), key -> "book-" + key));
+    }
+}
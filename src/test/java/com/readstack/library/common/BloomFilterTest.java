@@ -0,0 +1,38 @@
+package com.readstack.library.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BloomFilterTest {
+    @Test
+    void neverMissesAnAddedValue() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put("978-" + i));
+
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("978-" + i))).isTrue();
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheConfiguredRate() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> filter.put("978-" + i));
+
+        long falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("979-" + i)).count();
+
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    @Test
+    void restoresFromItsState() {
+        BloomFilter filter = BloomFilter.create(100, 0.01);
+        filter.put("9780743273565");
+
+        BloomFilter restored = new BloomFilter(filter.numHashes(), filter.words());
+
+        assertThat(restored.mightContain("9780743273565")).isTrue();
+        assertThat(restored.words()).isEqualTo(filter.words());
+    }
+}
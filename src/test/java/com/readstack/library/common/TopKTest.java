@@ -0,0 +1,57 @@
+package com.readstack.library.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TopKTest {
+    @Test
+    void findsHeavyHittersAmongNoise() {
+        TopK<String> topK = new TopK<>(5, 1024);
+        IntStream.range(0, 10_000).forEach(i -> topK.add("noise-" + i));
+        for (int hot = 0; hot < 5; hot++) {
+            for (int hit = 0; hit < 1_000 + 200 * hot; hit++) topK.add("hot-" + hot);
+        }
+
+        assertThat(topK.top(5)).extracting(TopK.Entry::key).containsExactly("hot-4", "hot-3", "hot-2", "hot-1", "hot-0");
+        assertThat(topK.estimate("hot-4")).isGreaterThanOrEqualTo(1_800);
+        assertThat(topK.top(2)).hasSize(2);
+    }
+
+    @Test
+    void keepsAtMostKKeys() {
+        TopK<Integer> topK = new TopK<>(3, 64);
+        IntStream.range(0, 100).forEach(topK::add);
+
+        assertThat(topK.top(10)).hasSize(3);
+    }
+
+    @Test
+    void concurrentAddsLoseNoCounts() throws InterruptedException {
+        TopK<String> topK = new TopK<>(10, 1024);
+        List<Thread> threads = IntStream.range(0, 4)
+                .mapToObj(thread -> Thread.ofPlatform().start(() -> {
+                    for (int hit = 0; hit < 10_000; hit++) topK.add(hit % 10 == 0 ? "noise-" + thread + "-" + hit : "hot");
+                }))
+                .toList();
+        for (Thread thread : threads) thread.join();
+
+        assertThat(topK.estimate("hot")).isGreaterThanOrEqualTo(36_000);
+        assertThat(topK.top(1)).extracting(TopK.Entry::key).containsExactly("hot");
+    }
+
+    @Test
+    void decayHalvesCountsAndDropsKeysReachingZero() {
+        TopK<String> topK = new TopK<>(10, 64);
+        topK.add("steady", 4);
+        topK.add("once");
+
+        topK.decay();
+
+        assertThat(topK.estimate("steady")).isEqualTo(2);
+        assertThat(topK.top(10)).containsExactly(new TopK.Entry<>("steady", 2));
+    }
+}
@@ -0,0 +1,51 @@
+package com.readstack.library.common.db;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BulkheadDataSourceTest {
+    private final DataSource target = mock(DataSource.class);
+    private final BulkheadDataSource bulkhead = new BulkheadDataSource(target, 2, Duration.ofMillis(20));
+
+    @Test
+    void rejectsCallersBeyondTheLimit() throws Exception {
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+
+        bulkhead.getConnection();
+        bulkhead.getConnection();
+
+        assertThat(bulkhead.getAvailablePermits()).isZero();
+        assertThatThrownBy(bulkhead::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+    }
+
+    @Test
+    void releasesPermitOnceWhenConnectionCloses() throws Exception {
+        Connection physical = mock(Connection.class);
+        when(target.getConnection()).thenReturn(physical);
+
+        Connection connection = bulkhead.getConnection();
+        connection.close();
+        connection.close();
+
+        verify(physical, org.mockito.Mockito.times(2)).close();
+        assertThat(bulkhead.getAvailablePermits()).isEqualTo(2);
+    }
+
+    @Test
+    void releasesPermitWhenThePoolFails() throws Exception {
+        when(target.getConnection()).thenThrow(new SQLTransientConnectionException("pool timeout"));
+
+        assertThatThrownBy(bulkhead::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        assertThat(bulkhead.getAvailablePermits()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,146 @@
+package com.readstack.library.common.db;
+
+import jakarta.servlet.http.Cookie;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Two more in-memory H2 databases stand in for MySQL replicas of the test database. */
+@SpringBootTest(properties = {
+        "library.database.replicas.enabled=true",
+        "library.database.replicas.urls=" + ReadReplicaRoutingTest.REPLICA_1 + "," + ReadReplicaRoutingTest.REPLICA_2
+})
+public class ReadReplicaRoutingTest {
+    static final String REPLICA_1 = "jdbc:h2:mem:replica1;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_2 = "jdbc:h2:mem:replica2;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ReadYourWritesFilter readYourWritesFilter;
+    @Autowired
+    private TaskDecorator taskDecorator;
+
+    /** Replication would bring the schema over; here each replica is migrated before the context starts. */
+    @BeforeAll
+    static void createReplicaSchemas() {
+        for (String url : List.of(REPLICA_1, REPLICA_2)) {
+            Flyway.configure().dataSource(url, "sa", "").load().migrate();
+        }
+    }
+
+    @Test
+    void readOnlyTransactionsAlternateBetweenReplicas() {
+        assertThat(List.of(database(true), database(true))).containsExactlyInAnyOrder("REPLICA1", "REPLICA2");
+    }
+
+    @Test
+    void writesUsePrimary() {
+        assertThat(database(false)).isEqualTo("LIBTEST");
+    }
+
+    @Test
+    void pinnedReadsUsePrimary() {
+        boolean wasPinned = PrimaryPin.pin();
+        try {
+            assertThat(database(true)).isEqualTo("LIBTEST");
+        } finally {
+            PrimaryPin.release(wasPinned);
+        }
+    }
+
+    @Test
+    void readsAfterAWriteThroughTheFilterUsePrimary() throws Exception {
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        readYourWritesFilter.doFilter(new MockHttpServletRequest("POST", "/library/books"), written,
+                (request, response) -> assertThat(database(false)).isEqualTo("LIBTEST"));
+        Cookie cookie = written.getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertThat(cookie).isNotNull();
+
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/library/books");
+        read.setCookies(cookie);
+        List<String> databases = new ArrayList<>();
+        readYourWritesFilter.doFilter(read, new MockHttpServletResponse(),
+                (request, response) -> databases.add(database(true)));
+
+        assertThat(databases).containsExactly("LIBTEST");
+        assertThat(PrimaryPin.isPinned()).isFalse();
+    }
+
+    @Test
+    void readsCarryingTheHeaderUsePrimary() throws Exception {
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        readYourWritesFilter.doFilter(new MockHttpServletRequest("PUT", "/library/books/1"), written, (request, response) -> {
+        });
+        String until = written.getHeader(ReadYourWritesFilter.HEADER_NAME);
+        assertThat(until).isNotNull();
+
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/library/books/1");
+        read.addHeader(ReadYourWritesFilter.HEADER_NAME, until);
+        List<String> databases = new ArrayList<>();
+        readYourWritesFilter.doFilter(read, new MockHttpServletResponse(),
+                (request, response) -> databases.add(database(true)));
+
+        assertThat(databases).containsExactly("LIBTEST");
+    }
+
+    @Test
+    void asyncWorkOfAPinnedRequestUsesPrimary() throws Exception {
+        boolean wasPinned = PrimaryPin.pin();
+        Runnable task;
+        List<String> databases = new ArrayList<>();
+        try {
+            task = taskDecorator.decorate(() -> databases.add(database(true)));
+        } finally {
+            PrimaryPin.release(wasPinned);
+        }
+        Thread thread = Thread.ofPlatform().start(task);
+        thread.join();
+
+        assertThat(databases).containsExactly("LIBTEST");
+    }
+
+    @Test
+    void transactionsRememberReplicaReads() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+
+        assertThat(transaction.execute(status -> {
+            new JdbcTemplate(dataSource).queryForObject("SELECT DATABASE()", String.class);
+            return ReplicaReads.inTransaction();
+        })).isTrue();
+        assertThat(ReplicaReads.inTransaction()).isFalse();
+
+        boolean wasPinned = PrimaryPin.pin();
+        try {
+            assertThat(transaction.execute(status -> {
+                new JdbcTemplate(dataSource).queryForObject("SELECT DATABASE()", String.class);
+                return ReplicaReads.inTransaction();
+            })).isFalse();
+        } finally {
+            PrimaryPin.release(wasPinned);
+        }
+    }
+
+    private String database(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> new JdbcTemplate(dataSource).queryForObject("SELECT DATABASE()", String.class));
+    }
+}
@@ -0,0 +1,77 @@
+package com.readstack.library.common.db;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReplicaRouterTest {
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection firstConnection = mock(Connection.class);
+    private final Connection secondConnection = mock(Connection.class);
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource first = mock(DataSource.class);
+    private final DataSource second = mock(DataSource.class);
+    private final ReplicaRouter router = new ReplicaRouter(primary, List.of(first, second), Duration.ofMinutes(1));
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    void sendsWritesToPrimary() throws Exception {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void balancesReadOnlyTransactionsAcrossReplicas() throws Exception {
+        when(first.getConnection()).thenReturn(firstConnection);
+        when(second.getConnection()).thenReturn(secondConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(List.of(router.getConnection(), router.getConnection(), router.getConnection()))
+                .containsExactly(firstConnection, secondConnection, firstConnection);
+    }
+
+    @Test
+    void skipsFailedReplicaAndFallsBackToPrimary() throws Exception {
+        when(first.getConnection()).thenThrow(new SQLException("down"));
+        when(second.getConnection()).thenReturn(secondConnection).thenThrow(new SQLException("down"));
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(router.getConnection()).isSameAs(secondConnection);
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+        assertThat(router.getConnection()).isSameAs(primaryConnection);
+        // Both replicas are benched after failing once.
+        verify(first, times(1)).getConnection();
+        verify(second, times(2)).getConnection();
+    }
+
+    @Test
+    void pinnedThreadsReadFromPrimary() throws Exception {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        boolean wasPinned = PrimaryPin.pin();
+        try {
+            assertThat(router.getConnection()).isSameAs(primaryConnection);
+        } finally {
+            PrimaryPin.release(wasPinned);
+        }
+    }
+}
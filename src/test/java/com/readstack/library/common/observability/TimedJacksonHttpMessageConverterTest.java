@@ -0,0 +1,31 @@
+package com.readstack.library.common.observability;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.readstack.library.book.dto.BookDto;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimedJacksonHttpMessageConverterTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TimedJacksonHttpMessageConverter converter = new TimedJacksonHttpMessageConverter(new ObjectMapper(), registry);
+
+    @Test
+    void timesEachWrittenBodyByType() throws IOException {
+        BookDto book = BookDto.builder().id(1L).title("Clean Code").isbn("9780132350884").publishedYear(2008).build();
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(book, MediaType.APPLICATION_JSON, output);
+        converter.write(book, MediaType.APPLICATION_JSON, new MockHttpOutputMessage());
+
+        assertThat(output.getBodyAsString()).contains("\"title\":\"Clean Code\"");
+        Timer timer = registry.get(TimedJacksonHttpMessageConverter.METER_NAME).tag("type", "BookDto").timer();
+        assertThat(timer.count()).isEqualTo(2);
+    }
+}
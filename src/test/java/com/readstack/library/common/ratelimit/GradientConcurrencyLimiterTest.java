@@ -0,0 +1,68 @@
+package com.readstack.library.common.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GradientConcurrencyLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void refusesBeyondTheLimit() {
+        GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(2, 1, 10);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void growsWhileLatencyIsSteadyAndTheLimitIsUsed() {
+        GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(4, 1, 100);
+
+        for (int round = 0; round < 50; round++) {
+            saturate(limiter, FAST);
+        }
+
+        assertThat(limiter.getLimit()).isGreaterThan(20);
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(50, 1, 100);
+        for (int round = 0; round < 20; round++) {
+            saturate(limiter, FAST);
+        }
+        int before = limiter.getLimit();
+
+        for (int round = 0; round < 20; round++) {
+            saturate(limiter, 10 * FAST);
+        }
+
+        assertThat(limiter.getLimit()).isLessThan(before / 2);
+    }
+
+    @Test
+    void doesNotGrowWhenMostlyIdle() {
+        GradientConcurrencyLimiter limiter = new GradientConcurrencyLimiter(20, 1, 100);
+
+        for (int request = 0; request < 100; request++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.release(FAST);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(20);
+    }
+
+    /** Fills every slot, then completes them all with the given latency. */
+    private static void saturate(GradientConcurrencyLimiter limiter, long latencyNanos) {
+        int admitted = 0;
+        while (limiter.tryAcquire()) admitted++;
+        for (int i = 0; i < admitted; i++) limiter.release(latencyNanos);
+    }
+}
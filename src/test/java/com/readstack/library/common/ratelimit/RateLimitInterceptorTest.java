@@ -0,0 +1,115 @@
+package com.readstack.library.common.ratelimit;
+
+import com.readstack.library.common.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RateLimitInterceptorTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RateLimitInterceptor interceptor = new RateLimitInterceptor(Map.of(
+            RateLimited.Budget.GET, new BudgetLimiter(RateLimited.Budget.GET, 100, 100, 100, registry),
+            RateLimited.Budget.QUERY, new BudgetLimiter(RateLimited.Budget.QUERY, 1, 1, 4, registry)
+    ), "X-API-Key", Set.of("a", "b"));
+
+    static class Handlers {
+        @RateLimited(RateLimited.Budget.GET)
+        public void get() {
+        }
+
+        @RateLimited(RateLimited.Budget.QUERY)
+        public void search() {
+        }
+
+        public void unlimited() {
+        }
+    }
+
+    @Test
+    void rejectsClientsOverTheirRateWithRetryAfter() throws Exception {
+        assertThat(handle(request("a"), "search")).isTrue();
+
+        assertThatThrownBy(() -> handle(request("a"), "search"))
+                .isInstanceOfSatisfying(TooManyRequestsException.class,
+                        exception -> assertThat(exception.getRetryAfter()).isPositive());
+        assertThat(registry.get("library.ratelimit.rejected").tag("budget", "query").tag("reason", "rate").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void keepsBudgetsAndClientsApart() throws Exception {
+        assertThat(handle(request("a"), "search")).isTrue();
+
+        assertThat(handle(request("b"), "search")).isTrue();
+        assertThat(handle(request("a"), "get")).isTrue();
+        assertThat(handle(request("a"), "unlimited")).isTrue();
+    }
+
+    @Test
+    void unknownKeysCountAgainstTheAddress() throws Exception {
+        assertThat(handle(request("forged-1"), "search")).isTrue();
+
+        assertThatThrownBy(() -> handle(request("forged-2"), "search")).isInstanceOf(TooManyRequestsException.class);
+    }
+
+    @Test
+    void principalsGetTheirOwnBucket() throws Exception {
+        MockHttpServletRequest alice = request("forged");
+        alice.setUserPrincipal(() -> "alice");
+        assertThat(handle(alice, "search")).isTrue();
+
+        assertThat(handle(request("forged"), "search")).isTrue();
+    }
+
+    @Test
+    void releasesConcurrencyWhenRequestsFinish() throws Exception {
+        MockHttpServletRequest finished = request("a");
+        handle(finished, "get");
+        assertThat(inFlight("get")).isEqualTo(1);
+
+        interceptor.afterCompletion(finished, new MockHttpServletResponse(), handler("get"), null);
+
+        assertThat(inFlight("get")).isZero();
+    }
+
+    @Test
+    void asyncRequestsHoldConcurrencyUntilTheyComplete() throws Exception {
+        MockHttpServletRequest async = request("b");
+        async.setAsyncSupported(true);
+        handle(async, "get");
+        async.startAsync();
+
+        interceptor.afterConcurrentHandlingStarted(async, new MockHttpServletResponse(), handler("get"));
+        assertThat(inFlight("get")).isEqualTo(1);
+
+        async.getAsyncContext().complete();
+        interceptor.afterCompletion(async, new MockHttpServletResponse(), handler("get"), null);
+        assertThat(inFlight("get")).isZero();
+    }
+
+    private boolean handle(MockHttpServletRequest request, String method) throws Exception {
+        return interceptor.preHandle(request, new MockHttpServletResponse(), handler(method));
+    }
+
+    private double inFlight(String budget) {
+        return registry.get("library.ratelimit.concurrency.in-flight").tag("budget", budget).gauge().value();
+    }
+
+    private static MockHttpServletRequest request(String apiKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/library/books");
+        request.addHeader("X-API-Key", apiKey);
+        return request;
+    }
+
+    private static HandlerMethod handler(String method) throws NoSuchMethodException {
+        return new HandlerMethod(new Handlers(), Handlers.class.getMethod(method));
+    }
+}
@@ -0,0 +1,45 @@
+package db.migration;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Starts from the books table the former {@code ddl-auto: update} created and migrates it as an upgrade would. */
+public class LegacySchemaUpgradeTest {
+    @Test
+    void adoptsTheTableCreatedBeforeMigrations() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:legacy;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE books (id BIGINT NOT NULL AUTO_INCREMENT, isbn VARCHAR(20) NOT NULL, "
+                + "published_year INT, title VARCHAR(255) NOT NULL, PRIMARY KEY (id), "
+                + "CONSTRAINT UKkibbepcitr0a3cpk3rfr7nihn UNIQUE (isbn))");
+        jdbcTemplate.update("INSERT INTO books (isbn, published_year, title) VALUES ('9780132350884', 2008, 'Clean Code')");
+
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("0").load().migrate();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT version FROM books WHERE isbn = '9780132350884'", Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForList("SELECT CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS "
+                + "WHERE UPPER(TABLE_NAME) = 'BOOKS' AND CONSTRAINT_TYPE = 'UNIQUE'", String.class))
+                .singleElement().satisfies(name -> assertThat(name).isEqualToIgnoringCase(V6__Adopt_legacy_books_table.ISBN_KEY));
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO books (isbn, title) VALUES ('9780132350884', 'Copy')"))
+                .isInstanceOf(DuplicateKeyException.class)
+                .hasMessageContainingIgnoringCase(V6__Adopt_legacy_books_table.ISBN_KEY);
+        assertThat(jdbcTemplate.queryForObject("SELECT book_count FROM book_year_counts WHERE published_year = 2008", Long.class)).isEqualTo(1);
+    }
+
+    @Test
+    void leavesTheMigratedSchemaAlone() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:migrated;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        assertThat(new JdbcTemplate(dataSource).queryForList("SELECT CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS "
+                + "WHERE UPPER(TABLE_NAME) = 'BOOKS' AND CONSTRAINT_TYPE = 'UNIQUE'", String.class))
+                .singleElement().satisfies(name -> assertThat(name).isEqualToIgnoringCase(V6__Adopt_legacy_books_table.ISBN_KEY));
+    }
+}